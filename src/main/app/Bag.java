@@ -10,6 +10,8 @@ import java.util.Stack;
  * variables.
  */
 public class Bag extends Item {
+    private static final long serialVersionUID = 4206829534831089383L;
+
     private double dimension;
     private String material;
     private LocalDate releaseDate;
@@ -91,7 +93,7 @@ public class Bag extends Item {
      * 
      * @return The price of the bag.
      */
-    public double getPrice() {
+    double computePrice() {
         return this.getBasePrice() - (this.getBasePrice() * (this.dimension / 10000))
                 - (this.getBasePrice() * this.getPriceCorrection());
     }
@@ -103,6 +105,7 @@ public class Bag extends Item {
      */
     public void setDimension(double dimension) {
         this.dimension = dimension;
+        changed();
     }
 
     /**
@@ -112,6 +115,7 @@ public class Bag extends Item {
      */
     public void setMaterial(String material) {
         this.material = material;
+        changed();
     }
 
     /**
@@ -121,6 +125,7 @@ public class Bag extends Item {
      */
     public void setReleaseDate(LocalDate releaseDate) {
         this.releaseDate = releaseDate;
+        changed();
     }
 
     /**
@@ -137,7 +142,7 @@ public class Bag extends Item {
                 ", priceCorrection=" + getPriceCorrection() +
                 ", carrier='" + getCarrier().getName() + '\'' +
                 ", conditionScore=" + getConditionScore() +
-                ", previousOwners=" + getPreviousOwners() +
+                ", previousOwners=" + owners() +
                 ", dimension=" + this.dimension +
                 ", material=" + this.material +
                 ", releaseDate=" + this.releaseDate + '\'' +
@@ -150,7 +155,7 @@ public class Bag extends Item {
      *
      * @return a string representation of the Bag
      */
-    public String showItem() {
+    String renderItem() {
 
         StringBuilder sb = new StringBuilder();
         int boxWidth = 50;
@@ -189,7 +194,7 @@ public class Bag extends Item {
                 && this.getBasePrice() == s.getBasePrice()
                 && this.getPriceCorrection() == s.getPriceCorrection() && this.getCarrier().equals(s.getCarrier())
                 && this.getConditionScore() == s.getConditionScore()
-                && this.getPreviousOwners() == s.getPreviousOwners()
+                && this.owners() == s.owners()
                 && this.dimension == s.getDimension() && this.material.equals(s.getMaterial())
                 && this.releaseDate == s.getReleaseDate();
     }
@@ -1,7 +1,12 @@
 package app;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.time.LocalDate;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -10,9 +15,29 @@ import java.io.Serializable;
 /**
  * Represents a bill that contains information about the type, items, total
  * cost, ports tax, and associated order.
+ *
+ * <p>
+ * The totals are kept up to date as items are added and removed, instead of
+ * being summed again over every item. The ports tax is kept per carrier: the
+ * tier the items of each carrier are taxed at and the base prices of those
+ * items, so when a carrier moves to another tier only its own items are taxed
+ * again. Items keep the carrier they were listed with, so items under the same
+ * carrier name may have different rates; each is taxed at its own.
+ * </p>
+ *
+ * <p>
+ * A bill only keeps the ids of its order and items, with the date of the
+ * order and its totals, so a user's bill history takes a few dozen bytes per
+ * bill and is saved without copies of the orders and items it refers to. The
+ * order and items themselves are remembered while the bill is in memory and,
+ * once it was read back from a file, found again through the managers of its
+ * model the first time they are asked for.
+ * </p>
  */
 public class Bill implements Serializable {
 
+    private static final long serialVersionUID = -1662803870435372093L;
+
     /**
      * Enum representing the type of bill: BOUGHT or SOLD.
      */
@@ -21,25 +46,116 @@ public class Bill implements Serializable {
         SOLD
     }
 
+    /**
+     * The order id of a bill with no order.
+     */
+    static final int NO_ORDER = -1;
+
+    private static final int[] NO_IDS = new int[0];
+    private static final Item[] NO_ITEMS = new Item[0];
+
     private int billNumber;
     private TypeBill type;
-    private Map<Integer, Item> items;
+    private int orderId;
+    private LocalDate orderDate;
+    private int[] itemIds;
     private double totalCost;
     private double portsTax;
-    private Order order;
+    private transient Order order;
+    private transient Item[] items;
+    private transient OrderManager orderManager;
+    private transient ItemManager itemManager;
+    private transient Map<String, CarrierTotal> carrierTotals;
+
+    /**
+     * The items of one carrier name in the bill: the number of items whose tier
+     * they are taxed at and the base prices of the items of each set of rates
+     * among their carriers.
+     */
+    private static class CarrierTotal {
+        private int many;
+        private final List<RateTotal> rates;
+
+        CarrierTotal() {
+            this.rates = new ArrayList<>(1);
+        }
+
+        CarrierTotal(CarrierTotal other) {
+            this.many = other.many;
+            this.rates = new ArrayList<>(other.rates.size());
+            for (RateTotal t : other.rates)
+                this.rates.add(new RateTotal(t));
+        }
+
+        /**
+         * Returns the items of a carrier with the same rates as the given one.
+         *
+         * @param c      the carrier
+         * @param create whether to start a total when there is none
+         * @return the total, or null
+         */
+        RateTotal of(Carrier c, boolean create) {
+            for (RateTotal t : this.rates) {
+                if (t.carrier == c || t.carrier.getTaxSmallWithIva() == c.getTaxSmallWithIva()
+                        && t.carrier.getTaxMediumWithIva() == c.getTaxMediumWithIva()
+                        && t.carrier.getTaxBigWithIva() == c.getTaxBigWithIva())
+                    return t;
+            }
+            if (!create)
+                return null;
+            RateTotal t = new RateTotal(c);
+            this.rates.add(t);
+            return t;
+        }
 
-    private static int bill_count = 1;
+        /**
+         * Taxes the items at the tier of another number of items.
+         *
+         * @param many the number of items
+         * @return how much the ports tax changes
+         */
+        double retax(int many) {
+            double delta = 0;
+            if (many != this.many) {
+                for (RateTotal t : this.rates)
+                    delta += (rate(t.carrier, many) - rate(t.carrier, this.many)) * t.basePrices;
+                this.many = many;
+            }
+            return delta;
+        }
+    }
+
+    /**
+     * The items of one set of rates: a carrier having them and the sum of the
+     * base prices of the items.
+     */
+    private static class RateTotal {
+        private final Carrier carrier;
+        private double basePrices;
+
+        RateTotal(Carrier carrier) {
+            this.carrier = carrier;
+        }
+
+        RateTotal(RateTotal other) {
+            this.carrier = other.carrier;
+            this.basePrices = other.basePrices;
+        }
+    }
 
     /**
      * Default constructor for the Bill class.
      * Initializes the bill with default values.
      */
     public Bill() {
-        this.billNumber = bill_count++;
+        this.billNumber = ModelContext.current().billNumbers().next();
         this.type = null;
-        this.items = new HashMap<>();
+        this.orderId = NO_ORDER;
+        this.itemIds = NO_IDS;
+        this.items = NO_ITEMS;
         this.totalCost = 0;
         this.order = null;
+        this.carrierTotals = new HashMap<>();
     }
 
     /**
@@ -52,14 +168,11 @@ public class Bill implements Serializable {
      * @param o         The associated order.
      */
     public Bill(TypeBill type, Map<Integer, Item> article, double totalCost, Order o) {
-        this.billNumber = bill_count++;
+        this.billNumber = ModelContext.current().billNumbers().next();
         this.type = type;
-        this.items = new HashMap<>();
-        for (Map.Entry<Integer, Item> e : article.entrySet()) {
-            this.items.put(e.getKey(), e.getValue());
-        }
+        putItems(article);
         this.totalCost = totalCost;
-        this.order = o;
+        setOrder(o);
     }
 
     /**
@@ -70,10 +183,21 @@ public class Bill implements Serializable {
     public Bill(Bill f) {
         this.billNumber = f.getbillNumber();
         this.type = f.gettype();
-        this.items = f.getitems();
+        // the arrays are replaced, never changed, when items come and go
+        this.itemIds = f.itemIds;
+        this.items = f.items;
         this.totalCost = f.gettotalCost();
         this.portsTax = f.getportsTax();
-        this.order = f.getOrder();
+        this.orderId = f.orderId;
+        this.orderDate = f.orderDate;
+        this.order = f.order;
+        this.orderManager = f.orderManager;
+        this.itemManager = f.itemManager;
+        if (f.carrierTotals != null) {
+            this.carrierTotals = new HashMap<>();
+            for (Map.Entry<String, CarrierTotal> e : f.carrierTotals.entrySet())
+                this.carrierTotals.put(e.getKey(), new CarrierTotal(e.getValue()));
+        }
     }
 
     /**
@@ -85,6 +209,33 @@ public class Bill implements Serializable {
         return this.billNumber;
     }
 
+    /**
+     * Sets the bill number. Only used when restoring a saved state.
+     *
+     * @param billNumber the bill number
+     */
+    void setbillNumber(int billNumber) {
+        this.billNumber = billNumber;
+    }
+
+    /**
+     * Returns the number the next bill will get.
+     *
+     * @return the number the next bill will get
+     */
+    static int getBillCount() {
+        return ModelContext.current().billNumbers().peek();
+    }
+
+    /**
+     * Sets the number the next bill will get. Only used when restoring a saved state.
+     *
+     * @param next the number the next bill will get
+     */
+    static void setBillCount(int next) {
+        ModelContext.current().billNumbers().reset(next);
+    }
+
     /**
      * Retrieves the type of the bill.
      *
@@ -97,12 +248,109 @@ public class Bill implements Serializable {
     /**
      * Retrieves the associated order.
      *
-     * @return The associated order.
+     * @return The associated order, or null if the bill has none or it can no
+     *         longer be found.
      */
     public Order getOrder() {
+        if (this.order == null && this.orderId != NO_ORDER && this.orderManager != null)
+            this.order = this.orderManager.getOrder(this.orderId);
         return this.order;
     }
 
+    /**
+     * Retrieves the id of the associated order.
+     *
+     * @return The id of the order, or {@link #NO_ORDER} if the bill has none.
+     */
+    public int getOrderId() {
+        return this.orderId;
+    }
+
+    /**
+     * Returns the date of the associated order, without looking the order up.
+     *
+     * @return the date of the order, or null if the bill has none
+     */
+    LocalDate getOrderDate() {
+        return this.orderDate;
+    }
+
+    /**
+     * Retrieves the ids of the items in the bill.
+     *
+     * @return the ids of the items, in the order they were added
+     */
+    public int[] getItemIds() {
+        return this.itemIds.clone();
+    }
+
+    /**
+     * Sets the managers the order and items of the bill are looked up in when
+     * it no longer holds them, as after it was read back from a file.
+     *
+     * @param orderManager the orders of the model of the bill
+     * @param itemManager  the items of the model of the bill
+     */
+    void resolveWith(OrderManager orderManager, ItemManager itemManager) {
+        this.orderManager = orderManager;
+        this.itemManager = itemManager;
+        // only a bill read from a file of an older version holds its order here
+        if (this.order != null)
+            setOrder(this.order);
+    }
+
+    /**
+     * Returns the items of the bill, looking up the ones it no longer holds.
+     *
+     * @return the items, parallel to the item ids, null where an item cannot
+     *         be found
+     */
+    private Item[] items() {
+        Item[] resolved = this.items;
+        if (resolved == null)
+            resolved = new Item[this.itemIds.length];
+        for (int i = 0; i < resolved.length; i++) {
+            if (resolved[i] == null && this.itemManager != null)
+                resolved[i] = this.itemManager.getItem(this.itemIds[i]);
+        }
+        this.items = resolved;
+        return resolved;
+    }
+
+    private int indexOf(int itemId) {
+        for (int i = 0; i < this.itemIds.length; i++) {
+            if (this.itemIds[i] == itemId)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces the items of the bill by the ones of a map. The tiers they were
+     * taxed at are not known.
+     */
+    private void putItems(Map<Integer, Item> article) {
+        int[] ids = new int[article.size()];
+        Item[] refs = new Item[article.size()];
+        int n = 0;
+        for (Map.Entry<Integer, Item> e : article.entrySet()) {
+            ids[n] = e.getKey();
+            refs[n++] = e.getValue();
+        }
+        this.itemIds = n == 0 ? NO_IDS : ids;
+        this.items = n == 0 ? NO_ITEMS : refs;
+        this.carrierTotals = n == 0 ? new HashMap<>() : null;
+    }
+
+    /**
+     * Drops what the bill only needs while its items are added: the totals per
+     * carrier. The totals of the carrier of an item removed later are worked out
+     * again from the items, as in a bill read back from a file.
+     */
+    void settle() {
+        this.carrierTotals = null;
+    }
+
     /**
      * Retrieves the ports tax.
      *
@@ -118,13 +366,15 @@ public class Bill implements Serializable {
     /**
      * Retrieves the Map with the items
      *
-     * @return A map with the Items
+     * @return A copy of the map with the Items, in the order they were added
      */
 
     public Map<Integer, Item> getitems() {
-        Map<Integer, Item> map = new HashMap<Integer, Item>();
-        for (Map.Entry<Integer, Item> e : this.items.entrySet()) {
-            map.put(e.getKey(), e.getValue());
+        Map<Integer, Item> map = new LinkedHashMap<Integer, Item>();
+        Item[] resolved = items();
+        for (int i = 0; i < resolved.length; i++) {
+            if (resolved[i] != null)
+                map.put(this.itemIds[i], resolved[i]);
         }
         return map;
     }
@@ -144,11 +394,7 @@ public class Bill implements Serializable {
      * @param Map<Integer,Item> art
      */
     public void setitems(Map<Integer, Item> art) {
-        Map<Integer, Item> map = new HashMap<Integer, Item>();
-        for (Map.Entry<Integer, Item> e : art.entrySet()) {
-            map.put(e.getKey(), e.getValue());
-        }
-        this.items = map;
+        putItems(art);
     }
 
     /**
@@ -186,6 +432,8 @@ public class Bill implements Serializable {
      */
     public void setOrder(Order oneOrder) {
         this.order = oneOrder;
+        this.orderId = oneOrder == null ? NO_ORDER : oneOrder.getID();
+        this.orderDate = oneOrder == null ? null : oneOrder.getDate();
     }
 
     /**
@@ -209,9 +457,12 @@ public class Bill implements Serializable {
         sb.append("Bill Number: ").append(billNumber).append("\n");
         sb.append("Type: ").append(type).append("\n");
         sb.append("Items:\n");
-        for (Map.Entry<Integer, Item> entry : items.entrySet()) {
-            int itemId = entry.getKey();
-            Item item = entry.getValue();
+        Item[] resolved = items();
+        for (int i = 0; i < resolved.length; i++) {
+            int itemId = this.itemIds[i];
+            Item item = resolved[i];
+            if (item == null)
+                continue;
             sb.append("  Item ID: ").append(itemId).append("\n");
             sb.append("    - Name: ").append(item.getDescription()).append("\n");
             sb.append("    - Price: ").append(item.getPrice()).append("\n");
@@ -219,7 +470,7 @@ public class Bill implements Serializable {
         }
         sb.append("Total Cost: ").append(totalCost).append("\n");
         sb.append("Ports Tax: ").append(portsTax).append("\n");
-        sb.append("Order: ").append(order.getID()).append("\n");
+        sb.append("Order: ").append(this.orderId).append("\n");
         return sb.toString();
     }
 
@@ -231,19 +482,17 @@ public class Bill implements Serializable {
 
     public String showBill() {
 
-        String ret = "";
-        for (Integer i_key : this.items.keySet()) {
-            Item i = this.items.get(i_key);
-            ret += i.showItem();
+        StringBuilder sb = new StringBuilder();
+        for (Item i : items()) {
+            if (i != null)
+                sb.append(i.showItem());
         }
-        ret = ret + '\n' + " ID= " + this.billNumber + ", " + " Total Cost= " + this.totalCost + ", " + " Ports Tax= "
-                + this.portsTax
-                + ", " + " Order= "
-                + this.order.getID()
-                + "Type= " + this.type
-                + "Amount= " + getAmount();
+        sb.append('\n').append(" ID= ").append(this.billNumber).append(", ").append(" Total Cost= ")
+                .append(this.totalCost).append(", ").append(" Ports Tax= ").append(this.portsTax).append(", ")
+                .append(" Order= ").append(this.orderId).append("Type= ").append(this.type)
+                .append("Amount= ").append(getAmount());
 
-        return ret;
+        return sb.toString();
 
     }
 
@@ -267,60 +516,132 @@ public class Bill implements Serializable {
     }
 
     /**
-     * Add an item to the bill.
-     * 
-     * @params one Item and the number to consider to aply taxes
+     * Returns the rate the items of a carrier are taxed at.
+     *
+     * @param c        the carrier
+     * @param many_tax the number of items of the carrier in the order
+     * @return the rate of the tier of that many items, 0 for none
      */
-    public void addItem(Item item, int many_tax) {
-        this.items.put(item.getID(), item);
-        Carrier c = item.getCarrier();
-        double tax = 0;
+    private static double rate(Carrier c, int many_tax) {
         if (many_tax == 1)
-            tax = c.getTaxSmallWithIva();
+            return c.getTaxSmallWithIva();
         if (many_tax >= 2 && many_tax <= 5)
-            tax = c.getTaxMediumWithIva();
+            return c.getTaxMediumWithIva();
         if (many_tax > 5)
-            tax = c.getTaxBigWithIva();
+            return c.getTaxBigWithIva();
+        return 0;
+    }
+
+    /**
+     * Add an item to the bill. All the items of its carrier are taxed at the
+     * tier of the given number of items.
+     * 
+     * @params one Item and the number to consider to aply taxes
+     */
+    public void addItem(Item item, int many_tax) {
+        Item[] resolved = items();
+        int at = indexOf(item.getID());
+        if (at >= 0) {
+            if (resolved[at] != null)
+                this.totalCost -= resolved[at].getPrice();
+            this.items = resolved.clone();
+            this.items[at] = item;
+        } else {
+            this.itemIds = Arrays.copyOf(this.itemIds, this.itemIds.length + 1);
+            this.itemIds[this.itemIds.length - 1] = item.getID();
+            this.items = Arrays.copyOf(resolved, resolved.length + 1);
+            this.items[this.items.length - 1] = item;
+        }
+        this.totalCost += item.getPrice();
 
+        Carrier c = item.getCarrier();
+        double tax = rate(c, many_tax);
+        if (this.carrierTotals == null) {
+            this.portsTax += tax * item.getBasePrice();
+            return;
+        }
+        CarrierTotal total = this.carrierTotals.computeIfAbsent(c.getName(), k -> new CarrierTotal());
+        this.portsTax += total.retax(many_tax);
         this.portsTax += tax * item.getBasePrice();
-        calculateTotalCostItems();
+        total.of(c, true).basePrices += item.getBasePrice();
     }
 
     /**
-     * Remove an item to the bill.
+     * Remove an item to the bill. The items of its carrier left in the bill
+     * are taxed at the tier of one item less than the given number.
      * 
      * @params one Item and the number to consider to aply taxes
      */
     public void removeItem(Item item, int many_tax) {
-        this.items.remove(item.getID());
+        int at = indexOf(item.getID());
+        if (at >= 0) {
+            Item[] resolved = items();
+            int[] ids = new int[this.itemIds.length - 1];
+            Item[] refs = new Item[ids.length];
+            System.arraycopy(this.itemIds, 0, ids, 0, at);
+            System.arraycopy(this.itemIds, at + 1, ids, at, ids.length - at);
+            System.arraycopy(resolved, 0, refs, 0, at);
+            System.arraycopy(resolved, at + 1, refs, at, refs.length - at);
+            this.itemIds = ids;
+            this.items = refs;
+            this.totalCost -= item.getPrice();
+        }
+
         Carrier c = item.getCarrier();
-        double tax = 0;
-        if (many_tax == 1)
-            tax = c.getTaxSmallWithIva();
-        if (many_tax >= 2 && many_tax <= 5)
-            tax = c.getTaxMediumWithIva();
-        if (many_tax > 5)
-            tax = c.getTaxBigWithIva();
+        CarrierTotal total = this.carrierTotals == null ? regroup(item, many_tax)
+                : this.carrierTotals.get(c.getName());
+        RateTotal same = total == null ? null : total.of(c, false);
+        if (same == null) {
+            // items of the bill that cannot be found: scale the whole tax
+            double tax = rate(c, many_tax);
+            this.portsTax -= tax * item.getBasePrice();
+            if (many_tax == 2)
+                this.portsTax = (this.portsTax * c.getTaxSmallWithIva()) / c.getTaxMediumWithIva();
+            if (many_tax == 6)
+                this.portsTax = (this.portsTax * c.getTaxMediumWithIva()) / c.getTaxBigWithIva();
+            return;
+        }
+        this.portsTax -= rate(c, total.many) * item.getBasePrice();
+        same.basePrices -= item.getBasePrice();
+        this.portsTax += total.retax(many_tax - 1);
+        if (many_tax <= 1 && this.carrierTotals != null)
+            this.carrierTotals.remove(c.getName());
+    }
 
-        this.portsTax -= tax * item.getBasePrice();
-        if (many_tax == 2)
-            this.portsTax = (this.portsTax * c.getTaxSmallWithIva()) / c.getTaxMediumWithIva();
-        if (many_tax == 6)
-            this.portsTax = (this.portsTax * c.getTaxMediumWithIva()) / c.getTaxBigWithIva();
-        calculateTotalCostItems();
+    /**
+     * Works out the totals of the carrier of an item being removed, for a bill
+     * that does not keep them, from the items left and the item itself: all of
+     * them taxed at the tier of the given number of items, as every item of a
+     * carrier in a bill is.
+     *
+     * @param item the item being removed
+     * @param many the number of items the carrier was taxed for
+     * @return the totals, or null if an item of the bill cannot be found
+     */
+    private CarrierTotal regroup(Item item, int many) {
+        String name = item.getCarrier().getName();
+        CarrierTotal total = new CarrierTotal();
+        total.many = many;
+        total.of(item.getCarrier(), true).basePrices += item.getBasePrice();
+        for (Item i : items()) {
+            if (i == null)
+                return null;
+            if (i.getCarrier().getName().equals(name))
+                total.of(i.getCarrier(), true).basePrices += i.getBasePrice();
+        }
+        return total;
     }
 
     /**
-     * Calculate the summation of the Items in the Bill
+     * Sums the prices of the items in the bill again, at their prices today.
+     * The total is otherwise kept as items are added and removed.
      * 
      */
     public void calculateTotalCostItems() {
         double sum = 0;
-        for (Integer key : this.items.keySet()) {
-
-            Item i = this.items.get(key);
-            sum += i.getPrice();
-
+        for (Item i : items()) {
+            if (i != null)
+                sum += i.getPrice();
         }
         this.totalCost = sum;
     }
@@ -356,19 +677,37 @@ public class Bill implements Serializable {
 
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject(); // default serialization
-        out.writeInt(bill_count); // save static variable
+        out.writeInt(getBillCount()); // save the counter of the context
     }
 
     /**
-     * Reads the static variable responsible to give the bill number
+     * Reads the static variable responsible to give the bill number. Bills of
+     * files of older versions, which kept the order and items themselves, are
+     * converted to ids.
      * 
      * @throws IoException            if occured any problem reading
      * @throws ClassNotFoundException if occured any problem reading
      */
 
+    @SuppressWarnings("unchecked")
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject(); // default deserialization
-        bill_count = in.readInt(); // load static variable
+        ObjectInputStream.GetField fields = in.readFields();
+        this.billNumber = fields.get("billNumber", 0);
+        this.type = (TypeBill) fields.get("type", null);
+        this.totalCost = fields.get("totalCost", 0.0);
+        this.portsTax = fields.get("portsTax", 0.0);
+        if (fields.defaulted("itemIds")) {
+            // a file of a version that kept the order and items themselves: the
+            // order may still be being read, so its id waits for resolveWith
+            putItems((Map<Integer, Item>) fields.get("items", null));
+            this.order = (Order) fields.get("order", null);
+            this.orderId = NO_ORDER;
+        } else {
+            this.orderId = fields.get("orderId", NO_ORDER);
+            this.orderDate = (LocalDate) fields.get("orderDate", null);
+            this.itemIds = (int[]) fields.get("itemIds", null);
+        }
+        setBillCount(in.readInt()); // load the counter of the context
     }
 
     /**
@@ -386,17 +725,17 @@ public class Bill implements Serializable {
     }
 
     /**
-     * @return Map<Integer, Item> return the items
+     * @return Map<Integer, Item> return a copy of the items
      */
     public Map<Integer, Item> getItems() {
-        return items;
+        return getitems();
     }
 
     /**
      * @param items the items to set
      */
     public void setItems(Map<Integer, Item> items) {
-        this.items = items;
+        putItems(items);
     }
 
     /**
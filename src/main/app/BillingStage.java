@@ -0,0 +1,125 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Issues the bills of the orders dispatched by a time skip. Each order is
+ * billed as it is dispatched, while its items still have its sellers on top of
+ * their previous owners, since a later order of the same skip may resell them;
+ * the bills are handed to their users together at the end, before the date
+ * moves on.
+ * <p>
+ * Each seller gets one bill per item they sold, and the buyer one bill with
+ * every item of the order, numbered in the same order as when orders were
+ * billed one at a time. The items of an order are matched to their sellers and
+ * bucketed by seller in single passes over the order, instead of one pass per
+ * seller, and the bills go to their users as they are, without copies.
+ */
+class BillingStage {
+
+    private final UserManager userManager;
+    private final List<Order> orders;
+    private final List<List<User>> owners;
+    private final List<List<Bill>> bills;
+
+    /**
+     * Constructs an empty stage.
+     *
+     * @param userManager the users the bills go to
+     */
+    BillingStage(UserManager userManager) {
+        this.userManager = userManager;
+        this.orders = new ArrayList<Order>();
+        this.owners = new ArrayList<List<User>>();
+        this.bills = new ArrayList<List<Bill>>();
+    }
+
+    /**
+     * Bills an order. The bills are numbered now and reach their users when the
+     * stage is run.
+     *
+     * @param o the dispatched order
+     */
+    void add(Order o) {
+        ObjectIntMap<String> carriers = o.getCarrierHelper();
+        List<User> sellers = o.getSellers();
+        List<Item> collection = o.getCollection();
+
+        // one pass over the order: the seller of each item, as a position in
+        // the list of sellers, or past its end for an item none of them sold
+        IntHashMap<Integer> positions = new IntHashMap<Integer>();
+        for (int k = 0; k < sellers.size(); k++) {
+            if (!positions.containsKey(sellers.get(k).getId()))
+                positions.put(sellers.get(k).getId(), k);
+        }
+        Item[] items = collection.toArray(new Item[0]);
+        int[] sellerOf = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            Integer k = positions.get(items[i].getonePreviousOwners());
+            sellerOf[i] = k == null ? sellers.size() : k;
+        }
+
+        // the items bucketed by seller, keeping their order within each bucket:
+        // the items of seller k are at bucket[start[k]] to bucket[start[k + 1] - 1]
+        int[] start = new int[sellers.size() + 2];
+        for (int i = 0; i < items.length; i++)
+            start[sellerOf[i] + 1]++;
+        for (int k = 0; k <= sellers.size(); k++)
+            start[k + 1] += start[k];
+        int[] next = Arrays.copyOf(start, sellers.size() + 1);
+        int[] bucket = new int[items.length];
+        for (int i = 0; i < items.length; i++)
+            bucket[next[sellerOf[i]]++] = i;
+
+        List<User> owners = new ArrayList<User>(items.length + 1);
+        List<Bill> bills = new ArrayList<Bill>(items.length + 1);
+        for (int k = 0; k < sellers.size(); k++) {
+            User u = sellers.get(k);
+            for (int b = start[k]; b < start[k + 1]; b++) {
+                Item item = items[bucket[b]];
+                Bill bill = new Bill();
+                bill.addItem(item, carriers.get(item.getCarrier().getName()));
+                bill.setSold();
+                bill.setOrder(o);
+                // a seller pays no port tax, as the copy it used to get showed
+                bill.setPortsTax(0.0);
+                bill.settle();
+                owners.add(u);
+                bills.add(bill);
+            }
+        }
+
+        Bill billBuyer = new Bill();
+        for (Item item : items)
+            billBuyer.addItem(item, carriers.get(item.getCarrier().getName()));
+        billBuyer.setBought();
+        billBuyer.setOrder(o);
+        billBuyer.settle();
+        owners.add(o.getBuyer());
+        bills.add(billBuyer);
+
+        this.orders.add(o);
+        this.owners.add(owners);
+        this.bills.add(bills);
+    }
+
+    /**
+     * Hands the bills of every order added since the stage was created or last
+     * run to their users.
+     *
+     * @return the number of bills issued
+     */
+    int run() {
+        int issued = 0;
+        for (int k = 0; k < this.orders.size(); k++) {
+            this.userManager.addIssuedBills(this.orders.get(k), this.owners.get(k), this.bills.get(k));
+            issued += this.bills.get(k).size();
+        }
+        this.orders.clear();
+        this.owners.clear();
+        this.bills.clear();
+        return issued;
+    }
+}
@@ -0,0 +1,211 @@
+package app;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the boxed cards {@link Item#showItem()} and
+ * {@link Carrier#showCarrier()} draw, so a listing browsed again and again is
+ * not drawn again every time. Each {@link ModelContext} has its own.
+ * <p>
+ * A card is kept under the id of its item, the version of the item and of its
+ * carrier, and its price context, such as the system date for premium items.
+ * Every change to an item or a carrier gives it a version no other item or
+ * carrier has had, so a change never needs to find and drop the old cards:
+ * they are simply no longer asked for, and make room for new ones as the least
+ * recently used. The cache holds at most a given number of characters.
+ */
+public final class CardCache {
+
+    /**
+     * The number of characters a cache holds unless told otherwise: some
+     * thirty thousand item cards.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 24;
+
+    private final LinkedHashMap<Key, String> cards;
+    private long capacity;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs an empty cache of {@link #DEFAULT_CAPACITY} characters.
+     */
+    public CardCache() {
+        this.cards = new LinkedHashMap<Key, String>(16, 0.75f, true);
+        this.capacity = DEFAULT_CAPACITY;
+    }
+
+    /**
+     * What a card was drawn from. The card of a carrier itself has no item id.
+     */
+    private static final class Key {
+        private final int id;
+        private final int version;
+        private final int carrierVersion;
+        private final int context;
+
+        Key(int id, int version, int carrierVersion, int context) {
+            this.id = id;
+            this.version = version;
+            this.carrierVersion = carrierVersion;
+            this.context = context;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return this.id == k.id && this.version == k.version && this.carrierVersion == k.carrierVersion
+                    && this.context == k.context;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((this.id * 31 + this.version) * 31 + this.carrierVersion) * 31 + this.context;
+        }
+    }
+
+    /**
+     * Returns the card of an item, drawing it only if it is not in the cache.
+     *
+     * @param item the item
+     * @return the card of the item
+     */
+    String card(Item item) {
+        Carrier carrier = item.getCarrier();
+        Key key = new Key(item.getID(), item.version(), carrier == null ? 0 : carrier.version(),
+                item.priceContext());
+        String card = get(key);
+        if (card == null) {
+            card = item.renderItem();
+            put(key, card);
+        }
+        return card;
+    }
+
+    /**
+     * Returns the card of a carrier, drawing it only if it is not in the cache.
+     *
+     * @param carrier the carrier
+     * @return the card of the carrier
+     */
+    String card(Carrier carrier) {
+        Key key = new Key(-1, 0, carrier.version(), 0);
+        String card = get(key);
+        if (card == null) {
+            card = carrier.renderCarrier();
+            put(key, card);
+        }
+        return card;
+    }
+
+    private synchronized String get(Key key) {
+        String card = this.cards.get(key);
+        if (card == null)
+            this.misses++;
+        else
+            this.hits++;
+        return card;
+    }
+
+    private synchronized void put(Key key, String card) {
+        if (card.length() > this.capacity)
+            return;
+        String previous = this.cards.put(key, card);
+        this.weight += card.length() - (previous == null ? 0 : previous.length());
+        trim();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<Key, String>> eldest = this.cards.entrySet().iterator();
+        while (this.weight > this.capacity && eldest.hasNext()) {
+            this.weight -= eldest.next().getValue().length();
+            eldest.remove();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Sets the most characters the cache holds, dropping the least recently used
+     * cards if it holds more.
+     *
+     * @param capacity the number of characters, zero to keep no card at all
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public synchronized void setCapacity(long capacity) throws IllegalArgumentException {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        this.capacity = capacity;
+        trim();
+    }
+
+    /**
+     * Returns the most characters the cache holds.
+     *
+     * @return the capacity
+     */
+    public synchronized long getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of cards in the cache.
+     *
+     * @return the number of cards
+     */
+    public synchronized int size() {
+        return this.cards.size();
+    }
+
+    /**
+     * Returns the number of characters the cards in the cache take.
+     *
+     * @return the weight of the cache
+     */
+    public synchronized long getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * Returns how many times a card was found in the cache.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns how many times a card had to be drawn.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns how many cards were dropped to make room for others.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Drops every card and sets the counters back to zero.
+     */
+    public synchronized void clear() {
+        this.cards.clear();
+        this.weight = 0;
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+    }
+}
@@ -1,6 +1,9 @@
 package app;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a Carrier class.
@@ -10,13 +13,17 @@ import java.io.Serializable;
  * variables.
  */
 public class Carrier implements Serializable, Comparable<Carrier> {
+    private static final long serialVersionUID = -58607851966616349L;
+
     private String name;
     private double taxSmall;
     private double taxMedium;
     private double taxBig;
     private double totalEarning;
+    private transient int version = VERSIONS.incrementAndGet();
 
     private static double iva = 0.13;
+    private static final AtomicInteger VERSIONS = new AtomicInteger();
 
     /**
      * Default constructor for the Carrier class.
@@ -58,6 +65,7 @@ public class Carrier implements Serializable, Comparable<Carrier> {
         this.taxMedium = oneCarrier.getTaxMedium();
         this.taxBig = oneCarrier.getTaxBig();
         this.totalEarning = oneCarrier.getTotalEarning();
+        this.version = oneCarrier.version;
     }
 
     /**
@@ -143,6 +151,7 @@ public class Carrier implements Serializable, Comparable<Carrier> {
      */
     public void setName(String name) {
         this.name = name;
+        this.version = VERSIONS.incrementAndGet();
     }
 
     /**
@@ -152,6 +161,7 @@ public class Carrier implements Serializable, Comparable<Carrier> {
      */
     public void setTaxSmall(double taxSmall) {
         this.taxSmall = taxSmall;
+        this.version = VERSIONS.incrementAndGet();
     }
 
     /**
@@ -161,6 +171,7 @@ public class Carrier implements Serializable, Comparable<Carrier> {
      */
     public void setTaxMedium(double taxMedium) {
         this.taxMedium = taxMedium;
+        this.version = VERSIONS.incrementAndGet();
     }
 
     /**
@@ -170,6 +181,7 @@ public class Carrier implements Serializable, Comparable<Carrier> {
      */
     public void setTaxBig(double taxBig) {
         this.taxBig = taxBig;
+        this.version = VERSIONS.incrementAndGet();
     }
 
     /**
@@ -207,11 +219,32 @@ public class Carrier implements Serializable, Comparable<Carrier> {
     }
 
     /**
-     * Returns a string representation of the Carrier.
+     * Returns the card of the carrier, from the card cache of the current
+     * context when it was drawn before.
      *
      * @return a string representation of the Carrier
      */
-    public String showCarrier() {
+    public final String showCarrier() {
+        return ModelContext.current().getCardCache().card(this);
+    }
+
+    /**
+     * Returns the version of the carrier. It changes whenever anything its card,
+     * or the cards of its items, show does, and is never reused, not even by
+     * another carrier.
+     *
+     * @return the version of the carrier
+     */
+    int version() {
+        return this.version;
+    }
+
+    /**
+     * Draws the card of the carrier.
+     *
+     * @return a string representation of the Carrier
+     */
+    String renderCarrier() {
 
         StringBuilder sb = new StringBuilder();
         int boxWidth = 50;
@@ -257,6 +290,15 @@ public class Carrier implements Serializable, Comparable<Carrier> {
         return new Carrier(this);
     }
 
+    /**
+     * Gives the carrier a version of its own, transient fields not being
+     * initialized.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.version = VERSIONS.incrementAndGet();
+    }
+
     /**
      * This method add's to the earnigs of the Carrier
      * 
@@ -1,6 +1,7 @@
 package app;
 
 import java.util.TreeMap;
+import java.util.Collections;
 import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
@@ -11,6 +12,8 @@ import java.util.Map;
  */
 public class CarrierManager implements Serializable {
 
+    private static final long serialVersionUID = -6425156658002727757L;
+
     private TreeMap<String, Carrier> carrierMap;
 
     /**
@@ -86,4 +89,15 @@ public class CarrierManager implements Serializable {
         }
         return copy;
     }
+
+    /**
+     * Returns a read-only view of the carrier map, without cloning the carriers.
+     * The carriers are the live ones, which must not be changed through the
+     * view nor read while another thread changes the model.
+     *
+     * @return an unmodifiable view of the carrier map
+     */
+    Map<String, Carrier> mapView() {
+        return Collections.unmodifiableMap(this.carrierMap);
+    }
 }
@@ -3,11 +3,8 @@ package app;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.time.LocalDate;
-import java.util.LinkedList;
-import java.util.ArrayList;
 import java.util.List;
 import java.io.*;
-import java.time.format.DateTimeParseException;
 
 public class Controller {
 
@@ -54,182 +51,36 @@ public class Controller {
     }
 
     /**
-     * Executes the parsing of a command and performs the corresponding actions
-     * based on the input.
+     * Executes the simulation based on the commands in the given file.
      *
-     * @param buffer the command to parse
-     * @param line   the line number of the command in the input file
-     * @throws InvalidCommand           if the command is invalid or malformed
+     * @param path the path of the file containing the commands
+     * @return the statistics of the replay
+     * @throws FileNotFoundException    if the file is not found
+     * @throws IOException              if an I/O error occurs
+     * @throws InvalidCommand           if an invalid command is encountered
      * @throws IllegalArgumentException if an argument is invalid
      */
-    private void parserExecuter(String buffer, int line) throws InvalidCommand, IllegalArgumentException {
-        try {
-            String[] substrings = buffer.split(",");
-            if (substrings[0].equals("SetupDate")) {
-                m.setCurrentDate(Util.toDate(substrings[1]));
-                return;
-            }
-
-            LocalDate dateParse = Util.toDate(substrings[0]);
-            if (dateParse.isAfter(Util.toDate(m.getDate()))) {
-                m.TimeSkip(dateParse);
-            }
-
-            switch (substrings[1]) {
-
-                case "RegistarUtilizador":
-                    String[] arguments = substrings[2].split(";");
-                    try {
-                        m.registsUser(arguments[0], arguments[1], arguments[2], Integer.parseInt(arguments[3]),
-                                arguments[4]);
-                    } catch (UserAlreadyExistsException e) {
-                        throw new InvalidCommand(substrings[1], line);
-                    }
-                    break;
-
-                case "Login":
-                    String[] arguments1 = substrings[2].split(";");
-                    try {
-                        m.loginModel(arguments1[0], arguments1[1]);
-                    } catch (MissedIdException e) {
-                        throw new InvalidCommand(substrings[1], line);
-                    } catch (NullPointerException e) {
-                        throw new InvalidCommand(substrings[1], line);
-                    }
-                    break;
-
-                case "RegistarItem":
-                    String[] arguments2 = substrings[2].split(";");
-                    try {
-                        switch (arguments2[0]) {
-                            case "Bag":
-
-                                if (arguments2[10].equals("No")) {
-                                    double dimension = Double.parseDouble(arguments2[5])
-                                            * Double.parseDouble(arguments2[6]) * Double.parseDouble(arguments2[7]);
-                                    m.registBag(arguments2[1], arguments2[2], Double.parseDouble(arguments2[3]),
-                                            arguments2[11], Double.parseDouble(arguments2[4]) / 5,
-                                            dimension, arguments2[8], Util.toDate(arguments2[9]), "n");
-                                } else {
-                                    double dimension = Double.parseDouble(arguments2[5])
-                                            * Double.parseDouble(arguments2[6]) * Double.parseDouble(arguments2[7]);
-                                    m.registBag(arguments2[1], arguments2[2], Double.parseDouble(arguments2[3]),
-                                            arguments2[10], Double.parseDouble(arguments2[4]) / 5,
-                                            dimension, arguments2[8], Util.toDate(arguments2[9]), "y");
-                                }
-                                break;
-                            case "Sneaker":
-
-                                if (arguments2[9].equals("No")) {
-
-                                    m.registSneaker(arguments2[1], arguments2[2], Double.parseDouble(arguments2[3]),
-                                            arguments2[10], Double.parseDouble(arguments2[4]) / 5,
-                                            Double.parseDouble(arguments2[5]), Util.toSneakerType(arguments2[6]),
-                                            arguments2[7], Util.toDate(arguments2[8]), "n");
-                                } else {
-                                    m.registSneaker(arguments2[1], arguments2[2], Double.parseDouble(arguments2[3]),
-                                            arguments2[10], Double.parseDouble(arguments2[4]) / 5,
-                                            Double.parseDouble(arguments2[5]), Util.toSneakerType(arguments2[6]),
-                                            arguments2[7], Util.toDate(arguments2[8]), "y");
-                                }
-
-                                break;
-                            case "Tshirt":
-
-                                m.registTshirt(arguments2[1], arguments2[2], Double.parseDouble(arguments2[3]),
-                                        arguments2[7], Double.parseDouble(arguments2[4]) / 5,
-                                        Util.toTshirtSize(arguments2[5]), Util.toTshirtPattern(arguments2[6]));
-
-                                break;
-
-                            default:
-                                throw new InvalidCommand(substrings[1], line);
-
-                        }
-                    } catch (NullPointerException e) {
-                        throw new InvalidCommand(substrings[1], line);
-                    }
-                    break;
-                case "RegistarTransportadora":
-                    String[] arguments3 = substrings[2].split(";");
-                    try {
-                        if (arguments3[1].equals("No"))
-                            m.addCarrier(arguments3[0], Double.parseDouble(arguments3[2]),
-                                    Double.parseDouble(arguments3[3]), Double.parseDouble(arguments3[4]), "n");
-                        else {
-                            m.addCarrier(arguments3[0], Double.parseDouble(arguments3[2]),
-                                    Double.parseDouble(arguments3[3]), Double.parseDouble(arguments3[4]), "y");
-                        }
-
-                    } catch (CarrierAlreadyExistsException e) {
-
-                        throw new InvalidCommand(substrings[1], line);
-                    }
-
-                    break;
-                case "FazerEncomenda":
-                    try {
-                        m.makeOrder(Util.toLinkedListParser(substrings[2]));
-                    } catch (InvalidId e) {
-                        throw new InvalidCommand(substrings[1], line);
-                    }
-                    break;
-                case "AlterarTransportadora":
-                    String[] arguments4 = substrings[2].split(";");
-                    try {
-
-                        changeCarrier(arguments4[0], Double.parseDouble(arguments4[1]),
-                                Double.parseDouble(arguments4[2]), Double.parseDouble(arguments4[3]));
-
-                    } catch (NullPointerException e) {
-
-                        throw new InvalidCommand(substrings[1], line);
-                    }
-
-                    break;
-                case "PassarTempo":
-
-                    break;
-
-                default:
-                    throw new InvalidCommand(substrings[1], line);
-
-            }
-        } catch (IllegalArgumentException e) {
-            throw new InvalidCommand("Unidentified", line);
-        } catch (DateTimeParseException e) {
-            throw new InvalidCommand("Unidentified", line);
-        } catch (ArrayIndexOutOfBoundsException e) {
-            throw new InvalidCommand("Unidentified", line);
-        }
-
+    public SimulationReplay.Stats simulation(String path)
+            throws FileNotFoundException, IOException, InvalidCommand, IllegalArgumentException {
+        return simulation(path, false);
     }
 
     /**
-     * Executes the simulation based on the commands in the given file.
+     * Executes the simulation based on the commands in the given file. In a dry
+     * run the file is only parsed, which validates it and measures the parsing
+     * throughput without changing the model.
      *
-     * @param path the path of the file containing the commands
+     * @param path   the path of the file containing the commands
+     * @param dryRun true to only parse the file
+     * @return the statistics of the replay
      * @throws FileNotFoundException    if the file is not found
      * @throws IOException              if an I/O error occurs
      * @throws InvalidCommand           if an invalid command is encountered
      * @throws IllegalArgumentException if an argument is invalid
      */
-
-    public void simulation(String path)
+    public SimulationReplay.Stats simulation(String path, boolean dryRun)
             throws FileNotFoundException, IOException, InvalidCommand, IllegalArgumentException {
-        File file = new File(path);
-        BufferedReader br = new BufferedReader(new FileReader(file));
-
-        String st;
-        int line = 1;
-        while ((st = br.readLine()) != null) {
-            if (Util.checkIgnore(st)) {
-                parserExecuter(st, line);
-            }
-            line++;
-        }
-        br.close();
-
+        return new SimulationReplay(this.m).run(path, dryRun);
     }
 
     /**
@@ -372,6 +223,34 @@ public class Controller {
         return m.displayListedItems();
     }
 
+    /**
+     * Displays one page of the listed items.
+     *
+     * @param out    where the items are written
+     * @param offset the number of items to skip
+     * @param limit  the most items to write
+     * @return the number of items written
+     * @throws UserIsAdminException If the user is an admin and cannot view the
+     *                              listed items.
+     * @throws IOException          If the output fails.
+     */
+    public int showListedItems(Appendable out, int offset, int limit) throws UserIsAdminException, IOException {
+        return m.displayListedItems(out, offset, limit);
+    }
+
+    /**
+     * Searches the listed items and displays one page of the results.
+     *
+     * @param query the criteria and the page to display
+     * @return A string representation of the matching items.
+     */
+    public String searchListedItems(ItemQuery query) {
+        StringBuilder sb = new StringBuilder();
+        for (Item i : m.searchListedItems(query))
+            sb.append(i.showItem());
+        return sb.toString();
+    }
+
     /**
      * Displays the listed items of the current user.
      *
@@ -384,6 +263,22 @@ public class Controller {
         return m.currentUserListedItems();
     }
 
+    /**
+     * Displays one page of the listed items of the current user.
+     *
+     * @param out    where the items are written
+     * @param offset the number of items to skip
+     * @param limit  the most items to write
+     * @return the number of items written
+     * @throws UserIsAdminException If the user is an admin and cannot view their
+     *                              listed items.
+     * @throws IOException          If the output fails.
+     */
+    public int getCurrentUserListedItems(Appendable out, int offset, int limit)
+            throws UserIsAdminException, IOException {
+        return m.currentUserListedItems(out, offset, limit);
+    }
+
     /**
      * Displays the system items of the current user.
      *
@@ -396,6 +291,22 @@ public class Controller {
         return m.currentUserSystemItems();
     }
 
+    /**
+     * Displays one page of the system items of the current user.
+     *
+     * @param out    where the items are written
+     * @param offset the number of items to skip
+     * @param limit  the most items to write
+     * @return the number of items written
+     * @throws UserIsAdminException If the user is an admin and cannot view their
+     *                              system items.
+     * @throws IOException          If the output fails.
+     */
+    public int getCurrentUserSystemItems(Appendable out, int offset, int limit)
+            throws UserIsAdminException, IOException {
+        return m.currentUserSystemItems(out, offset, limit);
+    }
+
     /**
      * Lists a system item with the given item ID.
      *
@@ -423,6 +334,19 @@ public class Controller {
 
     }
 
+    /**
+     * Displays one page of the orders of the current user.
+     *
+     * @param out    where the orders are written
+     * @param offset the number of orders to skip
+     * @param limit  the most orders to write
+     * @return the number of orders written
+     * @throws IOException If the output fails.
+     */
+    public int getCurrentUserAllOrders(Appendable out, int offset, int limit) throws IOException {
+        return m.checkThisUserOrders(out, offset, limit);
+    }
+
     /**
      * Retrieves the current system date.
      *
@@ -441,6 +365,19 @@ public class Controller {
         return m.userBills();
     }
 
+    /**
+     * Displays one page of the bills of the current user.
+     *
+     * @param out    where the bills are written
+     * @param offset the number of bills to skip
+     * @param limit  the most bills to write
+     * @return the number of bills written
+     * @throws IOException If the output fails.
+     */
+    public int currentUserBills(Appendable out, int offset, int limit) throws IOException {
+        return m.userBills(out, offset, limit);
+    }
+
     /**
      * Returns an order with the given order ID.
      *
@@ -456,18 +393,24 @@ public class Controller {
     }
 
     /**
-     * Saves the current state of the system to a file.
+     * Saves the current state of the system to a snapshot file.
      *
      * @throws FileNotFoundException If the file cannot be found.
      * @throws IOException           If an I/O error occurs.
      */
     public void save() throws FileNotFoundException, IOException {
-        this.m.save("data.ser");
-        SystemDate.save("date.ser");
+        if (this.m.isJournaled())
+            this.m.checkpoint();
+        else
+            this.m.save("data.snap");
     }
 
     /**
-     * Loads the system state from a file.
+     * Loads the system state: the snapshot file plus the operations journaled
+     * after it, or the serialized files of older versions when there is no
+     * snapshot yet, or an empty model on a fresh install. From then on every
+     * operation is journaled, so a crash loses at most the last few milliseconds
+     * of work.
      *
      * @throws FileNotFoundException  If the file cannot be found.
      * @throws IOException            If an I/O error occurs.
@@ -475,8 +418,17 @@ public class Controller {
      *                                found.
      */
     public void load() throws FileNotFoundException, IOException, ClassNotFoundException {
-        this.m = Model.load("data.ser");
-        SystemDate.load("date.ser");
+        this.m.closeJournal();
+        if (new File("data.snap").exists() || new File("data.journal").exists()) {
+            this.m = Model.recover("data.snap", "data.journal", false);
+        } else if (new File("data.ser").exists()) {
+            this.m = Model.load("data.ser");
+            SystemDate.load("date.ser");
+            this.m.startJournal("data.snap", "data.journal", false);
+        } else {
+            this.m = new Model();
+            this.m.startJournal("data.snap", "data.journal", false);
+        }
     }
 
     /**
@@ -532,48 +484,60 @@ public class Controller {
      * @throws NullPointerException If there is a null reference while executing the
      *                              query.
      */
-    @SuppressWarnings("unchecked")
     public String querrierExecution(int query, LocalDate date1, LocalDate date2, int userID)
             throws NullPointerException {
-        String result = "";
+        Object result = querrierResult(query, date1, date2, userID);
+        if (result == null)
+            return "";
+        if (query == 7)
+            return String.format("%f", (double) result);
+        return result.toString();
+    }
+
+    /**
+     * Runs the specified querrier query on the live users and carriers of the
+     * model, which the queriers only read, and returns its result unformatted.
+     *
+     * @param query  The query number.
+     * @param date1  The start date for time frame queries.
+     * @param date2  The end date for time frame queries.
+     * @param userID The user ID for user-related queries.
+     * @return The user, carrier, list of orders or users, or vintage profit the
+     *         query finds, or null for an unknown query number.
+     * @throws NullPointerException If there is a null reference while executing the
+     *                              query, such as a query with no result.
+     */
+    public Object querrierResult(int query, LocalDate date1, LocalDate date2, int userID)
+            throws NullPointerException {
         Querier querier;
         switch (query) {
             case (1):
-                querier = new BiggestEarnerAllTime(m.getUserManagerCopy());
-                User u = (User) querier.execute();
-                result = u.toString();
+                querier = new BiggestEarnerAllTime(m.getUserManagerView());
                 break;
             case (2):
-                querier = new BiggestEarnerAllTimeFrame(m.getUserManagerCopy(), date1, date2);
-                User u2 = (User) querier.execute();
-                result = u2.toString();
+                querier = new BiggestEarnerAllTimeFrame(m.getUserManagerView(), date1, date2);
                 break;
             case (3):
-                querier = new BiggestCarrier(m.getCarrierManagerCopy());
-                Carrier c = (Carrier) querier.execute();
-                result = c.toString();
+                querier = new BiggestCarrier(m.getCarrierManagerView());
                 break;
             case (4):
-                querier = new EmmitedOrderList(m.getUserManagerCopy(), userID);
-                List<Order> l = (LinkedList<Order>) querier.execute();
-                result = l.toString();
+                querier = new EmmitedOrderList(m.getUserManagerView(), userID);
                 break;
             case (5):
-                querier = new PodiumSeller(m.getUserManagerCopy(), date1, date2);
-                List<User> l1 = (ArrayList<User>) querier.execute();
-                result = l1.toString();
+                querier = new PodiumSeller(m.getUserManagerView(), date1, date2);
                 break;
             case (6):
-                querier = new PodiumSpenders(m.getUserManagerCopy(), date1, date2);
-                List<User> l2 = (ArrayList<User>) querier.execute();
-                result = l2.toString();
+                querier = new PodiumSpenders(m.getUserManagerView(), date1, date2);
                 break;
             case (7):
                 querier = new VintageProfit(m.getVintageProfit());
-                double d = (double) querier.execute();
-                result = String.format("%f", d);
                 break;
+            default:
+                return null;
         }
+        Object result = querier.execute();
+        if (result == null)
+            throw new NullPointerException();
         return result;
     }
 
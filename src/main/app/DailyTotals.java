@@ -0,0 +1,128 @@
+package app;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running totals of values grouped by day. Values are kept in daily buckets
+ * and a prefix-sum table over the buckets is rebuilt lazily after a change,
+ * so the total of any time frame is answered with two binary searches.
+ */
+public class DailyTotals implements Serializable {
+    private static final long serialVersionUID = 2197485447038754536L;
+
+    private TreeMap<LocalDate, double[]> buckets;
+
+    private transient long[] days;
+    private transient double[] prefix;
+
+    /**
+     * Constructs an empty DailyTotals.
+     */
+    public DailyTotals() {
+        this.buckets = new TreeMap<LocalDate, double[]>();
+    }
+
+    /**
+     * Constructs a copy of the given DailyTotals.
+     *
+     * @param other the DailyTotals to copy
+     */
+    public DailyTotals(DailyTotals other) {
+        this.buckets = new TreeMap<LocalDate, double[]>();
+        for (Map.Entry<LocalDate, double[]> e : other.buckets.entrySet()) {
+            this.buckets.put(e.getKey(), e.getValue().clone());
+        }
+    }
+
+    /**
+     * Adds a value to the bucket of the given day.
+     *
+     * @param date  the day of the value
+     * @param value the value to add
+     */
+    public void add(LocalDate date, double value) {
+        double[] bucket = this.buckets.computeIfAbsent(date, d -> new double[2]);
+        bucket[0] += value;
+        bucket[1]++;
+        this.prefix = null;
+    }
+
+    /**
+     * Removes a value previously added to the bucket of the given day. The bucket
+     * is dropped when its last value is removed, so no rounding residue is left.
+     *
+     * @param date  the day of the value
+     * @param value the value to remove
+     */
+    public void remove(LocalDate date, double value) {
+        double[] bucket = this.buckets.get(date);
+        if (bucket == null)
+            return;
+
+        bucket[0] -= value;
+        bucket[1]--;
+        if (bucket[1] <= 0)
+            this.buckets.remove(date);
+        this.prefix = null;
+    }
+
+    /**
+     * Returns the total of the values strictly between two days.
+     *
+     * @param date1 the start of the time frame (exclusive)
+     * @param date2 the end of the time frame (exclusive)
+     * @return the total of the values in the time frame
+     */
+    public double sumBetween(LocalDate date1, LocalDate date2) {
+        if (this.prefix == null)
+            rebuild();
+
+        int from = upperBound(date1.toEpochDay());
+        int to = lowerBound(date2.toEpochDay());
+        if (to <= from)
+            return 0;
+        return this.prefix[to] - this.prefix[from];
+    }
+
+    /**
+     * Rebuilds the prefix-sum table from the daily buckets.
+     */
+    private void rebuild() {
+        long[] d = new long[this.buckets.size()];
+        double[] p = new double[this.buckets.size() + 1];
+        int i = 0;
+        for (Map.Entry<LocalDate, double[]> e : this.buckets.entrySet()) {
+            d[i] = e.getKey().toEpochDay();
+            p[i + 1] = p[i] + e.getValue()[0];
+            i++;
+        }
+        this.days = d;
+        this.prefix = p;
+    }
+
+    /**
+     * Returns the index of the first bucket after the given day.
+     *
+     * @param day the day, as an epoch day
+     * @return the index of the first bucket with a later day
+     */
+    private int upperBound(long day) {
+        int i = Arrays.binarySearch(this.days, day);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    /**
+     * Returns the index of the first bucket on or after the given day.
+     *
+     * @param day the day, as an epoch day
+     * @return the index of the first bucket that is not earlier
+     */
+    private int lowerBound(long day) {
+        int i = Arrays.binarySearch(this.days, day);
+        return i >= 0 ? i : -i - 1;
+    }
+}
@@ -0,0 +1,181 @@
+package app;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out the ids of one kind of object. Each thread takes a block of
+ * consecutive ids at a time and then numbers its objects from that block
+ * without touching any shared state, so threads creating objects at once never
+ * contend on a counter. A thread that uses up its block extends it in place
+ * when no other thread took ids in the meantime, so a single thread still
+ * numbers its objects 1, 2, 3 and so on.
+ * <p>
+ * The high-water mark, above every id handed out so far, is what a snapshot
+ * saves: a model restored from it numbers new objects after every id it holds,
+ * even if other threads had blocks they never used up. The blocks of threads
+ * that have ended are folded into the mark and dropped, so an allocator used
+ * by a long series of short-lived threads keeps only the blocks of the live
+ * ones.
+ */
+final class IdAllocator {
+
+    /**
+     * Number of ids a thread takes at a time.
+     */
+    static final int BLOCK = 64;
+
+    /**
+     * The ids of one thread: the unused part of its current block.
+     */
+    private static final class Block {
+        private final WeakReference<Thread> owner = new WeakReference<Thread>(Thread.currentThread());
+        private int generation = -1;
+        private int start;
+        private volatile int next;
+        private int limit;
+    }
+
+    private final AtomicInteger top;
+    private final List<Block> blocks;
+    private final ThreadLocal<Block> local;
+    private volatile int floor;
+    private volatile int generation;
+
+    /**
+     * Constructs an allocator whose first id is 1.
+     */
+    IdAllocator() {
+        this.top = new AtomicInteger(1);
+        this.blocks = new ArrayList<Block>();
+        this.local = ThreadLocal.withInitial(this::register);
+        this.floor = 1;
+    }
+
+    private Block register() {
+        Block b = new Block();
+        synchronized (this.blocks) {
+            prune();
+            this.blocks.add(b);
+        }
+        return b;
+    }
+
+    /**
+     * Drops the blocks of the threads that have ended, raising the floor to the
+     * ids they allocated, which can no longer change. Runs holding the lock on
+     * the blocks.
+     */
+    private void prune() {
+        int g = this.generation;
+        for (Iterator<Block> it = this.blocks.iterator(); it.hasNext();) {
+            Block b = it.next();
+            Thread t = b.owner.get();
+            if (t != null && t.isAlive())
+                continue;
+            if (b.generation == g && b.next > b.start)
+                this.floor = Math.max(this.floor, b.next);
+            it.remove();
+        }
+    }
+
+    /**
+     * Allocates an id.
+     *
+     * @return the id
+     */
+    int next() {
+        Block b = this.local.get();
+        int id = b.next;
+        if (id >= b.limit || b.generation != this.generation) {
+            refill(b, 1);
+            id = b.next;
+        }
+        b.next = id + 1;
+        return id;
+    }
+
+    /**
+     * Makes sure the calling thread can allocate a number of consecutive ids
+     * from its block, and returns the first of them without allocating it, so
+     * the ids an operation is about to take can be recorded in the journal.
+     *
+     * @param count the number of ids
+     * @return the id the next allocation of the calling thread returns
+     */
+    int reserve(int count) {
+        Block b = this.local.get();
+        if (b.limit - b.next < count || b.generation != this.generation)
+            refill(b, count);
+        return b.next;
+    }
+
+    /**
+     * Makes the next allocations of the calling thread return the given ids, as
+     * when replaying a journal record that carries the ids they had.
+     *
+     * @param first the first id
+     * @param count the number of ids
+     */
+    void pin(int first, int count) {
+        Block b = this.local.get();
+        b.generation = this.generation;
+        b.start = first;
+        b.limit = first + count;
+        b.next = first;
+        this.top.accumulateAndGet(first + count, Math::max);
+    }
+
+    /**
+     * Returns the high-water mark: an id above every id allocated so far.
+     *
+     * @return the id the next object would get on a single thread
+     */
+    int peek() {
+        int g = this.generation;
+        synchronized (this.blocks) {
+            prune();
+            int mark = this.floor;
+            for (Block b : this.blocks) {
+                int next = b.next;
+                if (b.generation == g && next > b.start)
+                    mark = Math.max(mark, next);
+            }
+            return mark;
+        }
+    }
+
+    /**
+     * Restarts the numbering, dropping every block handed out, as when a saved
+     * state is restored. Must not run while other threads allocate.
+     *
+     * @param next the id the next object gets
+     */
+    void reset(int next) {
+        this.floor = next;
+        this.top.set(next);
+        this.generation++;
+    }
+
+    /**
+     * Gives a thread a block with room for at least a number of ids: its block
+     * grows in place when it is still the last one handed out, and is replaced
+     * by a new one otherwise.
+     */
+    private void refill(Block b, int count) {
+        int size = Math.max(BLOCK, count);
+        int g = this.generation;
+        if (b.generation == g && this.top.compareAndSet(b.limit, b.limit + size)) {
+            b.limit += size;
+            return;
+        }
+        int start = this.top.getAndAdd(size);
+        b.generation = g;
+        b.start = start;
+        b.limit = start + size;
+        b.next = start;
+    }
+}
@@ -0,0 +1,206 @@
+package app;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash map from int keys to values, used by {@link OrderManager} to hold
+ * orders by id and by the search index to hold prices. Keys and values sit in
+ * two parallel arrays with open addressing and linear probing, so an entry
+ * costs two array slots instead of a {@code HashMap} node and a boxed key.
+ * Iteration follows the table, so its order is unspecified and may change
+ * whenever an entry is removed, as deletion shifts colliding entries back; use
+ * {@link IntLinkedMap} where the order matters. Values must not be null.
+ *
+ * @param <V> the type of the values
+ */
+class IntHashMap<V> implements Serializable {
+
+    private static final long serialVersionUID = -6180148561096561174L;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Constructs an empty map.
+     */
+    IntHashMap() {
+        this.keys = new int[MIN_CAPACITY];
+        this.values = new Object[MIN_CAPACITY];
+    }
+
+    /**
+     * Returns a map holding the entries of a {@code Map}.
+     *
+     * @param <V>     the type of the values
+     * @param entries the entries, none with a null value
+     * @return the new map
+     */
+    static <V> IntHashMap<V> of(Map<Integer, V> entries) {
+        IntHashMap<V> map = new IntHashMap<V>();
+        for (Map.Entry<Integer, V> e : entries.entrySet())
+            map.put(e.getKey(), e.getValue());
+        return map;
+    }
+
+    private static int hash(int key) {
+        return key ^ (key >>> 16);
+    }
+
+    private int slotOf(int key) {
+        int mask = this.keys.length - 1;
+        int i = hash(key) & mask;
+        while (this.values[i] != null && this.keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the key is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        return (V) this.values[slotOf(key)];
+    }
+
+    /**
+     * Checks if a key is in the map.
+     *
+     * @param key the key
+     * @return true if the map has a value for it
+     */
+    boolean containsKey(int key) {
+        return this.values[slotOf(key)] != null;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   the key
+     * @param value the value, not null
+     * @return the previous value, or null if the key was not in the map
+     * @throws NullPointerException if the value is null
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException();
+        int i = slotOf(key);
+        V previous = (V) this.values[i];
+        this.keys[i] = key;
+        this.values[i] = value;
+        if (previous == null && ++this.size > this.keys.length * 3 / 4)
+            resize(this.keys.length * 2);
+        return previous;
+    }
+
+    /**
+     * Removes a key. The entries that follow it in its probe run are shifted
+     * back, so lookups never meet a deleted slot.
+     *
+     * @param key the key
+     * @return the value it had, or null if the key was not in the map
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int i = slotOf(key);
+        V previous = (V) this.values[i];
+        if (previous == null)
+            return null;
+        int mask = this.keys.length - 1;
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (this.values[j] == null)
+                break;
+            int home = hash(this.keys[j]) & mask;
+            // the entry at j may fill the hole unless its home lies strictly
+            // between the hole and j, going round the table
+            if (hole <= j ? (home <= hole || home > j) : (home <= hole && home > j)) {
+                this.keys[hole] = this.keys[j];
+                this.values[hole] = this.values[j];
+                hole = j;
+            }
+        }
+        this.values[hole] = null;
+        this.size--;
+        return previous;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the size of the map
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns a view of the values, in table order.
+     *
+     * @return the values
+     */
+    Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new Iterator<V>() {
+                    private int next = advance(0);
+
+                    private int advance(int from) {
+                        Object[] v = IntHashMap.this.values;
+                        while (from < v.length && v[from] == null)
+                            from++;
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next < IntHashMap.this.values.length;
+                    }
+
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    public V next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        V v = (V) IntHashMap.this.values[this.next];
+                        this.next = advance(this.next + 1);
+                        return v;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return IntHashMap.this.size;
+            }
+        };
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int j = slotOf(oldKeys[i]);
+                this.keys[j] = oldKeys[i];
+                this.values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package app;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A map from int keys to values that remembers insertion order, used by
+ * {@link User} and {@link ItemManager} to hold items by id. Lookups, insertions and removals take
+ * constant time and iteration follows the order the keys were first added,
+ * like the lists the users used to keep.
+ *
+ * <p>
+ * Entries live in parallel arrays in insertion order; an open addressing table
+ * of int slots maps each key to its position. Removing an entry leaves a hole
+ * that iteration skips, and the arrays are compacted once holes outnumber the
+ * entries. Keys are plain ints, so no key is ever boxed. Values must not be
+ * null.
+ * </p>
+ *
+ * @param <V> the type of the values
+ */
+class IntLinkedMap<V> implements Iterable<V>, Serializable {
+
+    private static final long serialVersionUID = 4715207349059835180L;
+
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] keys;
+    private Object[] values;
+    private int end;
+    private int size;
+
+    /**
+     * Positions in the entry arrays plus one, so that zero marks a free slot.
+     */
+    private int[] table;
+
+    /**
+     * Constructs an empty map.
+     */
+    IntLinkedMap() {
+        this.keys = new int[MIN_CAPACITY];
+        this.values = new Object[MIN_CAPACITY];
+        this.table = new int[MIN_CAPACITY * 2];
+    }
+
+    /**
+     * Constructs a map with the same entries, in the same order, as another.
+     *
+     * @param other the map to copy
+     */
+    IntLinkedMap(IntLinkedMap<V> other) {
+        this.keys = new int[Math.max(MIN_CAPACITY, other.size)];
+        this.values = new Object[this.keys.length];
+        this.table = new int[tableSizeFor(this.keys.length)];
+        for (int i = 0; i < other.end; i++) {
+            if (other.values[i] != null)
+                append(other.keys[i], other.values[i]);
+        }
+    }
+
+    /**
+     * Returns a map holding the entries of a {@code Map}, in its iteration
+     * order.
+     *
+     * @param entries the entries
+     * @return the map
+     */
+    static <V> IntLinkedMap<V> of(Map<Integer, V> entries) {
+        IntLinkedMap<V> map = new IntLinkedMap<V>();
+        for (Map.Entry<Integer, V> e : entries.entrySet())
+            map.put(e.getKey(), e.getValue());
+        return map;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if the map has an entry for a key.
+     *
+     * @param key the key
+     * @return true if the key is present
+     */
+    boolean containsKey(int key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int slot = slotOf(key);
+        return slot < 0 ? null : (V) this.values[this.table[slot] - 1];
+    }
+
+    /**
+     * Sets the value of a key. A new key goes to the end of the iteration order;
+     * an existing key keeps its place.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the previous value, or null if the key was absent
+     * @throws NullPointerException if the value is null
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException();
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            int pos = this.table[slot] - 1;
+            V previous = (V) this.values[pos];
+            this.values[pos] = value;
+            return previous;
+        }
+        if (this.end == this.keys.length)
+            makeRoom();
+        append(key, value);
+        return null;
+    }
+
+    /**
+     * Removes the entry of a key.
+     *
+     * @param key the key
+     * @return the removed value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int slot = slotOf(key);
+        if (slot < 0)
+            return null;
+        int pos = this.table[slot] - 1;
+        V value = (V) this.values[pos];
+        this.values[pos] = null;
+        this.size--;
+        deleteSlot(slot);
+
+        if (this.size == 0)
+            this.end = 0;
+        else if (this.end - this.size > this.size)
+            compact(this.keys.length);
+        return value;
+    }
+
+    /**
+     * Returns the values in insertion order, as a new list.
+     *
+     * @return the values
+     */
+    @SuppressWarnings("unchecked")
+    List<V> values() {
+        List<V> list = new ArrayList<V>(this.size);
+        for (int i = 0; i < this.end; i++) {
+            if (this.values[i] != null)
+                list.add((V) this.values[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Returns a live view of the values in insertion order, without copying
+     * them. The map must not be modified while the view is iterated.
+     *
+     * @return the values
+     */
+    Collection<V> view() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return IntLinkedMap.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return IntLinkedMap.this.size;
+            }
+        };
+    }
+
+    /**
+     * Iterates over the values in insertion order. The map must not be modified
+     * during the iteration.
+     *
+     * @return an iterator over the values
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private int next = skipHoles(0);
+
+            @Override
+            public boolean hasNext() {
+                return this.next < IntLinkedMap.this.end;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                V value = (V) IntLinkedMap.this.values[this.next];
+                this.next = skipHoles(this.next + 1);
+                return value;
+            }
+        };
+    }
+
+    private int skipHoles(int i) {
+        while (i < this.end && this.values[i] == null)
+            i++;
+        return i;
+    }
+
+    /**
+     * Appends an entry for a key known to be absent, assuming there is room.
+     */
+    private void append(int key, Object value) {
+        this.keys[this.end] = key;
+        this.values[this.end] = value;
+        this.end++;
+        this.size++;
+
+        int mask = this.table.length - 1;
+        int slot = hash(key) & mask;
+        while (this.table[slot] != 0)
+            slot = (slot + 1) & mask;
+        this.table[slot] = this.end;
+    }
+
+    /**
+     * Frees space at the end of the entry arrays, squeezing out the holes or
+     * growing the arrays when there are few of them.
+     */
+    private void makeRoom() {
+        int capacity = this.keys.length;
+        if (this.end - this.size < capacity / 4)
+            capacity *= 2;
+        compact(capacity);
+    }
+
+    /**
+     * Rewrites the entries without holes into arrays of the given capacity and
+     * rebuilds the table.
+     */
+    private void compact(int capacity) {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        int oldEnd = this.end;
+
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.table = new int[tableSizeFor(capacity)];
+        this.end = 0;
+        this.size = 0;
+        for (int i = 0; i < oldEnd; i++) {
+            if (oldValues[i] != null)
+                append(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    /**
+     * Finds the table slot holding a key.
+     *
+     * @return the slot, or -1 if the key is absent
+     */
+    private int slotOf(int key) {
+        int mask = this.table.length - 1;
+        int slot = hash(key) & mask;
+        int pos;
+        while ((pos = this.table[slot]) != 0) {
+            if (this.keys[pos - 1] == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties a table slot, moving back the entries of the same probe sequence
+     * so that lookups never stop early at the freed slot.
+     */
+    private void deleteSlot(int slot) {
+        int mask = this.table.length - 1;
+        int free = slot;
+        int i = (free + 1) & mask;
+        int pos;
+        while ((pos = this.table[i]) != 0) {
+            int home = hash(this.keys[pos - 1]) & mask;
+            // move the entry if its home is not cyclically within (free, i]
+            boolean stays = free <= i ? free < home && home <= i : free < home || home <= i;
+            if (!stays) {
+                this.table[free] = pos;
+                free = i;
+            }
+            i = (i + 1) & mask;
+        }
+        this.table[free] = 0;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = MIN_CAPACITY * 2;
+        while (n < capacity * 2)
+            n <<= 1;
+        return n;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
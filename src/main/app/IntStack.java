@@ -0,0 +1,146 @@
+package app;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * A stack of ints, used by {@link Item} for its previous owners. Unlike a
+ * {@code Stack<Integer>} it keeps its values in a plain int array, grown only
+ * when needed, so an item that never changed hands holds no array at all and
+ * no owner id is ever boxed.
+ */
+public class IntStack implements Serializable {
+
+    private static final long serialVersionUID = 2511318687246257238L;
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] elements;
+    private int size;
+
+    /**
+     * Constructs an empty stack.
+     */
+    public IntStack() {
+        this.elements = EMPTY;
+    }
+
+    /**
+     * Constructs a stack holding the given values, the last one on top.
+     *
+     * @param values the values, from the bottom of the stack up
+     */
+    public IntStack(List<Integer> values) {
+        this.elements = values.isEmpty() ? EMPTY : new int[values.size()];
+        for (int v : values)
+            this.elements[this.size++] = v;
+    }
+
+    /**
+     * Returns a stack holding the values of a {@code Stack}.
+     *
+     * @param values the stack, may be null
+     * @return the stack of ints, or null if the given stack is null
+     */
+    public static IntStack of(Stack<Integer> values) {
+        return values == null ? null : new IntStack(values);
+    }
+
+    /**
+     * Pushes a value on top of the stack.
+     *
+     * @param v the value
+     */
+    public void push(int v) {
+        if (this.size == this.elements.length)
+            this.elements = Arrays.copyOf(this.elements, Math.max(2, this.size * 2));
+        this.elements[this.size++] = v;
+    }
+
+    /**
+     * Removes the value on top of the stack.
+     *
+     * @return the value
+     * @throws EmptyStackException if the stack is empty
+     */
+    public int pop() throws EmptyStackException {
+        if (this.size == 0)
+            throw new EmptyStackException();
+        return this.elements[--this.size];
+    }
+
+    /**
+     * Returns the value on top of the stack.
+     *
+     * @return the value
+     * @throws EmptyStackException if the stack is empty
+     */
+    public int peek() throws EmptyStackException {
+        if (this.size == 0)
+            throw new EmptyStackException();
+        return this.elements[this.size - 1];
+    }
+
+    /**
+     * Returns a value by its position from the bottom of the stack.
+     *
+     * @param index the position
+     * @return the value
+     * @throws IndexOutOfBoundsException if there is no such position
+     */
+    public int get(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException(index);
+        return this.elements[index];
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return the size of the stack
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if the stack is empty.
+     *
+     * @return true if it holds no value
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the values as a {@code Stack}, for callers that need one.
+     *
+     * @return a new stack with the same values
+     */
+    public Stack<Integer> toStack() {
+        Stack<Integer> s = new Stack<Integer>();
+        for (int i = 0; i < this.size; i++)
+            s.push(this.elements[i]);
+        return s;
+    }
+
+    /**
+     * Returns a string representation of the stack, from the bottom up, in the
+     * same form as a {@code Stack}.
+     *
+     * @return a string representation of the stack
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(this.elements[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
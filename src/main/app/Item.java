@@ -5,23 +5,42 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represents an item with a description, brand, reference, base price,
  * price correction, carrier, condition score, previous owners,
  * premium status and ID.
+ *
+ * <p>
+ * The price is remembered once computed. It stays valid while the item keeps
+ * its version, which every setter moves on, and its price context, such as the
+ * system date for premium items. Versions are never reused, not even by
+ * another item, so the same version and id also find the card of the item in
+ * the {@link CardCache}.
+ * </p>
  */
 public abstract class Item implements Serializable {
+    private static final long serialVersionUID = 4308011437686821138L;
+
     private String description;
     private String brand;
     private double basePrice;
     private Carrier carrier;
     private double conditionScore;
-    Stack<Integer> previousOwners;
+    IntStack previousOwners;
     private int id;
     private int userId;
+    private transient int version = VERSIONS.incrementAndGet();
+    private transient double price;
+    private transient long pricedAt = UNPRICED;
+
+    private static final long UNPRICED = -1;
+    private static final AtomicInteger VERSIONS = new AtomicInteger();
+    private static final LongAdder PRICE_HITS = new LongAdder();
+    private static final LongAdder PRICE_MISSES = new LongAdder();
 
-    private static int currentID = 1;
 
     /**
      * Default constructor for Item class.
@@ -32,9 +51,8 @@ public abstract class Item implements Serializable {
         this.brand = "n/d";
         this.basePrice = 0;
         this.conditionScore = 0;
-        this.previousOwners = new Stack<Integer>();
-        this.id = currentID;
-        currentID++;
+        this.previousOwners = new IntStack();
+        this.id = ModelContext.current().itemIds().next();
         this.userId = 0; // admin id
     }
 
@@ -56,8 +74,8 @@ public abstract class Item implements Serializable {
         this.basePrice = basePrice;
         this.carrier = carrier;
         this.conditionScore = conditionScore;
-        this.previousOwners = previousOwners;
-        this.id = currentID++;
+        this.previousOwners = IntStack.of(previousOwners);
+        this.id = ModelContext.current().itemIds().next();
         this.userId = userId;
     }
 
@@ -72,9 +90,12 @@ public abstract class Item implements Serializable {
         this.basePrice = oneItem.getBasePrice();
         this.carrier = oneItem.getCarrier();
         this.conditionScore = oneItem.getConditionScore();
-        this.previousOwners = oneItem.getPreviousOwners();
+        this.previousOwners = oneItem.previousOwners;
         this.id = oneItem.getID();
         this.userId = oneItem.getUserId();
+        this.version = oneItem.version;
+        this.price = oneItem.price;
+        this.pricedAt = oneItem.pricedAt;
     }
 
     /**
@@ -128,11 +149,94 @@ public abstract class Item implements Serializable {
     }
 
     /**
-     * Returns the final price of the item.
+     * Returns the final price of the item, computing it only if something it
+     * depends on changed since it was last computed.
      *
      * @return the final price of the item
      */
-    public abstract double getPrice();
+    public final double getPrice() {
+        long stamp = priceStamp();
+        if (this.pricedAt == stamp) {
+            PRICE_HITS.increment();
+            return this.price;
+        }
+
+        PRICE_MISSES.increment();
+        double price = computePrice();
+        this.price = price;
+        this.pricedAt = stamp;
+        return price;
+    }
+
+    /**
+     * Returns what the price was computed from: the version of the item and
+     * its price context. Never equal to {@link #UNPRICED}.
+     */
+    private long priceStamp() {
+        return ((long) priceContext() << 32) | (this.version & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns a number that changes whenever something outside the fields of
+     * the item, which its price depends on, changes.
+     *
+     * @return the price context, zero when the price depends on the fields only
+     */
+    int priceContext() {
+        return 0;
+    }
+
+    /**
+     * Computes the final price of the item.
+     *
+     * @return the final price of the item
+     */
+    abstract double computePrice();
+
+    /**
+     * Records that a field of the item changed, so the price is computed and
+     * the card drawn again.
+     */
+    void changed() {
+        this.version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Returns the version of the item.
+     *
+     * @return a number that changes whenever a field of the item does
+     */
+    int version() {
+        return this.version;
+    }
+
+    /**
+     * Returns how many times a remembered price was returned. The counters are
+     * adders, so sessions pricing items at once neither lose counts nor contend
+     * on a single field.
+     *
+     * @return the number of price cache hits
+     */
+    public static long getPriceCacheHits() {
+        return PRICE_HITS.sum();
+    }
+
+    /**
+     * Returns how many times a price had to be computed.
+     *
+     * @return the number of price cache misses
+     */
+    public static long getPriceCacheMisses() {
+        return PRICE_MISSES.sum();
+    }
+
+    /**
+     * Sets the price cache counters back to zero.
+     */
+    public static void resetPriceCacheStats() {
+        PRICE_HITS.reset();
+        PRICE_MISSES.reset();
+    }
 
     /**
      * Returns the carrier of the item.
@@ -153,14 +257,36 @@ public abstract class Item implements Serializable {
     }
 
     /**
-     * Returns the number of previous owners of the item.
+     * Returns the previous owners of the item. The stack is a copy; owners are
+     * added and removed through {@link #addPreviousOwner(int)} and
+     * {@link #returnOwnership()}.
      *
-     * @return the number of previous owners of the item
+     * @return the ids of the previous owners, the latest on top, or null if the
+     *         item has no record of them
      */
     public Stack<Integer> getPreviousOwners() {
+        return this.previousOwners == null ? null : this.previousOwners.toStack();
+    }
+
+    /**
+     * Returns the previous owners of the item themselves, without copying them.
+     *
+     * @return the ids of the previous owners, or null
+     */
+    IntStack owners() {
         return this.previousOwners;
     }
 
+    /**
+     * Returns the number of previous owners of the item.
+     *
+     * @return the number of previous owners
+     * @throws NullPointerException if the item has no record of them
+     */
+    public int getNumberOfPreviousOwners() throws NullPointerException {
+        return this.previousOwners.size();
+    }
+
     /**
      * Returns the ID of the item.
      *
@@ -170,6 +296,33 @@ public abstract class Item implements Serializable {
         return this.id;
     }
 
+    /**
+     * Sets the ID of the item. Only used when restoring a saved state.
+     *
+     * @param id the ID of the item
+     */
+    void setID(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the ID the next item will get.
+     *
+     * @return the ID the next item will get
+     */
+    static int getCurrentID() {
+        return ModelContext.current().itemIds().peek();
+    }
+
+    /**
+     * Sets the ID the next item will get. Only used when restoring a saved state.
+     *
+     * @param next the ID the next item will get
+     */
+    static void setCurrentID(int next) {
+        ModelContext.current().itemIds().reset(next);
+    }
+
     /**
      * Sets the description of the item.
      *
@@ -177,6 +330,7 @@ public abstract class Item implements Serializable {
      */
     public void setDescription(String description) {
         this.description = description;
+        changed();
     }
 
     /**
@@ -186,6 +340,7 @@ public abstract class Item implements Serializable {
      */
     public void setUserId(int userId) {
         this.userId = userId;
+        changed();
     }
 
     /**
@@ -195,6 +350,7 @@ public abstract class Item implements Serializable {
      */
     public void setBrand(String brand) {
         this.brand = brand;
+        changed();
     }
 
 
@@ -205,6 +361,7 @@ public abstract class Item implements Serializable {
      */
     public void setBasePrice(double basePrice) {
         this.basePrice = basePrice;
+        changed();
     }
 
     /**
@@ -214,6 +371,7 @@ public abstract class Item implements Serializable {
      */
     public void setCarrier(Carrier carrier) {
         this.carrier = carrier;
+        changed();
     }
 
     /**
@@ -223,6 +381,7 @@ public abstract class Item implements Serializable {
      */
     public void setConditionScore(double conditionScore) {
         this.conditionScore = conditionScore;
+        changed();
     }
 
     /**
@@ -231,16 +390,27 @@ public abstract class Item implements Serializable {
      * @param previousOwners the new number of previous owners of the item
      */
     public void setPreviousOwners(Stack<Integer> previousOwners) {
+        setOwners(IntStack.of(previousOwners));
+    }
+
+    /**
+     * Sets the previous owners of the item, as when restoring a saved state.
+     *
+     * @param previousOwners the ids of the previous owners, or null
+     */
+    void setOwners(IntStack previousOwners) {
         this.previousOwners = previousOwners;
+        changed();
     }
 
     public void addPreviousOwner(int user_id2) {
         this.previousOwners.push(user_id2);
+        changed();
     }
 
     public void returnOwnership() {
         this.userId = this.previousOwners.pop();
-
+        changed();
     }
 
     /**
@@ -266,11 +436,21 @@ public abstract class Item implements Serializable {
     public abstract Item clone();
 
     /**
-     * Returns a string representation of the item.
+     * Returns the card of the item, from the card cache of the current context
+     * when it was drawn before.
+     *
+     * @return a string representation of the item
+     */
+    public final String showItem() {
+        return ModelContext.current().getCardCache().card(this);
+    }
+
+    /**
+     * Draws the card of the item.
      *
      * @return a string representation of the item
      */
-    public abstract String showItem();
+    abstract String renderItem();
 
     /**
      * Writes the static variable
@@ -278,16 +458,29 @@ public abstract class Item implements Serializable {
      */
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject(); // default serialization
-        out.writeInt(currentID); // save static variable
+        out.writeInt(getCurrentID()); // save the counter of the context
     }
 
     /**
-     * Reads the static variable
+     * Reads the static variable. Files of versions before {@link IntStack} hold
+     * the previous owners as a {@code Stack}, which is converted.
      *
      */
+    @SuppressWarnings("unchecked")
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject(); // default deserialization
-        currentID = in.readInt(); // load static variable
+        ObjectInputStream.GetField fields = in.readFields();
+        this.description = (String) fields.get("description", null);
+        this.brand = (String) fields.get("brand", null);
+        this.basePrice = fields.get("basePrice", 0.0);
+        this.carrier = (Carrier) fields.get("carrier", null);
+        this.conditionScore = fields.get("conditionScore", 0.0);
+        this.id = fields.get("id", 0);
+        this.userId = fields.get("userId", 0);
+        Object owners = fields.get("previousOwners", null);
+        this.previousOwners = owners instanceof Stack ? IntStack.of((Stack<Integer>) owners) : (IntStack) owners;
+        setCurrentID(in.readInt()); // load the counter of the context
+        this.pricedAt = UNPRICED; // transient fields are not initialized
+        this.version = VERSIONS.incrementAndGet();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package app;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks over item ids, used by {@link Model} so that concurrent
+ * sessions never sell the same listed item twice. Every id maps to one of a
+ * fixed number of locks; a cart takes the locks of all its items, always in
+ * increasing stripe order, so two carts can never wait on each other in a
+ * cycle. Carts with no stripe in common proceed in parallel.
+ */
+class ItemLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * Constructs the locks.
+     *
+     * @param stripes the minimum number of stripes, rounded up to a power of two
+     */
+    ItemLocks(int stripes) {
+        int n = 1;
+        while (n < stripes)
+            n <<= 1;
+        this.stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++)
+            this.stripes[i] = new ReentrantLock();
+        this.mask = n - 1;
+    }
+
+    /**
+     * Takes the locks of every item of a cart, waiting for them if needed.
+     *
+     * @param ids the ids of the items
+     * @return the stripes taken, to be given back to {@link #unlock(int[])}
+     */
+    int[] lock(List<Integer> ids) {
+        int[] taken = new int[ids.size()];
+        int n = 0;
+        for (int id : ids)
+            taken[n++] = stripeOf(id);
+        Arrays.sort(taken);
+
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || taken[i] != taken[distinct - 1])
+                taken[distinct++] = taken[i];
+        }
+        taken = Arrays.copyOf(taken, distinct);
+
+        for (int s : taken)
+            this.stripes[s].lock();
+        return taken;
+    }
+
+    /**
+     * Releases locks taken by {@link #lock(List)}.
+     *
+     * @param taken the stripes taken
+     */
+    void unlock(int[] taken) {
+        for (int i = taken.length - 1; i >= 0; i--)
+            this.stripes[taken[i]].unlock();
+    }
+
+    private int stripeOf(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & this.mask;
+    }
+}
@@ -1,8 +1,12 @@
 package app;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 /**
@@ -10,18 +14,26 @@ import java.io.Serializable;
  * system.
  * It keeps track of sold and listed items, allows adding and removing items,
  * updating their status, and provides methods for retrieving items.
+ * Listed items can be searched through an {@link ItemSearchIndex}, built on the
+ * first search and kept up to date from then on.
+ * Its methods are synchronized, so sessions placing orders concurrently can
+ * look up and move items; the read-only views are not, and must not be used
+ * while that happens.
  */
 public class ItemManager implements Serializable {
-    private HashMap<Integer, Item> soldItemsMap;
-    private HashMap<Integer, Item> listedItemsMap;
+    private static final long serialVersionUID = -5792850734781152863L;
+
+    private IntLinkedMap<Item> soldItemsMap;
+    private IntLinkedMap<Item> listedItemsMap;
+    private transient ItemSearchIndex searchIndex;
 
     /**
      * Constructs a new {@code ItemManager} object.
      * Initializes the soldItemsMap and listedItemsMap.
      */
     public ItemManager() {
-        this.soldItemsMap = new HashMap<Integer, Item>();
-        this.listedItemsMap = new HashMap<Integer, Item>();
+        this.soldItemsMap = new IntLinkedMap<Item>();
+        this.listedItemsMap = new IntLinkedMap<Item>();
     }
 
     /**
@@ -30,7 +42,7 @@ public class ItemManager implements Serializable {
      * @param id the ID of the item to retrieve
      * @return the item with the specified ID, or null if it is not found
      */
-    public Item getItem(int id) {
+    public synchronized Item getItem(int id) {
         if (this.soldItemsMap.containsKey(id)) {
             return this.soldItemsMap.get(id);
         } else if (this.listedItemsMap.containsKey(id)) {
@@ -40,12 +52,22 @@ public class ItemManager implements Serializable {
         }
     }
 
+    /**
+     * Retrieves a listed item by its ID.
+     *
+     * @param id the ID of the item
+     * @return the listed item with the specified ID, or null if it is not listed
+     */
+    public synchronized Item getListedItem(int id) {
+        return this.listedItemsMap.get(id);
+    }
+
     /**
      * Adds a sold item to the soldItemsMap.
      *
      * @param item the item to add
      */
-    public void addSoldItem(Item item) {
+    public synchronized void addSoldItem(Item item) {
         this.soldItemsMap.put(item.getID(), item);
     }
 
@@ -54,8 +76,14 @@ public class ItemManager implements Serializable {
      *
      * @param item the item to add
      */
-    public void addListedItem(Item item) {
-        this.listedItemsMap.put(item.getID(), item.clone());
+    public synchronized void addListedItem(Item item) {
+        Item copy = item.clone();
+        Item previous = this.listedItemsMap.put(copy.getID(), copy);
+        if (this.searchIndex != null) {
+            if (previous != null)
+                this.searchIndex.remove(previous);
+            this.searchIndex.add(copy);
+        }
     }
 
     /**
@@ -64,8 +92,11 @@ public class ItemManager implements Serializable {
      * @param id the ID of the item to remove
      * @return the removed item, or null if it is not found
      */
-    public Item removeListedItem(int id) {
-        return this.listedItemsMap.remove(id);
+    public synchronized Item removeListedItem(int id) {
+        Item item = this.listedItemsMap.remove(id);
+        if (item != null && this.searchIndex != null)
+            this.searchIndex.remove(item);
+        return item;
     }
 
     /**
@@ -74,7 +105,7 @@ public class ItemManager implements Serializable {
      * @param id the ID of the item to remove
      * @return the removed item, or null if it is not found
      */
-    public Item removeSoldItem(int id) {
+    public synchronized Item removeSoldItem(int id) {
         return this.soldItemsMap.remove(id).clone();
     }
 
@@ -84,7 +115,7 @@ public class ItemManager implements Serializable {
      *
      * @param id the ID of the item to update
      */
-    public void updateItem(int id) {
+    public synchronized void updateItem(int id) {
         if (this.listedItemsMap.containsKey(id)) {
             Item item = removeListedItem(id);
             addSoldItem(item);
@@ -96,10 +127,9 @@ public class ItemManager implements Serializable {
      *
      * @return the list of sold items
      */
-    public List<Item> getSoldItems() {
+    public synchronized List<Item> getSoldItems() {
         List<Item> items = new LinkedList<Item>();
-        for (Integer key : this.soldItemsMap.keySet()) {
-            Item value = this.soldItemsMap.get(key);
+        for (Item value : this.soldItemsMap) {
             items.add(value.clone());
         }
         return items;
@@ -111,22 +141,39 @@ public class ItemManager implements Serializable {
      * @return the list of listed items
      */
 
-    public List<Item> getListedItems() {
+    public synchronized List<Item> getListedItems() {
         List<Item> items = new LinkedList<Item>();
-        for (Integer key : this.listedItemsMap.keySet()) {
-            Item value = this.listedItemsMap.get(key);
+        for (Item value : this.listedItemsMap) {
             items.add(value.clone());
         }
         return items;
     }
 
+    /**
+     * Returns a read-only view of the listed items, without cloning them.
+     *
+     * @return the listed items
+     */
+    Collection<Item> listedItemsView() {
+        return Collections.unmodifiableCollection(this.listedItemsMap.view());
+    }
+
+    /**
+     * Returns a read-only view of the sold items, without cloning them.
+     *
+     * @return the sold items
+     */
+    Collection<Item> soldItemsView() {
+        return Collections.unmodifiableCollection(this.soldItemsMap.view());
+    }
+
     /**
      * Searches for an item with the specified ID.
      *
      * @param id the ID of the item to search for
      * @return the item with the specified ID, or null if it is not found
      */
-    public Item searchItem(int id) {
+    public synchronized Item searchItem(int id) {
         Item item = this.getItem(id);
         if (item != null) {
             return item;
@@ -141,10 +188,27 @@ public class ItemManager implements Serializable {
      *
      * @param id the ID of the item to move from sold to listed
      */
-    public void soldToListed(int id) {
+    public synchronized void soldToListed(int id) {
         Item item = this.soldItemsMap.get(id);
         this.soldItemsMap.remove(item.getID());
-        this.listedItemsMap.put(item.getID(), item);
+        Item previous = this.listedItemsMap.put(item.getID(), item);
+        if (this.searchIndex != null) {
+            if (previous != null)
+                this.searchIndex.remove(previous);
+            this.searchIndex.add(item);
+        }
+    }
+
+    /**
+     * Searches the listed items.
+     *
+     * @param query the criteria and the page to return
+     * @return the matching items of the requested page, ordered by price then id
+     */
+    public synchronized List<Item> search(ItemQuery query) {
+        if (this.searchIndex == null)
+            this.searchIndex = new ItemSearchIndex(this.listedItemsMap);
+        return this.searchIndex.search(query);
     }
 
     /**
@@ -154,7 +218,7 @@ public class ItemManager implements Serializable {
      * @return {@code true} if all the items are listed for sale, {@code false}
      *         otherwise
      */
-    public boolean areAllThisForSale(List<Integer> items_keys) {
+    public synchronized boolean areAllThisForSale(List<Integer> items_keys) {
         for (int key : items_keys) {
             Item item = this.listedItemsMap.get(key);
             if (item == null) {
@@ -163,4 +227,31 @@ public class ItemManager implements Serializable {
         }
         return true;
     }
+
+    /**
+     * Reads the manager. Files of earlier versions hold the items in a
+     * {@code HashMap} or an {@link IntHashMap}, which are converted.
+     *
+     * @param in the stream to read from
+     * @throws IOException            if the stream cannot be read
+     * @throws ClassNotFoundException if the class of an item cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.soldItemsMap = byId(fields.get("soldItemsMap", null));
+        this.listedItemsMap = byId(fields.get("listedItemsMap", null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IntLinkedMap<Item> byId(Object items) {
+        if (items instanceof Map)
+            return IntLinkedMap.of((Map<Integer, Item>) items);
+        if (items instanceof IntHashMap) {
+            IntLinkedMap<Item> map = new IntLinkedMap<Item>();
+            for (Item i : ((IntHashMap<Item>) items).values())
+                map.put(i.getID(), i);
+            return map;
+        }
+        return (IntLinkedMap<Item>) items;
+    }
 }
@@ -0,0 +1,261 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A search over the listed items. Every criterion that is set must hold for an
+ * item to match; criteria left unset match everything. Results are ordered by
+ * price, then by id, and returned one page at a time.
+ *
+ * <pre>
+ * ItemQuery q = new ItemQuery().words("leather").kind(ItemQuery.Kind.BAG).premium(false)
+ *         .priceBetween(20, 100).page(0, 25);
+ * </pre>
+ */
+public class ItemQuery {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * The kinds of items, premium versions included.
+     */
+    public enum Kind {
+        BAG, TSHIRT, SNEAKER;
+
+        /**
+         * Returns the kind of an item.
+         *
+         * @param i the item
+         * @return the kind of the item
+         */
+        public static Kind of(Item i) {
+            if (i instanceof Bag)
+                return BAG;
+            if (i instanceof Tshirt)
+                return TSHIRT;
+            return SNEAKER;
+        }
+    }
+
+    private List<String> words;
+    private String brand;
+    private Kind kind;
+    private Tshirt.TshirtSize tshirtSize;
+    private Sneaker.SneakerType sneakerType;
+    private String carrier;
+    private Boolean premium;
+    private double minPrice;
+    private double maxPrice;
+    private int page;
+    private int pageSize;
+
+    /**
+     * Constructs a query that matches every listed item, returning the first
+     * page of 20 items.
+     */
+    public ItemQuery() {
+        this.words = new ArrayList<String>();
+        this.minPrice = Double.NEGATIVE_INFINITY;
+        this.maxPrice = Double.POSITIVE_INFINITY;
+        this.page = 0;
+        this.pageSize = 20;
+    }
+
+    /**
+     * Requires the description or the brand of the item to contain every word
+     * of the given text, ignoring case.
+     *
+     * @param text the words to look for
+     * @return this query
+     */
+    public ItemQuery words(String text) {
+        this.words.addAll(tokens(text));
+        return this;
+    }
+
+    /**
+     * Requires the item to be of the given brand, ignoring case.
+     *
+     * @param brand the brand
+     * @return this query
+     */
+    public ItemQuery brand(String brand) {
+        this.brand = normalize(brand);
+        return this;
+    }
+
+    /**
+     * Requires the item to be of the given kind.
+     *
+     * @param kind the kind
+     * @return this query
+     */
+    public ItemQuery kind(Kind kind) {
+        this.kind = kind;
+        return this;
+    }
+
+    /**
+     * Requires the item to be a T-shirt of the given size.
+     *
+     * @param size the size
+     * @return this query
+     */
+    public ItemQuery tshirtSize(Tshirt.TshirtSize size) {
+        this.tshirtSize = size;
+        return this;
+    }
+
+    /**
+     * Requires the item to be a sneaker of the given type.
+     *
+     * @param type the type
+     * @return this query
+     */
+    public ItemQuery sneakerType(Sneaker.SneakerType type) {
+        this.sneakerType = type;
+        return this;
+    }
+
+    /**
+     * Requires the item to be shipped by the given carrier, ignoring case.
+     *
+     * @param carrier the name of the carrier
+     * @return this query
+     */
+    public ItemQuery carrier(String carrier) {
+        this.carrier = normalize(carrier);
+        return this;
+    }
+
+    /**
+     * Requires the item to be, or not to be, a premium item.
+     *
+     * @param premium true for premium items only, false for normal items only
+     * @return this query
+     */
+    public ItemQuery premium(boolean premium) {
+        this.premium = premium;
+        return this;
+    }
+
+    /**
+     * Requires the current price of the item to be within a range.
+     *
+     * @param min the lowest price, inclusive
+     * @param max the highest price, inclusive
+     * @return this query
+     */
+    public ItemQuery priceBetween(double min, double max) {
+        this.minPrice = min;
+        this.maxPrice = max;
+        return this;
+    }
+
+    /**
+     * Selects the page of results to return.
+     *
+     * @param page     the number of the page, starting at 0
+     * @param pageSize the number of items per page
+     * @return this query
+     * @throws IllegalArgumentException if the page is negative or the page size
+     *                                  is not positive
+     */
+    public ItemQuery page(int page, int pageSize) throws IllegalArgumentException {
+        if (page < 0 || pageSize <= 0)
+            throw new IllegalArgumentException();
+        this.page = page;
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Returns the number of the page to return.
+     *
+     * @return the page number
+     */
+    public int getPage() {
+        return this.page;
+    }
+
+    /**
+     * Returns the number of items per page.
+     *
+     * @return the page size
+     */
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * Returns the lowest price accepted.
+     *
+     * @return the lowest price
+     */
+    public double getMinPrice() {
+        return this.minPrice;
+    }
+
+    /**
+     * Returns the highest price accepted.
+     *
+     * @return the highest price
+     */
+    public double getMaxPrice() {
+        return this.maxPrice;
+    }
+
+    /**
+     * Returns the index terms an item must have to match, apart from the price.
+     *
+     * @return the terms, possibly none
+     */
+    List<String> terms() {
+        List<String> terms = new ArrayList<String>();
+        for (String w : this.words)
+            terms.add(ItemSearchIndex.word(w));
+        if (this.brand != null)
+            terms.add(ItemSearchIndex.brand(this.brand));
+        if (this.kind != null)
+            terms.add(ItemSearchIndex.kind(this.kind));
+        if (this.tshirtSize != null)
+            terms.add(ItemSearchIndex.tshirtSize(this.tshirtSize));
+        if (this.sneakerType != null)
+            terms.add(ItemSearchIndex.sneakerType(this.sneakerType));
+        if (this.carrier != null)
+            terms.add(ItemSearchIndex.carrier(this.carrier));
+        if (this.premium != null)
+            terms.add(ItemSearchIndex.premium(this.premium));
+        return terms;
+    }
+
+    /**
+     * Lowercases a value for comparisons that ignore case.
+     *
+     * @param s the value, may be null
+     * @return the normalized value, or null
+     */
+    static String normalize(String s) {
+        return s == null ? null : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits a text into lowercase words made of letters and digits.
+     *
+     * @param text the text, may be null
+     * @return the words
+     */
+    static List<String> tokens(String text) {
+        if (text == null)
+            return new ArrayList<String>();
+        List<String> words = new ArrayList<String>();
+        for (String w : SEPARATORS.split(normalize(text))) {
+            if (!w.isEmpty())
+                words.add(w);
+        }
+        return words;
+    }
+}
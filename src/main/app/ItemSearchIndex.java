@@ -0,0 +1,254 @@
+package app;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * In-memory index over the listed items, kept by {@link ItemManager}.
+ *
+ * <p>
+ * An inverted index maps every term (a word of the description or brand, the
+ * brand, the kind, the T-shirt size, the sneaker type, the carrier and the
+ * premium flag) to the items having it. Each posting is itself ordered by
+ * price, as is the secondary index holding every item, so a query walks the
+ * smallest posting it involves in price order, checks the item against the
+ * other postings and stops as soon as the requested page is full.
+ * </p>
+ *
+ * <p>
+ * The price of a premium item grows with the years since its release, so
+ * premium items are priced again whenever the system date has moved since the
+ * last query. Listed items must not be modified in place: they are taken out
+ * of the index with the terms they were added with.
+ * </p>
+ */
+class ItemSearchIndex {
+
+    /**
+     * An item in the price ordered sets. The same entry is shared by every set
+     * holding the item.
+     */
+    private static class PriceEntry implements Comparable<PriceEntry> {
+        private final double price;
+        private final int id;
+
+        PriceEntry(double price, int id) {
+            this.price = price;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(PriceEntry o) {
+            int c = Double.compare(this.price, o.price);
+            return c != 0 ? c : Integer.compare(this.id, o.id);
+        }
+    }
+
+    private final IntLinkedMap<Item> items;
+    private final Map<String, TreeSet<PriceEntry>> postings;
+    private final TreeSet<PriceEntry> byPrice;
+    private final IntHashMap<PriceEntry> prices;
+    private final Set<Integer> premiums;
+    private LocalDate pricedOn;
+
+    /**
+     * Builds the index over the given listed items. The map is read, never
+     * modified, and must be the one the index is later kept in sync with.
+     *
+     * @param items the listed items, by id
+     */
+    ItemSearchIndex(IntLinkedMap<Item> items) {
+        this.items = items;
+        this.postings = new HashMap<String, TreeSet<PriceEntry>>();
+        this.byPrice = new TreeSet<PriceEntry>();
+        this.prices = new IntHashMap<PriceEntry>();
+        this.premiums = new HashSet<Integer>();
+        this.pricedOn = SystemDate.getDate();
+
+        // inserting in price order keeps every tree growing at its right edge,
+        // which is much kinder to the caches than random insertions
+        List<PriceEntry> entries = new ArrayList<PriceEntry>(items.size());
+        for (Item i : items) {
+            if (i instanceof Premium)
+                this.premiums.add(i.getID());
+            entries.add(new PriceEntry(i.getPrice(), i.getID()));
+        }
+        entries.sort(null);
+        for (PriceEntry e : entries)
+            insert(e, termsOf(items.get(e.id)));
+    }
+
+    /**
+     * Adds a newly listed item.
+     *
+     * @param i the item
+     */
+    void add(Item i) {
+        if (i instanceof Premium)
+            this.premiums.add(i.getID());
+        insert(new PriceEntry(i.getPrice(), i.getID()), termsOf(i));
+    }
+
+    /**
+     * Removes an item that is no longer listed.
+     *
+     * @param i the item
+     */
+    void remove(Item i) {
+        this.premiums.remove(i.getID());
+        PriceEntry e = this.prices.get(i.getID());
+        if (e != null)
+            delete(e, termsOf(i));
+    }
+
+    private void insert(PriceEntry e, Set<String> terms) {
+        for (String term : terms)
+            this.postings.computeIfAbsent(term, k -> new TreeSet<PriceEntry>()).add(e);
+        this.byPrice.add(e);
+        this.prices.put(e.id, e);
+    }
+
+    private void delete(PriceEntry e, Set<String> terms) {
+        for (String term : terms) {
+            TreeSet<PriceEntry> entries = this.postings.get(term);
+            if (entries != null) {
+                entries.remove(e);
+                if (entries.isEmpty())
+                    this.postings.remove(term);
+            }
+        }
+        this.byPrice.remove(e);
+        this.prices.remove(e.id);
+    }
+
+    /**
+     * Runs a query.
+     *
+     * @param q the query
+     * @return the items of the requested page, ordered by price then id
+     */
+    List<Item> search(ItemQuery q) {
+        repriceIfNeeded();
+
+        List<Item> page = new ArrayList<Item>(q.getPageSize());
+        if (q.getMinPrice() > q.getMaxPrice())
+            return page;
+
+        List<TreeSet<PriceEntry>> sets = new ArrayList<TreeSet<PriceEntry>>();
+        for (String term : new LinkedHashSet<String>(q.terms())) {
+            TreeSet<PriceEntry> entries = this.postings.get(term);
+            if (entries == null)
+                return page;
+            sets.add(entries);
+        }
+        sets.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        TreeSet<PriceEntry> walked = sets.isEmpty() ? this.byPrice : sets.get(0);
+        List<TreeSet<PriceEntry>> others = sets.isEmpty() ? sets : sets.subList(1, sets.size());
+
+        NavigableSet<PriceEntry> range = walked.subSet(new PriceEntry(q.getMinPrice(), Integer.MIN_VALUE), true,
+                new PriceEntry(q.getMaxPrice(), Integer.MAX_VALUE), true);
+        long skip = (long) q.getPage() * q.getPageSize();
+        for (PriceEntry e : range) {
+            if (!inAll(e, others))
+                continue;
+            if (skip > 0) {
+                skip--;
+            } else {
+                page.add(this.items.get(e.id));
+                if (page.size() == q.getPageSize())
+                    break;
+            }
+        }
+        return page;
+    }
+
+    private static boolean inAll(PriceEntry e, List<TreeSet<PriceEntry>> sets) {
+        for (TreeSet<PriceEntry> s : sets) {
+            if (!s.contains(e))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Prices the premium items again if the system date changed since they were
+     * last priced.
+     */
+    private void repriceIfNeeded() {
+        LocalDate today = SystemDate.getDate();
+        if (today.equals(this.pricedOn))
+            return;
+        for (int id : this.premiums) {
+            PriceEntry old = this.prices.get(id);
+            Item i = this.items.get(id);
+            double price = i.getPrice();
+            if (price != old.price) {
+                Set<String> terms = termsOf(i);
+                delete(old, terms);
+                insert(new PriceEntry(price, id), terms);
+            }
+        }
+        this.pricedOn = today;
+    }
+
+    /**
+     * Returns the index terms of an item.
+     *
+     * @param i the item
+     * @return the terms, without repetitions
+     */
+    private static Set<String> termsOf(Item i) {
+        Set<String> terms = new HashSet<String>();
+        for (String w : ItemQuery.tokens(i.getDescription()))
+            terms.add(word(w));
+        for (String w : ItemQuery.tokens(i.getBrand()))
+            terms.add(word(w));
+        if (i.getBrand() != null)
+            terms.add(brand(ItemQuery.normalize(i.getBrand())));
+        terms.add(kind(ItemQuery.Kind.of(i)));
+        if (i instanceof Tshirt && ((Tshirt) i).getSize() != null)
+            terms.add(tshirtSize(((Tshirt) i).getSize()));
+        if (i instanceof Sneaker && ((Sneaker) i).getType() != null)
+            terms.add(sneakerType(((Sneaker) i).getType()));
+        if (i.getCarrier() != null)
+            terms.add(carrier(ItemQuery.normalize(i.getCarrier().getName())));
+        terms.add(premium(i instanceof Premium));
+        return terms;
+    }
+
+    static String word(String w) {
+        return "w:" + w;
+    }
+
+    static String brand(String normalized) {
+        return "b:" + normalized;
+    }
+
+    static String kind(ItemQuery.Kind k) {
+        return "k:" + k.name();
+    }
+
+    static String tshirtSize(Tshirt.TshirtSize s) {
+        return "ts:" + s.name();
+    }
+
+    static String sneakerType(Sneaker.SneakerType t) {
+        return "st:" + t.name();
+    }
+
+    static String carrier(String normalized) {
+        return "c:" + normalized;
+    }
+
+    static String premium(boolean premium) {
+        return premium ? "p:y" : "p:n";
+    }
+}
@@ -0,0 +1,697 @@
+package app;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the operations applied to a {@link Model}.
+ *
+ * <p>
+ * Every mutating operation is appended as a record once it is validated and
+ * before it is applied, so every record applies cleanly on replay. A
+ * record holds its sequence number, the operation, the id of the user that was
+ * logged in, the range of ids taken by the objects the operation creates and
+ * the arguments, followed by a CRC32. Replaying a record gives its objects the
+ * same ids again, whichever thread allocated them the first time. Records are not written one
+ * by one: appends go to an in-memory batch that a background thread writes and
+ * forces to disk with a single fsync (group commit). In synchronous mode an
+ * append waits until its batch is durable; otherwise it returns at once and the
+ * batch is flushed within the flush interval.
+ * </p>
+ *
+ * <p>
+ * Recovery loads the latest snapshot and replays the records that came after
+ * it. A torn record at the end of the file, left by a crash in the middle of a
+ * write, ends the replay and is cut off when the journal is reopened.
+ * </p>
+ */
+public class Journal implements Closeable {
+
+    static final int MAGIC = 0x564E544A; // "VNTJ"
+    static final int VERSION = 3;
+    private static final int HEADER = 8;
+
+    /**
+     * Value written for a missing user, date or string.
+     */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    /**
+     * The operations recorded in the journal.
+     */
+    public enum Op {
+        SET_DATE, REGISTER_USER, REGISTER_BAG, REGISTER_TSHIRT, REGISTER_SNEAKER, MAKE_ORDER, DELETE_ORDER,
+        TIME_SKIP, ADD_CARRIER, CHANGE_CARRIER, ALTER_ITEM_STATE, MAKE_ORDERS;
+    }
+
+    /**
+     * A record being built: the operation, the acting user and the arguments.
+     */
+    public static class Record {
+        private final Op op;
+        private ByteBuffer data;
+
+        /**
+         * Starts a record.
+         *
+         * @param op     the operation
+         * @param userId the id of the logged in user, or {@link Journal#NONE}
+         */
+        public Record(Op op, int userId) {
+            this.op = op;
+            this.data = ByteBuffer.allocate(64);
+            putInt(userId);
+            putInt(NONE);
+            putInt(0);
+        }
+
+        /**
+         * Sets the ids the objects created by the operation take.
+         *
+         * @param first the first id
+         * @param count the number of ids
+         * @return this record
+         */
+        public Record setIds(int first, int count) {
+            this.data.putInt(4, first);
+            this.data.putInt(8, count);
+            return this;
+        }
+
+        private void ensure(int n) {
+            if (this.data.remaining() < n) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(this.data.capacity() * 2, this.data.position() + n));
+                this.data.flip();
+                bigger.put(this.data);
+                this.data = bigger;
+            }
+        }
+
+        /**
+         * Appends an integer argument.
+         *
+         * @param v the value
+         * @return this record
+         */
+        public Record putInt(int v) {
+            ensure(4);
+            this.data.putInt(v);
+            return this;
+        }
+
+        /**
+         * Appends a double argument.
+         *
+         * @param v the value
+         * @return this record
+         */
+        public Record putDouble(double v) {
+            ensure(8);
+            this.data.putDouble(v);
+            return this;
+        }
+
+        /**
+         * Appends a string argument.
+         *
+         * @param s the value, may be null
+         * @return this record
+         */
+        public Record putString(String s) {
+            if (s == null)
+                return putInt(NONE);
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensure(bytes.length);
+            this.data.put(bytes);
+            return this;
+        }
+
+        /**
+         * Appends a date argument.
+         *
+         * @param d the value, may be null
+         * @return this record
+         */
+        public Record putDate(LocalDate d) {
+            return putInt(d == null ? NONE : (int) d.toEpochDay());
+        }
+
+        /**
+         * Appends an enum argument.
+         *
+         * @param e the value, may be null
+         * @return this record
+         */
+        public Record putEnum(Enum<?> e) {
+            return putString(e == null ? null : e.name());
+        }
+
+        /**
+         * Appends a list of integers.
+         *
+         * @param values the values
+         * @return this record
+         */
+        public Record putIntList(List<Integer> values) {
+            putInt(values.size());
+            for (int v : values)
+                putInt(v);
+            return this;
+        }
+    }
+
+    /**
+     * A record read back from the journal.
+     */
+    public static class Entry {
+        private final long seq;
+        private final Op op;
+        private final ByteBuffer data;
+        private final int userId;
+        private final int firstId;
+        private final int idCount;
+        private final boolean validated;
+
+        Entry(long seq, Op op, ByteBuffer data, int version) {
+            this.seq = seq;
+            this.op = op;
+            this.data = data;
+            this.validated = version >= 3;
+            this.userId = data.getInt();
+            this.firstId = version >= 2 ? data.getInt() : NONE;
+            this.idCount = version >= 2 ? data.getInt() : 0;
+        }
+
+        /**
+         * Returns the sequence number of the record.
+         *
+         * @return the sequence number
+         */
+        public long getSeq() {
+            return this.seq;
+        }
+
+        /**
+         * Returns the recorded operation.
+         *
+         * @return the operation
+         */
+        public Op getOp() {
+            return this.op;
+        }
+
+        /**
+         * Returns the id of the user that was logged in.
+         *
+         * @return the user id, or {@link Journal#NONE}
+         */
+        public int getUserId() {
+            return this.userId;
+        }
+
+        /**
+         * Returns the first id taken by the objects the operation created.
+         *
+         * @return the first id, or {@link Journal#NONE} if none was recorded
+         */
+        public int getFirstId() {
+            return this.firstId;
+        }
+
+        /**
+         * Returns the number of ids set aside for the objects the operation
+         * created.
+         *
+         * @return the number of ids
+         */
+        public int getIdCount() {
+            return this.idCount;
+        }
+
+        /**
+         * Checks if the operation was validated before the record was written, as
+         * it is from version 3 on. Older journals also hold operations that then
+         * failed.
+         *
+         * @return true if the operation is known to have been applied
+         */
+        public boolean isValidated() {
+            return this.validated;
+        }
+
+        /**
+         * Reads the next integer argument.
+         *
+         * @return the value
+         */
+        public int readInt() {
+            return this.data.getInt();
+        }
+
+        /**
+         * Reads the next double argument.
+         *
+         * @return the value
+         */
+        public double readDouble() {
+            return this.data.getDouble();
+        }
+
+        /**
+         * Reads the next string argument.
+         *
+         * @return the value, may be null
+         */
+        public String readString() {
+            int length = this.data.getInt();
+            if (length == NONE)
+                return null;
+            byte[] bytes = new byte[length];
+            this.data.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads the next date argument.
+         *
+         * @return the value, may be null
+         */
+        public LocalDate readDate() {
+            int day = this.data.getInt();
+            return day == NONE ? null : LocalDate.ofEpochDay(day);
+        }
+
+        /**
+         * Reads the next enum argument.
+         *
+         * @param <E>  the type of the enum
+         * @param type the class of the enum
+         * @return the value, may be null
+         */
+        public <E extends Enum<E>> E readEnum(Class<E> type) {
+            String name = readString();
+            return name == null ? null : Enum.valueOf(type, name);
+        }
+
+        /**
+         * Reads the next list of integers.
+         *
+         * @return the values
+         */
+        public List<Integer> readIntList() {
+            int n = this.data.getInt();
+            List<Integer> values = new LinkedList<Integer>();
+            for (int i = 0; i < n; i++)
+                values.add(this.data.getInt());
+            return values;
+        }
+    }
+
+    /**
+     * Receives the records of a journal during a replay.
+     */
+    public interface Handler {
+
+        /**
+         * Applies one record.
+         *
+         * @param e the record
+         * @throws IOException if the record cannot be applied, which ends the
+         *                     replay
+         */
+        void apply(Entry e) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final boolean synchronous;
+    private final long flushIntervalMillis;
+    private final Thread flusher;
+
+    private final Object lock = new Object();
+    private final Object io = new Object();
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    private long lastSeq;
+    private long durableSeq;
+    private boolean flushRequested;
+    private boolean closed;
+    private boolean outdated;
+    private IOException failure;
+
+    /**
+     * Opens a journal positioned at its end.
+     *
+     * @param channel             the open file
+     * @param lastSeq             the sequence number of the last record
+     * @param synchronous         whether appends wait for their fsync
+     * @param flushIntervalMillis how long a batch may wait before it is flushed
+     */
+    private Journal(FileChannel channel, long lastSeq, boolean synchronous, long flushIntervalMillis) {
+        this.channel = channel;
+        this.lastSeq = lastSeq;
+        this.durableSeq = lastSeq;
+        this.synchronous = synchronous;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.pending = ByteBuffer.allocate(1 << 16);
+        this.spare = ByteBuffer.allocate(1 << 16);
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Opens a journal for appending, creating it if needed. A torn record left at
+     * the end of the file is cut off. A journal written by an older version only
+     * takes new records once it is {@link #truncate() truncated}, after its
+     * records were replayed.
+     *
+     * @param fileName            the name of the journal file
+     * @param lastSeq             the sequence number already covered by the
+     *                            snapshot; numbering continues after it
+     * @param synchronous         true to make every append wait for its fsync
+     * @param flushIntervalMillis how long a batch may wait before it is flushed
+     * @return the open journal
+     * @throws IOException if the file is not a journal or an I/O error occurs
+     */
+    public static Journal open(String fileName, long lastSeq, boolean synchronous, long flushIntervalMillis)
+            throws IOException {
+        Path path = Paths.get(fileName);
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long end;
+            boolean outdated = false;
+            if (ch.size() < HEADER) {
+                writeHeader(ch);
+                end = HEADER;
+            } else {
+                long[] scan = scan(path, 0, null);
+                end = scan[0];
+                lastSeq = Math.max(lastSeq, scan[1]);
+                if (scan[2] < VERSION) {
+                    if (end == HEADER)
+                        writeHeader(ch);
+                    else
+                        outdated = true;
+                }
+            }
+            ch.truncate(end);
+            ch.position(end);
+            ch.force(true);
+            Journal j = new Journal(ch, lastSeq, synchronous, flushIntervalMillis);
+            j.outdated = outdated;
+            return j;
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private static void writeHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        ch.truncate(0);
+        ch.write(header, 0);
+    }
+
+    /**
+     * Replays the records of a journal that come after a sequence number.
+     *
+     * @param fileName the name of the journal file
+     * @param afterSeq the sequence number already covered by the snapshot
+     * @param handler  receives the records, in order
+     * @return the sequence number of the last valid record
+     * @throws IOException if the file is not a journal or an I/O error occurs
+     */
+    public static long replay(String fileName, long afterSeq, Handler handler) throws IOException {
+        Path path = Paths.get(fileName);
+        if (!Files.exists(path))
+            return afterSeq;
+        return Math.max(afterSeq, scan(path, afterSeq, handler)[1]);
+    }
+
+    /**
+     * Reads the records of a journal until its end or the first damaged record.
+     *
+     * @param path     the journal file
+     * @param afterSeq records up to this sequence number are skipped
+     * @param handler  receives the records, may be null
+     * @return the offset after the last valid record, its sequence number and the
+     *         version of the file
+     * @throws IOException if the file is not a journal or an I/O error occurs
+     */
+    private static long[] scan(Path path, long afterSeq, Handler handler) throws IOException {
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (file.remaining() < HEADER || file.getInt() != MAGIC)
+            throw new IOException("Not a journal: " + path);
+        int version = file.getInt();
+        if (version > VERSION)
+            throw new IOException("Unsupported journal version " + version + ": " + path);
+
+        Op[] ops = Op.values();
+        CRC32 crc = new CRC32();
+        long seq = 0;
+        int end = file.position();
+        while (file.remaining() >= 4) {
+            int length = file.getInt();
+            if (length < 9 || file.remaining() < length + 4)
+                break;
+
+            ByteBuffer body = file.slice();
+            body.limit(length);
+            file.position(file.position() + length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != file.getInt())
+                break;
+
+            long recordSeq = body.getLong();
+            int op = body.get();
+            if (op < 0 || op >= ops.length)
+                break;
+            seq = recordSeq;
+            end = file.position();
+            if (handler != null && recordSeq > afterSeq)
+                handler.apply(new Entry(recordSeq, ops[op], body.slice(), version));
+        }
+        return new long[] { end, seq, version };
+    }
+
+    /**
+     * Appends a record. In synchronous mode the call returns once the record is
+     * on disk.
+     *
+     * @param r the record
+     * @return the sequence number given to the record
+     * @throws IOException if the journal failed to write an earlier batch
+     */
+    public long append(Record r) throws IOException {
+        ByteBuffer payload = r.data.duplicate();
+        payload.flip();
+        int length = 8 + 1 + payload.remaining();
+
+        synchronized (this.lock) {
+            if (this.failure != null)
+                throw this.failure;
+            if (this.closed)
+                throw new IOException("Journal is closed");
+            if (this.outdated)
+                throw new IOException("Journal written by an older version must be truncated first");
+
+            long seq = ++this.lastSeq;
+            ensurePending(4 + length + 4);
+            int start = this.pending.position();
+            this.pending.putInt(length);
+            this.pending.putLong(seq);
+            this.pending.put((byte) r.op.ordinal());
+            this.pending.put(payload);
+
+            CRC32 crc = new CRC32();
+            ByteBuffer body = this.pending.duplicate();
+            body.position(start + 4);
+            body.limit(this.pending.position());
+            crc.update(body);
+            this.pending.putInt((int) crc.getValue());
+
+            if (start == 0 || this.synchronous)
+                this.lock.notifyAll();
+            if (this.synchronous)
+                awaitDurable(seq);
+            return seq;
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is on disk.
+     *
+     * @throws IOException if a batch could not be written
+     */
+    public void flush() throws IOException {
+        synchronized (this.lock) {
+            this.flushRequested = true;
+            this.lock.notifyAll();
+            awaitDurable(this.lastSeq);
+        }
+    }
+
+    /**
+     * Drops every record, after a snapshot made them redundant. Must not run
+     * concurrently with {@link #append(Record)}.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void truncate() throws IOException {
+        flush();
+        synchronized (this.io) {
+            writeHeader(this.channel);
+            this.channel.position(HEADER);
+            this.channel.force(true);
+        }
+        synchronized (this.lock) {
+            this.outdated = false;
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last record appended.
+     *
+     * @return the last sequence number
+     */
+    public long getLastSeq() {
+        synchronized (this.lock) {
+            return this.lastSeq;
+        }
+    }
+
+    /**
+     * Flushes the pending records and closes the journal.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            synchronized (this.lock) {
+                this.closed = true;
+                this.lock.notifyAll();
+            }
+            try {
+                this.flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Waits, holding the lock, until a sequence number is durable.
+     *
+     * @param seq the sequence number
+     * @throws IOException if a batch could not be written
+     */
+    private void awaitDurable(long seq) throws IOException {
+        boolean interrupted = false;
+        while (this.durableSeq < seq && this.failure == null) {
+            try {
+                this.lock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (this.durableSeq < seq)
+            throw this.failure;
+    }
+
+    /**
+     * Grows the pending batch so it can take n more bytes.
+     *
+     * @param n the number of bytes needed
+     */
+    private void ensurePending(int n) {
+        if (this.pending.remaining() < n) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(this.pending.capacity() * 2, this.pending.position() + n));
+            this.pending.flip();
+            bigger.put(this.pending);
+            this.pending = bigger;
+        }
+    }
+
+    /**
+     * Body of the flusher thread: takes the pending batch, writes it and forces
+     * it to disk, then wakes up the appenders waiting for it.
+     */
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long upTo;
+            synchronized (this.lock) {
+                try {
+                    while (this.pending.position() == 0 && !this.closed)
+                        this.lock.wait();
+                    if (!this.synchronous) {
+                        long deadline = System.currentTimeMillis() + this.flushIntervalMillis;
+                        long left;
+                        while (!this.closed && !this.flushRequested
+                                && (left = deadline - System.currentTimeMillis()) > 0)
+                            this.lock.wait(left);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (this.pending.position() == 0) {
+                    this.flushRequested = false;
+                    if (this.closed)
+                        return;
+                    continue;
+                }
+
+                batch = this.pending;
+                this.pending = this.spare;
+                this.spare = batch;
+                this.pending.clear();
+                upTo = this.lastSeq;
+                this.flushRequested = false;
+            }
+
+            IOException error = null;
+            try {
+                synchronized (this.io) {
+                    batch.flip();
+                    while (batch.hasRemaining())
+                        this.channel.write(batch);
+                    this.channel.force(false);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            batch.clear();
+
+            synchronized (this.lock) {
+                if (error != null)
+                    this.failure = error;
+                else
+                    this.durableSeq = upTo;
+                this.lock.notifyAll();
+                if (error != null)
+                    return;
+            }
+        }
+    }
+}
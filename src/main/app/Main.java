@@ -10,6 +10,8 @@ public class Main {
      * It creates an instance of the Model and Controller classes,
      * loads the saved state from a file if available,
      * and initializes the View to display the main menu.
+     * With {@code --replay <file> [--dry-run]} it replays a simulation file on a
+     * fresh model and prints the replay statistics instead.
      *
      * @param args the command line arguments
      */
@@ -17,13 +19,28 @@ public class Main {
         Model m = new Model();
         Controller c = new Controller(m);
 
+        if (args.length >= 2 && args[0].equals("--replay")) {
+            boolean dryRun = args.length >= 3 && args[2].equals("--dry-run");
+            try {
+                System.out.println(c.simulation(args[1], dryRun));
+            } catch (FileNotFoundException e) {
+                System.out.println("Error reaching .txt File!");
+            } catch (IOException e) {
+                System.out.println("Error reading .txt File!");
+            } catch (InvalidCommand e) {
+                System.out.println(e.getMessage());
+            }
+            return;
+        }
+
         try {
             c.load();
         } catch (FileNotFoundException e) {
             System.out.println("No Saved state!");
         } catch (IOException e) {
-            System.out.println("Could Not reach file!");
+            System.out.println("Could Not reach file! " + e.getMessage());
         } catch (ClassNotFoundException e) {
+            System.out.println("Could Not read file! " + e.getMessage());
         }
 
         View menu = new View(c);
@@ -2,10 +2,16 @@ package app;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import java.io.*;
 
@@ -15,6 +21,8 @@ import java.io.*;
  */
 public class Model implements Serializable {
 
+    private static final long serialVersionUID = -5018714811363648746L;
+
     private ItemManager itemManager;
     private UserManager userManager;
     private OrderManager orderManager;
@@ -23,9 +31,39 @@ public class Model implements Serializable {
     private User currentUser;
 
     /**
-     * Constructs a new Module object with Managers.
+     * Number of journal records applied between automatic checkpoints.
+     */
+    public static final int CHECKPOINT_EVERY = 10_000;
+
+    /**
+     * Longest time a journal record waits for its group to be flushed when the
+     * journal is not synchronous.
+     */
+    public static final long JOURNAL_FLUSH_MILLIS = 20;
+
+    /**
+     * Number of locks the item ids are striped over for concurrent sessions.
      */
-    Model() {
+    public static final int ITEM_LOCK_STRIPES = 256;
+
+    private static final SecureRandom TOKENS = new SecureRandom();
+
+    private transient volatile Map<String, Integer> sessions;
+    private transient volatile ItemLocks itemLocks;
+
+    private transient ModelContext context;
+
+    private long journalSeq;
+    private transient Journal journal;
+    private transient String journalSnapshot;
+    private transient int journalRecords;
+
+    /**
+     * Constructs a new Module object with Managers, using the context of the
+     * calling thread.
+     */
+    public Model() {
+        this.context = ModelContext.current();
         this.itemManager = new ItemManager();
         this.userManager = new UserManager();
         this.orderManager = new OrderManager();
@@ -34,6 +72,141 @@ public class Model implements Serializable {
         this.vintageProfit = 0;
     }
 
+    /**
+     * Constructs a new Model with its own clock and id counters. The context
+     * must be bound, with {@link ModelContext#bind(ModelContext)}, on every
+     * thread that works on the model.
+     *
+     * @param context the context of the model
+     * @throws NullPointerException if the context is null
+     */
+    public Model(ModelContext context) throws NullPointerException {
+        if (context == null)
+            throw new NullPointerException("No context");
+        ModelContext previous = ModelContext.bind(context);
+        try {
+            this.context = context;
+            this.itemManager = new ItemManager();
+            this.userManager = new UserManager();
+            this.orderManager = new OrderManager();
+            this.carrierManager = new CarrierManager();
+            SystemDate.setDate(LocalDate.now());
+            this.vintageProfit = 0;
+        } finally {
+            ModelContext.bind(previous);
+        }
+    }
+
+    /**
+     * Constructs a Model from managers that were already populated, as when
+     * restoring a snapshot. The system date is left untouched.
+     *
+     * @param itemManager    the item manager
+     * @param userManager    the user manager
+     * @param orderManager   the order manager
+     * @param carrierManager the carrier manager
+     * @param vintageProfit  the profit of the platform
+     * @param currentUser    the logged in user, or null
+     */
+    Model(ItemManager itemManager, UserManager userManager, OrderManager orderManager,
+            CarrierManager carrierManager, double vintageProfit, User currentUser) {
+        this.itemManager = itemManager;
+        this.userManager = userManager;
+        this.orderManager = orderManager;
+        this.carrierManager = carrierManager;
+        this.vintageProfit = vintageProfit;
+        this.currentUser = currentUser;
+        this.context = ModelContext.current();
+    }
+
+    /**
+     * Returns the context holding the clock and id counters of the model.
+     *
+     * @return the context
+     */
+    public ModelContext getContext() {
+        return this.context;
+    }
+
+    /**
+     * Reads a serialized model, which takes the context of the calling thread.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.context = ModelContext.current();
+        // bills are saved without their orders and items: look them up here
+        for (User u : this.userManager.getUserMapView().values()) {
+            for (Bill b : u.getBills().values())
+                b.resolveWith(this.orderManager, this.itemManager);
+            u.restoreTotals();
+        }
+    }
+
+    /**
+     * Returns the item manager itself, for the snapshot writer.
+     *
+     * @return the item manager
+     */
+    ItemManager getItemManager() {
+        return this.itemManager;
+    }
+
+    /**
+     * Returns the user manager itself, for the snapshot writer.
+     *
+     * @return the user manager
+     */
+    UserManager getUserManager() {
+        return this.userManager;
+    }
+
+    /**
+     * Returns the order manager itself, for the snapshot writer.
+     *
+     * @return the order manager
+     */
+    OrderManager getOrderManager() {
+        return this.orderManager;
+    }
+
+    /**
+     * Returns the carrier manager itself, for the snapshot writer.
+     *
+     * @return the carrier manager
+     */
+    CarrierManager getCarrierManager() {
+        return this.carrierManager;
+    }
+
+    /**
+     * Returns the logged in user itself, without the admin check.
+     *
+     * @return the logged in user, or null
+     */
+    User getLoggedUser() {
+        return this.currentUser;
+    }
+
+    /**
+     * Returns the sequence number of the last journal record applied to this
+     * model.
+     *
+     * @return the journal sequence number
+     */
+    long getJournalSeq() {
+        return this.journalSeq;
+    }
+
+    /**
+     * Sets the sequence number of the last journal record applied, as read from a
+     * snapshot.
+     *
+     * @param journalSeq the journal sequence number
+     */
+    void setJournalSeq(long journalSeq) {
+        this.journalSeq = journalSeq;
+    }
+
     /**
      * Copy of the User Manager
      * 
@@ -43,6 +216,17 @@ public class Model implements Serializable {
         return this.userManager.getUserMapCopy();
     }
 
+    /**
+     * Read-only view of the User Manager, for queries that only read the users.
+     * The users are not copied, so it stays inside the package: see
+     * {@link UserManager#getUserMapView()}.
+     * 
+     * @return Map<Integer, User>
+     */
+    Map<Integer, User> getUserManagerView() {
+        return this.userManager.getUserMapView();
+    }
+
     /**
      * Current Date
      * 
@@ -122,16 +306,29 @@ public class Model implements Serializable {
      * @throws UserIsAdminException if the current user is an admin.
      */
     public String currentUserSystemItems() throws UserIsAdminException {
-
-        User u = getCurrentUser();
-        String ret = "";
-        for (Item i : u.getSystemItems()) {
-
-            ret += i.showItem();
-
+        StringBuilder sb = new StringBuilder();
+        try {
+            currentUserSystemItems(sb, 0, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never fails
         }
-        ret += '\n';
-        return ret;
+        return sb.append('\n').toString();
+    }
+
+    /**
+     * Writes one page of the system items of the current user.
+     *
+     * @param out    where the items are written
+     * @param offset the number of items to skip
+     * @param limit  the most items to write
+     * @return the number of items written; fewer than the limit on the last page
+     * @throws UserIsAdminException     if the current user is an admin.
+     * @throws IOException              if the output fails
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public int currentUserSystemItems(Appendable out, int offset, int limit)
+            throws UserIsAdminException, IOException, IllegalArgumentException {
+        return page(getCurrentUser().getSystemItems(), null, Item::showItem, out, offset, limit);
     }
 
     /**
@@ -141,16 +338,29 @@ public class Model implements Serializable {
      * @throws UserIsAdminException if the current user is an admin.
      */
     public String currentUserListedItems() throws UserIsAdminException {
-
-        User u = getCurrentUser();
-        String ret = "";
-        for (Item i : u.getSellingItems()) {
-
-            ret += i.showItem();
-
+        StringBuilder sb = new StringBuilder();
+        try {
+            currentUserListedItems(sb, 0, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never fails
         }
-        ret += '\n';
-        return ret;
+        return sb.append('\n').toString();
+    }
+
+    /**
+     * Writes one page of the listed items of the current user.
+     *
+     * @param out    where the items are written
+     * @param offset the number of items to skip
+     * @param limit  the most items to write
+     * @return the number of items written; fewer than the limit on the last page
+     * @throws UserIsAdminException     if the current user is an admin.
+     * @throws IOException              if the output fails
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public int currentUserListedItems(Appendable out, int offset, int limit)
+            throws UserIsAdminException, IOException, IllegalArgumentException {
+        return page(getCurrentUser().getSellingItems(), null, Item::showItem, out, offset, limit);
     }
 
     /**
@@ -159,17 +369,29 @@ public class Model implements Serializable {
      * @return A string representation of the current user's orders.
      */
     public String checkThisUserOrders() {
-
-        int userId = this.currentUser.getId();
-        List<Order> pointers = this.orderManager.getThisUserOrders(userId);
-
-        String ret = "";
-
-        for (Order order : pointers) {
-
-            ret += order.showOrder();
+        StringBuilder sb = new StringBuilder();
+        try {
+            checkThisUserOrders(sb, 0, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never fails
         }
-        return ret;
+        return sb.toString();
+    }
+
+    /**
+     * Writes one page of the orders of the current user, in ascending id order.
+     *
+     * @param out    where the orders are written
+     * @param offset the number of orders to skip
+     * @param limit  the most orders to write
+     * @return the number of orders written; fewer than the limit on the last page
+     * @throws IOException              if the output fails
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public int checkThisUserOrders(Appendable out, int offset, int limit)
+            throws IOException, IllegalArgumentException {
+        return page(this.orderManager.getThisUserOrders(this.currentUser.getId()), null, Order::showOrder, out,
+                offset, limit);
     }
 
     /**
@@ -274,14 +496,82 @@ public class Model implements Serializable {
      * @throws UserIsAdminException if the current user is an admin.
      */
     public String displayListedItems() throws UserIsAdminException {
-        List<Item> items = getListedItemsManagerList();
-        String ret = "";
-        for (Item item : items) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            displayListedItems(sb, 0, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never fails
+        }
+        return sb.toString();
+    }
 
-            if (item.getUserId() != getCurrentUser().getId())
-                ret += item.showItem();
+    /**
+     * Writes one page of the listed items, excluding items listed by the current
+     * user. Only the items of the page are rendered, and none is copied, so the
+     * first page of a large listing costs no more than any other small one.
+     *
+     * @param out    where the items are written
+     * @param offset the number of items to skip
+     * @param limit  the most items to write
+     * @return the number of items written; fewer than the limit on the last page
+     * @throws UserIsAdminException     if the current user is an admin.
+     * @throws IOException              if the output fails
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public int displayListedItems(Appendable out, int offset, int limit)
+            throws UserIsAdminException, IOException, IllegalArgumentException {
+        int me = getCurrentUser().getId();
+        return page(this.itemManager.listedItemsView(), i -> i.getUserId() != me, Item::showItem, out, offset,
+                limit);
+    }
+
+    /**
+     * Writes one page of rendered elements: skips the first matching elements
+     * without rendering them, then writes the next ones until the limit.
+     *
+     * @param <T>    the type of the elements
+     * @param source the elements
+     * @param filter the elements to include, or null for all of them
+     * @param render turns an element into its text
+     * @param out    where the text is written
+     * @param offset the number of matching elements to skip
+     * @param limit  the most elements to write
+     * @return the number of elements written
+     * @throws IOException              if the output fails
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    private static <T> int page(Iterable<T> source, Predicate<T> filter, Function<T, String> render, Appendable out,
+            int offset, int limit) throws IOException, IllegalArgumentException {
+        if (offset < 0 || limit < 0)
+            throw new IllegalArgumentException("Negative offset or limit");
+        int skipped = 0;
+        int written = 0;
+        for (T t : source) {
+            if (written == limit)
+                break;
+            if (filter != null && !filter.test(t))
+                continue;
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            out.append(render.apply(t));
+            written++;
         }
-        return ret;
+        return written;
+    }
+
+    /**
+     * Searches the listed items.
+     *
+     * @param query the criteria and the page to return
+     * @return copies of the matching items of the requested page, ordered by price
+     *         then id
+     */
+    public List<Item> searchListedItems(ItemQuery query) {
+        List<Item> result = this.itemManager.search(query);
+        result.replaceAll(Item::clone);
+        return result;
     }
 
     /**
@@ -309,6 +599,8 @@ public class Model implements Serializable {
      * @param dateNew The new current date.
      */
     public void setCurrentDate(LocalDate dateNew) {
+        if (this.journal != null)
+            log(record(Journal.Op.SET_DATE).putDate(dateNew));
         SystemDate.setDate(dateNew);
     }
 
@@ -320,23 +612,225 @@ public class Model implements Serializable {
      * @throws InvalidId if the item IDs are invalid.
      */
     public Order makeOrder(List<Integer> items_keys) throws InvalidId {
-
-        if (this.currentUser.oneOfHis(items_keys) || !this.itemManager.areAllThisForSale(items_keys)
-                || items_keys.isEmpty())
+        User buyer = this.userManager.getUser(this.currentUser.getId());
+        Item[] items = cartItems(items_keys, buyer);
+        if (items == null)
             throw new InvalidId();
 
-        Order order = new Order();
-        for (Integer current_key : items_keys) {
-            Item i = this.itemManager.getItem(current_key);
-            User u = this.userManager.getUser(i.getUserId());
+        if (this.journal != null)
+            log(record(Journal.Op.MAKE_ORDER, 1).putIntList(items_keys));
+        return fillOrder(new Order(), items, buyer, new HashMap<Integer, User>()).clone();
+    }
+
+    /**
+     * Makes one order for each of the given carts, all bought by the current
+     * user. The carts are placed in the given order, so when two carts share an
+     * item the first one gets it and the other is rejected, exactly as if
+     * {@link #makeOrder(List)} had been called for each cart in turn. The buyer
+     * and the sellers are looked up once for the whole batch.
+     *
+     * @param carts the item keys of every order
+     * @return the created orders, in the order of the carts, with null for every
+     *         cart that was rejected
+     */
+    public List<Order> makeOrders(List<List<Integer>> carts) {
+        User buyer = this.userManager.getUser(this.currentUser.getId());
+        if (this.journal != null) {
+            Journal.Record r = record(Journal.Op.MAKE_ORDERS, carts.size()).putInt(carts.size());
+            for (List<Integer> cart : carts)
+                r.putIntList(cart);
+            log(r);
+        }
+
+        Map<Integer, User> sellers = new HashMap<Integer, User>();
+        List<Order> orders = new ArrayList<Order>(carts.size());
+        for (List<Integer> cart : carts) {
+            Order order = placeOrder(cart, buyer, sellers);
+            orders.add(order == null ? null : order.clone());
+        }
+        return orders;
+    }
+
+    /**
+     * Places an order for a cart in a single pass over it: every item is looked
+     * up once, checked to be listed and not sold by the buyer, and then moved to
+     * the sold items.
+     *
+     * @param items_keys the item keys of the cart
+     * @param buyer      the buyer
+     * @param sellers    the sellers already looked up, by id
+     * @return the placed order, or null if the cart is rejected
+     */
+    private Order placeOrder(List<Integer> items_keys, User buyer, Map<Integer, User> sellers) {
+        Item[] items = cartItems(items_keys, buyer);
+        if (items == null)
+            return null;
+        return fillOrder(new Order(), items, buyer, sellers);
+    }
+
+    /**
+     * Looks up the items of a cart.
+     *
+     * @param items_keys the item keys of the cart
+     * @param buyer      the buyer
+     * @return the listed items of the cart, or null if the cart is empty or has
+     *         an item that is not listed or is sold by the buyer
+     */
+    private Item[] cartItems(List<Integer> items_keys, User buyer) {
+        if (items_keys.isEmpty())
+            return null;
+
+        Item[] items = new Item[items_keys.size()];
+        int n = 0;
+        for (int key : items_keys) {
+            Item i = this.itemManager.getListedItem(key);
+            if (i == null || buyer.isSelling(key))
+                return null;
+            items[n++] = i;
+        }
+        return items;
+    }
+
+    /**
+     * Fills a new order with the items of a validated cart, moves them to the
+     * sold items and stores the order.
+     *
+     * @param order   the new order
+     * @param items   the items of the cart
+     * @param buyer   the buyer
+     * @param sellers the sellers already looked up, by id
+     * @return the order
+     */
+    private Order fillOrder(Order order, Item[] items, User buyer, Map<Integer, User> sellers) {
+        for (Item i : items) {
+            User u = sellers.get(i.getUserId());
+            if (u == null) {
+                u = this.userManager.getUser(i.getUserId());
+                sellers.put(i.getUserId(), u);
+            }
             order.addItem(i, u);
             this.itemManager.updateItem(i.getID());
         }
-        User buyer = this.userManager.getUser(this.currentUser.getId());
         order.setBuyer(buyer);
         order.setDate(this.getSystemDate());
         this.orderManager.addOrder(order);
-        return order.clone();
+        return order;
+    }
+
+    /**
+     * Opens a session for a user. Unlike {@link #loginModel(String, String)},
+     * which changes the single logged in user, any number of sessions can be
+     * open at once and be used from different threads.
+     *
+     * @param email    the email of the user
+     * @param password the password of the user
+     * @return the token identifying the session
+     * @throws NullPointerException if no user has the given email
+     * @throws MissedIdException    if the password is wrong
+     */
+    public String openSession(String email, String password) throws NullPointerException, MissedIdException {
+        User u = this.userManager.findUserByEmail(email);
+        if (!u.getPassword().equals(password))
+            throw new MissedIdException();
+
+        byte[] bytes = new byte[16];
+        TOKENS.nextBytes(bytes);
+        String token = HexFormat.of().formatHex(bytes);
+        sessions().put(token, u.getId());
+        return token;
+    }
+
+    /**
+     * Closes a session. Closing a session that is not open does nothing.
+     *
+     * @param token the token of the session
+     */
+    public void closeSession(String token) {
+        sessions().remove(token);
+    }
+
+    /**
+     * Makes an order for the user of a session. This method may be called by
+     * many threads at once: the items of the cart are locked by stripes of item
+     * ids, so an item is never sold twice, while carts with no stripe in common
+     * are placed in parallel. The other operations of the model are not made
+     * safe for concurrent use and must not run while sessions place orders.
+     *
+     * @param token      the token of the session
+     * @param items_keys the item keys to be ordered
+     * @return the created order
+     * @throws NullPointerException if the session is not open
+     * @throws InvalidId            if the cart is empty, or has an item that is
+     *                              not listed or is sold by the buyer
+     */
+    public Order makeOrder(String token, List<Integer> items_keys) throws NullPointerException, InvalidId {
+        Integer userId = sessions().get(token);
+        if (userId == null)
+            throw new NullPointerException();
+        User buyer = this.userManager.getUser(userId);
+
+        ItemLocks locks = itemLocks();
+        int[] taken = locks.lock(items_keys);
+        try {
+            Item[] items = cartItems(items_keys, buyer);
+            if (items == null)
+                throw new InvalidId();
+
+            // the record carries the order id, taken from this thread's own block
+            // of ids, so replaying it numbers the order as it was numbered here
+            if (this.journal != null) {
+                Journal.Record r = new Journal.Record(Journal.Op.MAKE_ORDER, userId)
+                        .setIds(idsOf(Journal.Op.MAKE_ORDER).reserve(1), 1).putIntList(items_keys);
+                synchronized (this.orderManager) {
+                    append(r);
+                }
+            }
+            return fillOrder(new Order(), items, buyer, new HashMap<Integer, User>()).clone();
+        } finally {
+            locks.unlock(taken);
+        }
+    }
+
+    /**
+     * Makes the user of a session the logged in user, as {@link ModelWriter}
+     * does before applying each command.
+     *
+     * @param token the token of the session, or null to log out
+     * @throws NullPointerException if the session is not open
+     */
+    void actAs(String token) throws NullPointerException {
+        if (token == null) {
+            this.currentUser = null;
+            return;
+        }
+        Integer userId = sessions().get(token);
+        if (userId == null)
+            throw new NullPointerException();
+        this.currentUser = this.userManager.getUser(userId);
+    }
+
+    private Map<String, Integer> sessions() {
+        Map<String, Integer> sessions = this.sessions;
+        if (sessions == null) {
+            synchronized (this) {
+                if (this.sessions == null)
+                    this.sessions = new ConcurrentHashMap<String, Integer>();
+                sessions = this.sessions;
+            }
+        }
+        return sessions;
+    }
+
+    private ItemLocks itemLocks() {
+        ItemLocks locks = this.itemLocks;
+        if (locks == null) {
+            synchronized (this) {
+                if (this.itemLocks == null)
+                    this.itemLocks = new ItemLocks(ITEM_LOCK_STRIPES);
+                locks = this.itemLocks;
+            }
+        }
+        return locks;
     }
 
     /**
@@ -375,10 +869,13 @@ public class Model implements Serializable {
 
     public void registsUser(String email, String name, String address, int nif, String password)
             throws NullPointerException, UserAlreadyExistsException {
-
         if (reviewCredentials(email) != true) {
             throw new UserAlreadyExistsException();
         }
+
+        if (this.journal != null)
+            log(record(Journal.Op.REGISTER_USER, 1).putString(email).putString(name).putString(address)
+                    .putInt(nif).putString(password));
         User u = new User(email, name, address, nif, password);
         this.userManager.addUser(u);
 
@@ -413,7 +910,13 @@ public class Model implements Serializable {
         if (conditionScore > 5 || releaseDate.isAfter(getSystemDate()))
             throw new IllegalArgumentException();
 
-        if (premium.equals("y")) {
+        boolean isPremium = premium.equals("y");
+        if (this.journal != null)
+            log(record(Journal.Op.REGISTER_BAG, 1).putString(description).putString(brand).putDouble(basePrice)
+                    .putString(carrier).putDouble(conditionScore).putDouble(dimension).putString(material)
+                    .putDate(releaseDate).putString(premium));
+
+        if (isPremium) {
             PremiumBag bag = new PremiumBag(description, brand, basePrice,
                     this.carrierManager.getCarrier(carrier),
                     conditionScore / 5, previousOwners, dimension, material, releaseDate, this.currentUser.getId());
@@ -444,16 +947,19 @@ public class Model implements Serializable {
     public void registTshirt(String description, String brand, double basePrice,
             String carrier, double conditionScore, Tshirt.TshirtSize size,
             Tshirt.TshirtPattern pattern) throws NullPointerException, IllegalArgumentException {
-
         if (currentUser == null)
             throw new NullPointerException();
 
         if (conditionScore > 5)
             throw new IllegalArgumentException();
 
+        Carrier c = this.carrierManager.getCarrier(carrier);
+        if (this.journal != null)
+            log(record(Journal.Op.REGISTER_TSHIRT, 1).putString(description).putString(brand)
+                    .putDouble(basePrice).putString(carrier).putDouble(conditionScore).putEnum(size).putEnum(pattern));
+
         Stack<Integer> previousOwners = new Stack<Integer>();
-        Tshirt tshirt = new Tshirt(description, brand, basePrice,
-                this.carrierManager.getCarrier(carrier),
+        Tshirt tshirt = new Tshirt(description, brand, basePrice, c,
                 conditionScore / 5, previousOwners, size, pattern, this.currentUser.getId());
 
         registsItem(tshirt, this.currentUser.getId());
@@ -479,7 +985,6 @@ public class Model implements Serializable {
             String carrier, double conditionScore, double size,
             Sneaker.SneakerType type, String color, LocalDate releaseDate, String premium)
             throws NullPointerException, IllegalArgumentException {
-
         if (currentUser == null)
             throw new NullPointerException();
 
@@ -488,16 +993,21 @@ public class Model implements Serializable {
         if (conditionScore > 5 || releaseDate.isAfter(getSystemDate()))
             throw new IllegalArgumentException();
 
-        if (premium.equals("y")) {
-            PremiumSneaker sneaker = new PremiumSneaker(description, brand, basePrice,
-                    this.carrierManager.getCarrier(carrier),
+        Carrier c = this.carrierManager.getCarrier(carrier);
+        boolean isPremium = premium.equals("y");
+        if (this.journal != null)
+            log(record(Journal.Op.REGISTER_SNEAKER, 1).putString(description).putString(brand)
+                    .putDouble(basePrice).putString(carrier).putDouble(conditionScore).putDouble(size).putEnum(type)
+                    .putString(color).putDate(releaseDate).putString(premium));
+
+        if (isPremium) {
+            PremiumSneaker sneaker = new PremiumSneaker(description, brand, basePrice, c,
                     conditionScore / 5, previousOwners, size, type, color, releaseDate, this.currentUser.getId());
 
             registsItem(sneaker, this.currentUser.getId());
 
         } else {
-            Sneaker sneaker = new Sneaker(description, brand, basePrice,
-                    this.carrierManager.getCarrier(carrier),
+            Sneaker sneaker = new Sneaker(description, brand, basePrice, c,
                     conditionScore / 5, previousOwners, size, type, color, releaseDate, this.currentUser.getId());
 
             registsItem(sneaker, this.currentUser.getId());
@@ -582,6 +1092,11 @@ public class Model implements Serializable {
     public void alterItemState(int item_id) throws NullPointerException {
         int user_id = currentUser.getId();
         User u = this.userManager.getUser(user_id);
+        if (!u.hasItem(item_id))
+            throw new NullPointerException();
+
+        if (this.journal != null)
+            log(record(Journal.Op.ALTER_ITEM_STATE).putInt(item_id));
         u.listASystemItem(item_id);
         this.itemManager.soldToListed(item_id);
     }
@@ -595,17 +1110,24 @@ public class Model implements Serializable {
      */
 
     public void TimeSkip(LocalDate newDate) throws IllegalArgumentException {
-
         if (newDate.isBefore(getSystemDate())) {
             throw new IllegalArgumentException();
         }
 
-        while (getSystemDate().isBefore(newDate)) {
+        if (this.journal != null)
+            log(record(Journal.Op.TIME_SKIP).putDate(newDate));
 
-            List<Order> orders = this.orderManager.getOrders();
-            for (Order o : orders) {
-                if (o.isPending() && o.getDate().isBefore(newDate)) {
-                    List<Item> items = o.setFinished();
+        if (getSystemDate().isBefore(newDate)) {
+
+            // Every transition is decided by the first day of the skip: pending orders
+            // dated before the new date are finished and, when the skip spans at least
+            // three days, every finished order is dispatched.
+            boolean dispatch = ChronoUnit.DAYS.between(getSystemDate(), newDate) >= 3;
+            BillingStage billing = new BillingStage(this.userManager);
+
+            for (Order o : this.orderManager.getDueOrders(newDate)) {
+                if (o.isPending()) {
+                    List<Item> items = this.orderManager.finishOrder(o);
                     for (Item i : items) {
 
                         User u = this.userManager.getUser(i.getUserId());
@@ -617,51 +1139,25 @@ public class Model implements Serializable {
                         i.setUserId(uBuy.getId());
 
                     }
-                    o.setFinished();
                 }
-                long daysBetween = ChronoUnit.DAYS.between(getSystemDate(), newDate);
-                if (o.isFinished() && daysBetween >= 3) {
+                if (o.isFinished() && dispatch) {
 
-                    HashMap<String, Integer> carrierHelper = o.getCarrierHelper();
-                    for (String carrier_name : carrierHelper.keySet()) {
+                    ObjectIntMap<String> carrierHelper = o.getCarrierHelper();
+                    for (String carrier_name : carrierHelper) {
 
                         Carrier c = this.carrierManager.getCarrier(carrier_name);
                         c.updateEarnings(carrierHelper.get(carrier_name), o.getItemPricePerCarrier(carrier_name));
 
                     }
-                    HashMap<String, Integer> carrierHashMap = o.getCarrierHelper();
-
-                    for (User u : o.getSellers()) {
-                        List<Item> items = o.itemPerUser(u);
-
-                        for (Item item : items) {
-                            Bill bill = new Bill();
-                            bill.addItem(item, carrierHashMap.get(item.getCarrier().getName()));
-                            bill.setSold();
-                            bill.setOrder(o);
-                            u.addBills(bill.clone());
-                        }
-
-                    }
-
-                    Bill billBuyer = new Bill();
-                    for (Item item : o.getCollection()) {
-
-                        billBuyer.addItem(item, carrierHashMap.get(item.getCarrier().getName()));
-
-                    }
-                    billBuyer.setBought();
-                    billBuyer.setOrder(o);
-                    o.getBuyer().addBills(billBuyer.clone());
-                    o.setDispatched();
+                    billing.add(o);
+                    this.orderManager.dispatchOrder(o);
 
                 }
 
             }
-
-            setCurrentDate(getSystemDate().plusDays(1));
+            billing.run();
         }
-        setCurrentDate(newDate);
+        SystemDate.setDate(newDate);
     }
 
     /**
@@ -697,7 +1193,6 @@ public class Model implements Serializable {
      */
     public void deleteOrder(int orderId) throws OrderNotReturnable { // Para uma order ser returend, nenhum dos items
                                                                      // que foram comprados podem estar listados!
-
         Order o = this.orderManager.getOrder(orderId);
         long daysBetween = ChronoUnit.DAYS.between(o.getDate(), getSystemDate());
         User u = o.getBuyer();
@@ -712,6 +1207,8 @@ public class Model implements Serializable {
             throw new OrderNotReturnable();
         }
 
+        if (this.journal != null)
+            log(record(Journal.Op.DELETE_ORDER).putInt(orderId));
         this.orderManager.removeOrder(orderId);
         this.userManager.deleteBills(o);
         this.undoItem(o);
@@ -719,25 +1216,23 @@ public class Model implements Serializable {
     }
 
     /**
-     * Saves the current state of the model to a file.
+     * Saves the current state of the model, including the system date, to a
+     * binary snapshot file.
      *
      * @param fileName the name of the file to save the model to
      * @throws FileNotFoundException if the specified file cannot be found
      * @throws IOException           if an I/O error occurs while writing to the
      *                               file
+     * @see Snapshot
      */
     public void save(String fileName) throws FileNotFoundException, IOException {
-
-        FileOutputStream fs = new FileOutputStream(fileName);
-        ObjectOutputStream os = new ObjectOutputStream(fs);
-        os.writeObject(this);
-        os.flush();
-        os.close();
-
+        Snapshot.write(this, fileName);
     }
 
     /**
-     * Loads a previously saved model from a file.
+     * Loads a previously saved model from a file. Snapshots also restore the
+     * system date; files written with Java serialization by older versions are
+     * still accepted, with the date kept in its own file.
      *
      * @param fileName the name of the file to load the model from
      * @return the loaded Model object
@@ -748,6 +1243,9 @@ public class Model implements Serializable {
      */
     public static Model load(String fileName) throws FileNotFoundException, IOException, ClassNotFoundException {
 
+        if (Snapshot.isSnapshot(fileName))
+            return Snapshot.read(fileName);
+
         FileInputStream fs = new FileInputStream(fileName);
         ObjectInputStream os = new ObjectInputStream(fs);
         Model model = (Model) os.readObject();
@@ -770,13 +1268,15 @@ public class Model implements Serializable {
      */
     public void addCarrier(String name, double taxSmall, double taxMedium, double taxBig, String premium)
             throws CarrierAlreadyExistsException {
+        if (this.carrierManager.mapView().containsKey(name))
+            throw new CarrierAlreadyExistsException();
+        Carrier c = premium.equals("y") ? new PremiumCarrier(name, taxSmall, taxMedium, taxBig, 0)
+                : new Carrier(name, taxSmall, taxMedium, taxBig, 0);
 
-        if (premium.equals("y")) {
-
-            this.carrierManager.addCarrier(new PremiumCarrier(name, taxSmall, taxMedium, taxBig, 0));
-        } else {
-            this.carrierManager.addCarrier(new Carrier(name, taxSmall, taxMedium, taxBig, 0));
-        }
+        if (this.journal != null)
+            log(record(Journal.Op.ADD_CARRIER).putString(name).putDouble(taxSmall).putDouble(taxMedium)
+                    .putDouble(taxBig).putString(premium));
+        this.carrierManager.addCarrier(c);
 
     }
 
@@ -793,6 +1293,9 @@ public class Model implements Serializable {
     public void changeCarrier(String name, double taxSmall, double taxMedium, double taxBig)
             throws NullPointerException {
         Carrier c = this.carrierManager.getCarrier(name);
+        if (this.journal != null)
+            log(record(Journal.Op.CHANGE_CARRIER).putString(name).putDouble(taxSmall).putDouble(taxMedium)
+                    .putDouble(taxBig));
         this.carrierManager.removeCarrier(name);
         c.setTaxSmall(taxSmall);
         c.setTaxMedium(taxMedium);
@@ -813,6 +1316,17 @@ public class Model implements Serializable {
         return this.carrierManager.mapCopy();
     }
 
+    /**
+     * Returns a read-only view of the carrier manager map. The carriers are not
+     * copied, so it stays inside the package: see
+     * {@link CarrierManager#mapView()}.
+     *
+     * @return an unmodifiable view of the carrier manager map
+     */
+    Map<String, Carrier> getCarrierManagerView() {
+        return this.carrierManager.mapView();
+    }
+
     /**
      * Returns the total vintage profit.
      *
@@ -835,14 +1349,258 @@ public class Model implements Serializable {
      * @return a string representation of the user's bills
      */
     public String userBills() {
-        String ret = "";
-        for (int b_key : this.currentUser.getBills().keySet()) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            userBills(sb, 0, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never fails
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes one page of the bills of the current user.
+     *
+     * @param out    where the bills are written
+     * @param offset the number of bills to skip
+     * @param limit  the most bills to write
+     * @return the number of bills written; fewer than the limit on the last page
+     * @throws IOException              if the output fails
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public int userBills(Appendable out, int offset, int limit) throws IOException, IllegalArgumentException {
+        return page(this.currentUser.getBills().values(), null, Bill::showBill, out, offset, limit);
+    }
+
+    /**
+     * Starts a journal record for an operation of the logged in user.
+     *
+     * @param op the operation
+     * @return the record, ready for the arguments
+     */
+    private Journal.Record record(Journal.Op op) {
+        return new Journal.Record(op, this.currentUser == null ? Journal.NONE : this.currentUser.getId());
+    }
 
-            Bill b = this.currentUser.getBills().get(b_key);
-            ret += b.showBill();
+    /**
+     * Starts a journal record for an operation that creates objects, setting
+     * aside the ids they are going to take.
+     *
+     * @param op    the operation
+     * @param count the most objects the operation creates
+     * @return the record, ready for the arguments
+     */
+    private Journal.Record record(Journal.Op op, int count) {
+        return record(op).setIds(idsOf(op).reserve(count), count);
+    }
+
+    /**
+     * Returns the allocator of the ids an operation gives to the objects it
+     * creates, in the context of the calling thread.
+     *
+     * @param op the operation
+     * @return the allocator, or null if the operation creates no numbered object
+     */
+    private static IdAllocator idsOf(Journal.Op op) {
+        switch (op) {
+            case REGISTER_USER:
+                return ModelContext.current().userIds();
+            case REGISTER_BAG:
+            case REGISTER_TSHIRT:
+            case REGISTER_SNEAKER:
+                return ModelContext.current().itemIds();
+            case MAKE_ORDER:
+            case MAKE_ORDERS:
+                return ModelContext.current().orderIds();
+            default:
+                return null;
+        }
+    }
 
+    /**
+     * Appends a record to the journal before the operation is applied, taking a
+     * checkpoint first when enough records have accumulated.
+     *
+     * @param r the record
+     * @throws UncheckedIOException if the journal cannot be written
+     */
+    private void log(Journal.Record r) {
+        if (this.journalRecords >= CHECKPOINT_EVERY) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        append(r);
+    }
+
+    /**
+     * Appends a record to the journal, without ever taking a checkpoint, as
+     * needed while sessions place orders concurrently.
+     *
+     * @param r the record
+     * @throws UncheckedIOException if the journal cannot be written
+     */
+    private void append(Journal.Record r) {
+        try {
+            this.journalSeq = this.journal.append(r);
+            this.journalRecords++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts journaling the operations applied to this model. A snapshot is
+     * written right away so that the journal always has a base to be replayed
+     * on.
+     *
+     * @param snapshotFile the snapshot the journal is relative to
+     * @param journalFile  the journal file
+     * @param synchronous  true to make every operation wait for its record to
+     *                     reach the disk; otherwise records are flushed in groups
+     *                     every {@link #JOURNAL_FLUSH_MILLIS} milliseconds
+     * @throws IOException if the journal or the snapshot cannot be written
+     */
+    public void startJournal(String snapshotFile, String journalFile, boolean synchronous) throws IOException {
+        closeJournal();
+        this.journal = Journal.open(journalFile, this.journalSeq, synchronous, JOURNAL_FLUSH_MILLIS);
+        this.journalSnapshot = snapshotFile;
+        checkpoint();
+    }
+
+    /**
+     * Checks if the operations applied to this model are journaled.
+     *
+     * @return true if a journal is open
+     */
+    public boolean isJournaled() {
+        return this.journal != null;
+    }
+
+    /**
+     * Writes a snapshot of the model and empties the journal, whose records the
+     * snapshot now covers.
+     *
+     * @throws IOException if the snapshot or the journal cannot be written
+     */
+    public void checkpoint() throws IOException {
+        if (this.journal == null)
+            throw new IllegalStateException("Model is not journaled");
+        this.journal.flush();
+        this.journalSeq = this.journal.getLastSeq();
+        save(this.journalSnapshot);
+        this.journal.truncate();
+        this.journalRecords = 0;
+    }
+
+    /**
+     * Stops journaling, flushing the records not yet on disk.
+     *
+     * @throws IOException if the journal cannot be flushed
+     */
+    public void closeJournal() throws IOException {
+        if (this.journal != null) {
+            Journal j = this.journal;
+            this.journal = null;
+            j.close();
+        }
+    }
+
+    /**
+     * Restores a model after a crash: loads the last snapshot, replays the
+     * journal records written after it, and resumes journaling to the same
+     * files. The files are only checkpointed once every record was replayed, so
+     * a failed recovery leaves them as they were.
+     *
+     * @param snapshotFile the snapshot file; a new model is used if it does not
+     *                     exist
+     * @param journalFile  the journal file
+     * @param synchronous  whether the resumed journal is synchronous
+     * @return the recovered model
+     * @throws IOException            if a file is damaged, a record cannot be
+     *                                replayed or an I/O error occurs
+     * @throws ClassNotFoundException if the snapshot is an old serialized model
+     *                                with unknown classes
+     */
+    public static Model recover(String snapshotFile, String journalFile, boolean synchronous)
+            throws IOException, ClassNotFoundException {
+        Model m = new File(snapshotFile).exists() ? load(snapshotFile) : new Model();
+        m.journalSeq = Journal.replay(journalFile, m.journalSeq, m::replay);
+        m.startJournal(snapshotFile, journalFile, synchronous);
+        return m;
+    }
+
+    /**
+     * Applies a journal record as the user that issued it, giving the objects it
+     * creates the ids they had. Operations are journaled only once they are
+     * validated, so a record that fails means the journal does not fit the
+     * snapshot. Journals of older versions also hold operations that failed the
+     * first time, which fail again in the same way and are skipped.
+     *
+     * @param e the record
+     * @throws IOException if the record cannot be applied
+     */
+    private void replay(Journal.Entry e) throws IOException {
+        try {
+            this.currentUser = e.getUserId() == Journal.NONE ? null
+                    : this.userManager.getUserMapView().get(e.getUserId());
+            if (e.getFirstId() != Journal.NONE && idsOf(e.getOp()) != null)
+                idsOf(e.getOp()).pin(e.getFirstId(), e.getIdCount());
+            switch (e.getOp()) {
+                case SET_DATE:
+                    setCurrentDate(e.readDate());
+                    break;
+                case REGISTER_USER:
+                    registsUser(e.readString(), e.readString(), e.readString(), e.readInt(), e.readString());
+                    break;
+                case REGISTER_BAG:
+                    registBag(e.readString(), e.readString(), e.readDouble(), e.readString(), e.readDouble(),
+                            e.readDouble(), e.readString(), e.readDate(), e.readString());
+                    break;
+                case REGISTER_TSHIRT:
+                    registTshirt(e.readString(), e.readString(), e.readDouble(), e.readString(), e.readDouble(),
+                            e.readEnum(Tshirt.TshirtSize.class), e.readEnum(Tshirt.TshirtPattern.class));
+                    break;
+                case REGISTER_SNEAKER:
+                    registSneaker(e.readString(), e.readString(), e.readDouble(), e.readString(), e.readDouble(),
+                            e.readDouble(), e.readEnum(Sneaker.SneakerType.class), e.readString(), e.readDate(),
+                            e.readString());
+                    break;
+                case MAKE_ORDER:
+                    makeOrder(e.readIntList());
+                    break;
+                case MAKE_ORDERS: {
+                    int n = e.readInt();
+                    List<List<Integer>> carts = new ArrayList<List<Integer>>(n);
+                    for (int k = 0; k < n; k++)
+                        carts.add(e.readIntList());
+                    makeOrders(carts);
+                    break;
+                }
+                case DELETE_ORDER:
+                    deleteOrder(e.readInt());
+                    break;
+                case TIME_SKIP:
+                    TimeSkip(e.readDate());
+                    break;
+                case ADD_CARRIER:
+                    addCarrier(e.readString(), e.readDouble(), e.readDouble(), e.readDouble(), e.readString());
+                    break;
+                case CHANGE_CARRIER:
+                    changeCarrier(e.readString(), e.readDouble(), e.readDouble(), e.readDouble());
+                    break;
+                case ALTER_ITEM_STATE:
+                    alterItemState(e.readInt());
+                    break;
+            }
+        } catch (Exception ex) {
+            if (e.isValidated())
+                throw new IOException("Cannot replay journal record " + e.getSeq() + " (" + e.getOp() + ")", ex);
+            // an older journal: the operation failed when it was first applied as well
         }
-        return ret;
+        this.journalSeq = e.getSeq();
     }
 
 }
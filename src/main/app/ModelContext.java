@@ -0,0 +1,155 @@
+package app;
+
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The clock and the id counters of a {@link Model}. Items, users, orders and
+ * bills take their ids, and prices and dates their notion of today, from the
+ * context bound to the thread that creates or reads them, falling back to a
+ * single shared context that every model uses unless told otherwise. Giving
+ * each model its own context, and binding it on the threads that work on that
+ * model, lets several models live side by side in one JVM without touching
+ * each other's dates and ids.
+ * <p>
+ * Each context also keeps the {@link CardCache} of the cards its items and
+ * carriers were drawn as.
+ * <p>
+ * Ids come from {@link IdAllocator}s, which any number of threads may use at
+ * once. The date, like the rest of the model, is changed by one thread at a
+ * time.
+ */
+public final class ModelContext {
+
+    private static final ModelContext SHARED = new ModelContext();
+    private static final ThreadLocal<ModelContext> BOUND = new ThreadLocal<ModelContext>();
+    private static final AtomicInteger EPOCHS = new AtomicInteger();
+    private static volatile boolean anyBound;
+
+    private LocalDate date;
+    private volatile int epoch;
+    private final IdAllocator itemIds;
+    private final IdAllocator userIds;
+    private final IdAllocator orderIds;
+    private final IdAllocator billNumbers;
+    private final CardCache cards;
+
+    /**
+     * Constructs a context with no date and every counter at 1.
+     */
+    public ModelContext() {
+        this.itemIds = new IdAllocator();
+        this.userIds = new IdAllocator();
+        this.orderIds = new IdAllocator();
+        this.billNumbers = new IdAllocator();
+        this.cards = new CardCache();
+    }
+
+    /**
+     * Returns the context bound to the calling thread, or the shared context if
+     * none is.
+     *
+     * @return the current context
+     */
+    public static ModelContext current() {
+        if (!anyBound)
+            return SHARED;
+        ModelContext c = BOUND.get();
+        return c == null ? SHARED : c;
+    }
+
+    /**
+     * Binds a context to the calling thread.
+     *
+     * @param context the context, or null to go back to the shared one
+     * @return the context that was bound before, or null if there was none, so
+     *         it can be restored
+     */
+    public static ModelContext bind(ModelContext context) {
+        ModelContext previous = BOUND.get();
+        if (context == null) {
+            BOUND.remove();
+        } else {
+            anyBound = true;
+            BOUND.set(context);
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the current date of this context.
+     *
+     * @return the date, or null if it was never set
+     */
+    public LocalDate getDate() {
+        return this.date;
+    }
+
+    /**
+     * Sets the current date of this context.
+     *
+     * @param date the new date
+     */
+    public void setDate(LocalDate date) {
+        if (!Objects.equals(this.date, date))
+            this.epoch = EPOCHS.incrementAndGet();
+        this.date = date;
+    }
+
+    /**
+     * Returns a number that changes every time the date does. Numbers are never
+     * reused by another context, so a value stamped in one context is never
+     * taken as current in another.
+     *
+     * @return the number of the current date
+     */
+    int getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Returns the allocator of item ids.
+     *
+     * @return the allocator
+     */
+    IdAllocator itemIds() {
+        return this.itemIds;
+    }
+
+    /**
+     * Returns the allocator of user ids.
+     *
+     * @return the allocator
+     */
+    IdAllocator userIds() {
+        return this.userIds;
+    }
+
+    /**
+     * Returns the allocator of order ids.
+     *
+     * @return the allocator
+     */
+    IdAllocator orderIds() {
+        return this.orderIds;
+    }
+
+    /**
+     * Returns the allocator of bill numbers.
+     *
+     * @return the allocator
+     */
+    IdAllocator billNumbers() {
+        return this.billNumbers;
+    }
+
+    /**
+     * Returns the cache of the cards drawn in this context.
+     *
+     * @return the card cache
+     */
+    public CardCache getCardCache() {
+        return this.cards;
+    }
+}
@@ -0,0 +1,477 @@
+package app;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Applies the mutations of a {@link Model} on a single writer thread, so that
+ * many client threads can submit them without any lock while the model itself
+ * stays single-threaded.
+ *
+ * <p>
+ * Commands go into a bounded ring of slots allocated up front. A producer
+ * claims the next sequence number with a compare-and-set, waits only if the
+ * ring is full, fills the slot and publishes it. The writer takes every slot
+ * published so far as one batch and applies it in sequence order; consecutive
+ * orders of the same session are placed with a single
+ * {@link Model#makeOrders(List)} call. Each command runs as the user of its
+ * session, and its result, or the exception it threw, completes the future
+ * returned on submission.
+ * </p>
+ *
+ * <p>
+ * Once a model is handed to a writer, every mutation must go through the
+ * writer. Callbacks attached to the returned futures run on the writer thread
+ * unless attached asynchronously, so they should be short.
+ * </p>
+ */
+public class ModelWriter implements Closeable {
+
+    /**
+     * A mutation of the model, applied on the writer thread.
+     *
+     * @param <T> the type of the result
+     */
+    public interface Command<T> {
+
+        /**
+         * Applies the mutation.
+         *
+         * @param m the model, with the user of the session logged in
+         * @return the result
+         * @throws Exception if the model rejects the mutation
+         */
+        T apply(Model m) throws Exception;
+    }
+
+    /**
+     * Default number of slots of the ring.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Bit of the claim counter set once the writer is closed, so that no
+     * sequence can be claimed after that.
+     */
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private static final int SPINS = 100;
+
+    private static class Slot {
+        private volatile long published = -1;
+        private String session;
+        private Command<?> command;
+        private List<Integer> cart;
+        private CompletableFuture<Object> result;
+    }
+
+    private final Model model;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed;
+    private volatile long consumed;
+    private volatile boolean sleeping;
+    private final Thread writer;
+
+    private volatile long batches;
+    private volatile long applied;
+
+    /**
+     * Constructs a writer with {@link #DEFAULT_CAPACITY} slots and starts its
+     * thread.
+     *
+     * @param model the model
+     */
+    public ModelWriter(Model model) {
+        this(model, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a writer and starts its thread.
+     *
+     * @param model    the model
+     * @param capacity the minimum number of slots, rounded up to a power of two
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public ModelWriter(Model model, int capacity) throws IllegalArgumentException {
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        int n = 1;
+        while (n < capacity)
+            n <<= 1;
+
+        this.model = model;
+        this.slots = new Slot[n];
+        for (int i = 0; i < n; i++)
+            this.slots[i] = new Slot();
+        this.mask = n - 1;
+        this.claimed = new AtomicLong();
+        this.writer = new Thread(this::run, "model-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Submits a command.
+     *
+     * @param <T>     the type of the result
+     * @param session the token of the session to run as, or null to run with no
+     *                user logged in
+     * @param command the command
+     * @return the future result of the command
+     * @throws IllegalStateException if the writer is closed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(String session, Command<T> command) throws IllegalStateException {
+        return (CompletableFuture<T>) publish(session, command, null);
+    }
+
+    /**
+     * Submits an order.
+     *
+     * @param session    the token of the session of the buyer
+     * @param items_keys the item keys to be ordered
+     * @return the future order, failing with {@link InvalidId} if the cart is
+     *         rejected
+     * @throws IllegalStateException if the writer is closed
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Order> makeOrder(String session, List<Integer> items_keys)
+            throws IllegalStateException {
+        return (CompletableFuture<Order>) (CompletableFuture<?>) publish(session, null, items_keys);
+    }
+
+    /**
+     * Submits the registration of a bag.
+     *
+     * @param session        the token of the session of the seller
+     * @param description    The description of the bag.
+     * @param brand          The brand of the bag.
+     * @param basePrice      The base price of the bag.
+     * @param carrier        The carrier of the bag.
+     * @param conditionScore The condition score of the bag.
+     * @param dimension      The dimension of the bag.
+     * @param material       The material of the bag.
+     * @param releaseDate    The release date of the bag.
+     * @param premium        "y" for a premium bag
+     * @return the future completion of the registration
+     * @throws IllegalStateException if the writer is closed
+     */
+    public CompletableFuture<Void> registBag(String session, String description, String brand, double basePrice,
+            String carrier, double conditionScore, double dimension, String material, LocalDate releaseDate,
+            String premium) throws IllegalStateException {
+        return submit(session, m -> {
+            m.registBag(description, brand, basePrice, carrier, conditionScore, dimension, material, releaseDate,
+                    premium);
+            return null;
+        });
+    }
+
+    /**
+     * Submits the registration of a T-shirt.
+     *
+     * @param session        the token of the session of the seller
+     * @param description    The description of the T-shirt.
+     * @param brand          The brand of the T-shirt.
+     * @param basePrice      The base price of the T-shirt.
+     * @param carrier        The carrier of the T-shirt.
+     * @param conditionScore The condition score of the T-shirt.
+     * @param size           The size of the T-shirt.
+     * @param pattern        The pattern of the T-shirt.
+     * @return the future completion of the registration
+     * @throws IllegalStateException if the writer is closed
+     */
+    public CompletableFuture<Void> registTshirt(String session, String description, String brand,
+            double basePrice, String carrier, double conditionScore, Tshirt.TshirtSize size,
+            Tshirt.TshirtPattern pattern) throws IllegalStateException {
+        return submit(session, m -> {
+            m.registTshirt(description, brand, basePrice, carrier, conditionScore, size, pattern);
+            return null;
+        });
+    }
+
+    /**
+     * Submits the registration of a sneaker.
+     *
+     * @param session        the token of the session of the seller
+     * @param description    The description of the sneaker.
+     * @param brand          The brand of the sneaker.
+     * @param basePrice      The base price of the sneaker.
+     * @param carrier        The carrier of the sneaker.
+     * @param conditionScore The condition score of the sneaker.
+     * @param size           The size of the sneaker.
+     * @param type           The type of the sneaker.
+     * @param color          The color of the sneaker.
+     * @param releaseDate    The release date of the sneaker.
+     * @param premium        "y" for a premium sneaker
+     * @return the future completion of the registration
+     * @throws IllegalStateException if the writer is closed
+     */
+    public CompletableFuture<Void> registSneaker(String session, String description, String brand,
+            double basePrice, String carrier, double conditionScore, double size, Sneaker.SneakerType type,
+            String color, LocalDate releaseDate, String premium) throws IllegalStateException {
+        return submit(session, m -> {
+            m.registSneaker(description, brand, basePrice, carrier, conditionScore, size, type, color,
+                    releaseDate, premium);
+            return null;
+        });
+    }
+
+    /**
+     * Submits a time skip.
+     *
+     * @param newDate the new date
+     * @return the future completion of the time skip
+     * @throws IllegalStateException if the writer is closed
+     */
+    public CompletableFuture<Void> TimeSkip(LocalDate newDate) throws IllegalStateException {
+        return submit(null, m -> {
+            m.TimeSkip(newDate);
+            return null;
+        });
+    }
+
+    /**
+     * Submits the return of an order.
+     *
+     * @param orderId the ID of the order
+     * @return the future completion of the return, failing with
+     *         {@link OrderNotReturnable} if the order cannot be returned
+     * @throws IllegalStateException if the writer is closed
+     */
+    public CompletableFuture<Void> deleteOrder(int orderId) throws IllegalStateException {
+        return submit(null, m -> {
+            m.deleteOrder(orderId);
+            return null;
+        });
+    }
+
+    /**
+     * Submits the registration of a carrier.
+     *
+     * @param name      the name of the carrier
+     * @param taxSmall  the tax for small orders
+     * @param taxMedium the tax for medium orders
+     * @param taxBig    the tax for big orders
+     * @param premium   "y" for a premium carrier
+     * @return the future completion of the registration
+     * @throws IllegalStateException if the writer is closed
+     */
+    public CompletableFuture<Void> addCarrier(String name, double taxSmall, double taxMedium, double taxBig,
+            String premium) throws IllegalStateException {
+        return submit(null, m -> {
+            m.addCarrier(name, taxSmall, taxMedium, taxBig, premium);
+            return null;
+        });
+    }
+
+    /**
+     * Submits a change of the taxes of a carrier.
+     *
+     * @param name      the name of the carrier
+     * @param taxSmall  the tax for small orders
+     * @param taxMedium the tax for medium orders
+     * @param taxBig    the tax for big orders
+     * @return the future completion of the change
+     * @throws IllegalStateException if the writer is closed
+     */
+    public CompletableFuture<Void> changeCarrier(String name, double taxSmall, double taxMedium, double taxBig)
+            throws IllegalStateException {
+        return submit(null, m -> {
+            m.changeCarrier(name, taxSmall, taxMedium, taxBig);
+            return null;
+        });
+    }
+
+    /**
+     * Returns the number of batches applied so far.
+     *
+     * @return the number of batches
+     */
+    public long getBatches() {
+        return this.batches;
+    }
+
+    /**
+     * Returns the number of commands applied so far.
+     *
+     * @return the number of commands
+     */
+    public long getApplied() {
+        return this.applied;
+    }
+
+    /**
+     * Stops accepting commands, waits for the writer to apply the ones already
+     * submitted and stops it.
+     */
+    @Override
+    public void close() {
+        long c;
+        do {
+            c = this.claimed.get();
+        } while ((c & CLOSED) == 0 && !this.claimed.compareAndSet(c, c | CLOSED));
+        LockSupport.unpark(this.writer);
+
+        boolean interrupted = false;
+        while (this.writer.isAlive()) {
+            try {
+                this.writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private CompletableFuture<Object> publish(String session, Command<?> command, List<Integer> cart) {
+        long seq;
+        do {
+            seq = this.claimed.get();
+            if ((seq & CLOSED) != 0)
+                throw new IllegalStateException("Writer is closed");
+        } while (!this.claimed.compareAndSet(seq, seq + 1));
+
+        while (seq - this.consumed >= this.slots.length)
+            Thread.yield();
+
+        Slot s = this.slots[(int) seq & this.mask];
+        CompletableFuture<Object> result = new CompletableFuture<Object>();
+        s.session = session;
+        s.command = command;
+        s.cart = cart;
+        s.result = result;
+        s.published = seq;
+
+        if (this.sleeping)
+            LockSupport.unpark(this.writer);
+        return result;
+    }
+
+    /**
+     * The loop of the writer thread: waits for published slots and applies them
+     * in batches until the writer is closed and every claimed slot is applied.
+     * The thread works in the context of the model.
+     */
+    private void run() {
+        ModelContext.bind(this.model.getContext());
+        long next = 0;
+        int idle = 0;
+        while (true) {
+            if (this.slots[(int) next & this.mask].published != next) {
+                long c = this.claimed.get();
+                if ((c & CLOSED) != 0 && (c & ~CLOSED) == next)
+                    return;
+                if (idle++ < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    this.sleeping = true;
+                    if (this.slots[(int) next & this.mask].published != next && (this.claimed.get() & CLOSED) == 0)
+                        LockSupport.park(this);
+                    this.sleeping = false;
+                }
+                continue;
+            }
+
+            idle = 0;
+            long end = next + 1;
+            while (end - next < this.slots.length && this.slots[(int) end & this.mask].published == end)
+                end++;
+            apply(next, end);
+            this.batches++;
+            this.applied += end - next;
+            this.consumed = end;
+            next = end;
+        }
+    }
+
+    /**
+     * Applies the slots of a batch, in sequence order, and releases them.
+     */
+    private void apply(long from, long to) {
+        long seq = from;
+        while (seq < to) {
+            Slot s = this.slots[(int) seq & this.mask];
+            if (s.cart == null) {
+                try {
+                    this.model.actAs(s.session);
+                    complete(s, s.command.apply(this.model));
+                } catch (Exception e) {
+                    fail(s, e);
+                }
+                seq++;
+                continue;
+            }
+
+            // consecutive orders of the same session are placed together
+            long end = seq + 1;
+            while (end < to) {
+                Slot o = this.slots[(int) end & this.mask];
+                if (o.cart == null || !Objects.equals(o.session, s.session))
+                    break;
+                end++;
+            }
+            placeOrders(seq, end);
+            seq = end;
+        }
+    }
+
+    private void placeOrders(long from, long to) {
+        Slot first = this.slots[(int) from & this.mask];
+        try {
+            this.model.actAs(first.session);
+            if (to - from == 1) {
+                complete(first, this.model.makeOrder(first.cart));
+                return;
+            }
+
+            List<List<Integer>> carts = new ArrayList<List<Integer>>((int) (to - from));
+            for (long seq = from; seq < to; seq++)
+                carts.add(this.slots[(int) seq & this.mask].cart);
+            List<Order> orders = this.model.makeOrders(carts);
+            for (long seq = from; seq < to; seq++) {
+                Slot s = this.slots[(int) seq & this.mask];
+                Order o = orders.get((int) (seq - from));
+                if (o == null)
+                    fail(s, new InvalidId());
+                else
+                    complete(s, o);
+            }
+        } catch (Exception e) {
+            for (long seq = from; seq < to; seq++) {
+                Slot s = this.slots[(int) seq & this.mask];
+                if (s.result != null)
+                    fail(s, e);
+            }
+        }
+    }
+
+    private static void complete(Slot s, Object value) {
+        CompletableFuture<Object> result = release(s);
+        result.complete(value);
+    }
+
+    private static void fail(Slot s, Exception e) {
+        CompletableFuture<Object> result = release(s);
+        result.completeExceptionally(e);
+    }
+
+    /**
+     * Clears a slot so it holds no references once it is reused.
+     */
+    private static CompletableFuture<Object> release(Slot s) {
+        CompletableFuture<Object> result = s.result;
+        s.session = null;
+        s.command = null;
+        s.cart = null;
+        s.result = null;
+        return result;
+    }
+}
@@ -0,0 +1,180 @@
+package app;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A small map from keys to int values, used by {@link Order} to count its items
+ * per carrier. An order only ever has a handful of carriers, so the entries sit
+ * in two short parallel arrays, in the order their keys were added, and are
+ * found by a linear scan: no hash table, no entry objects and no boxed counts.
+ * Iterating the map gives its keys.
+ *
+ * @param <K> the type of the keys
+ */
+public class ObjectIntMap<K> implements Iterable<K>, Serializable {
+
+    private static final long serialVersionUID = -7538348988403141588L;
+
+    private static final Object[] EMPTY_KEYS = new Object[0];
+    private static final int[] EMPTY_VALUES = new int[0];
+
+    private Object[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Constructs an empty map.
+     */
+    public ObjectIntMap() {
+        this.keys = EMPTY_KEYS;
+        this.values = EMPTY_VALUES;
+    }
+
+    /**
+     * Constructs a map with the same entries as another.
+     *
+     * @param other the map to copy
+     */
+    public ObjectIntMap(ObjectIntMap<K> other) {
+        this.keys = Arrays.copyOf(other.keys, other.size);
+        this.values = Arrays.copyOf(other.values, other.size);
+        this.size = other.size;
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < this.size; i++) {
+            if (Objects.equals(this.keys[i], key))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or 0 if the key is not in the map
+     */
+    public int get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? 0 : this.values[i];
+    }
+
+    /**
+     * Checks if a key is in the map.
+     *
+     * @param key the key
+     * @return true if the map has a value for it
+     */
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the previous value, or 0 if the key was not in the map
+     */
+    public int put(K key, int value) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            int previous = this.values[i];
+            this.values[i] = value;
+            return previous;
+        }
+        if (this.size == this.keys.length) {
+            int capacity = Math.max(2, this.size * 2);
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.size++;
+        return 0;
+    }
+
+    /**
+     * Removes a key, keeping the other entries in order.
+     *
+     * @param key the key
+     * @return the value it had, or 0 if the key was not in the map
+     */
+    public int remove(Object key) {
+        int i = indexOf(key);
+        if (i < 0)
+            return 0;
+        int previous = this.values[i];
+        int moved = this.size - i - 1;
+        System.arraycopy(this.keys, i + 1, this.keys, i, moved);
+        System.arraycopy(this.values, i + 1, this.values, i, moved);
+        this.size--;
+        this.keys[this.size] = null;
+        return previous;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the size of the map
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if the map is empty.
+     *
+     * @return true if it has no entry
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns an iterator over the keys, in the order they were added.
+     *
+     * @return an iterator over the keys
+     */
+    @Override
+    public Iterator<K> iterator() {
+        return new Iterator<K>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < ObjectIntMap.this.size;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public K next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return (K) ObjectIntMap.this.keys[this.next++];
+            }
+        };
+    }
+
+    /**
+     * Returns a string representation of the map, in the same form as a
+     * {@code Map}.
+     *
+     * @return a string representation of the map
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(this.keys[i]).append('=').append(this.values[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -9,6 +9,7 @@ import java.io.Serializable;
 
 //import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.LinkedList;
 
 /**
@@ -16,8 +17,10 @@ import java.util.LinkedList;
  * order details.
  */
 public class Order implements Serializable, Comparable<Order> {
+    private static final long serialVersionUID = 918081542208628183L;
+
     private List<Item> collection;
-    private HashMap<String, Integer> carrierHelper;
+    private ObjectIntMap<String> carrierHelper;
     private List<User> sellers;
     private User buyer;
     private TypeOfSize dimension;
@@ -28,8 +31,6 @@ public class Order implements Serializable, Comparable<Order> {
     private int id;
     private double endPrice;
 
-    private static int currentID = 1;
-
     /**
      * Enumeration representing the size of an order.
      */
@@ -49,13 +50,13 @@ public class Order implements Serializable, Comparable<Order> {
      */
     public Order() {
         this.collection = new LinkedList<Item>();
-        this.carrierHelper = new HashMap<String, Integer>();
+        this.carrierHelper = new ObjectIntMap<String>();
         this.dimension = TypeOfSize.Little;
         this.itemPrice = 0;
         this.satisfactionPrice = 0;
         this.state = OrderState.Pending;
         this.date = LocalDate.now();
-        this.id = currentID++;
+        this.id = ModelContext.current().orderIds().next();
         this.endPrice = 0;
         this.buyer = null;
         this.sellers = new LinkedList<User>();
@@ -79,7 +80,7 @@ public class Order implements Serializable, Comparable<Order> {
      * @param sellers           the sellers associated with the order
      */
 
-    public Order(List<Item> collection, HashMap<String, Integer> carrierHelper, TypeOfSize dimension,
+    public Order(List<Item> collection, ObjectIntMap<String> carrierHelper, TypeOfSize dimension,
             double satisfactionPrice, double itemPrice, OrderState state, LocalDate date, double endPrice, User buyer,
             List<User> sellers) {
         this.collection = collection;
@@ -89,7 +90,7 @@ public class Order implements Serializable, Comparable<Order> {
         this.satisfactionPrice = satisfactionPrice;
         this.state = state;
         this.date = date;
-        this.id = currentID++;
+        this.id = ModelContext.current().orderIds().next();
         this.endPrice = endPrice;
         this.buyer = buyer;
         this.sellers = sellers;
@@ -156,7 +157,7 @@ public class Order implements Serializable, Comparable<Order> {
      *
      * @return The carrier helper map.
      */
-    public HashMap<String, Integer> getCarrierHelper() {
+    public ObjectIntMap<String> getCarrierHelper() {
         return this.carrierHelper;
     }
 
@@ -260,6 +261,33 @@ public class Order implements Serializable, Comparable<Order> {
         return this.id;
     }
 
+    /**
+     * Sets the ID of the order. Only used when restoring a saved state.
+     *
+     * @param id the ID of the order
+     */
+    void setID(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the ID the next order will get.
+     *
+     * @return the ID the next order will get
+     */
+    static int getCurrentID() {
+        return ModelContext.current().orderIds().peek();
+    }
+
+    /**
+     * Sets the ID the next order will get. Only used when restoring a saved state.
+     *
+     * @param next the ID the next order will get
+     */
+    static void setCurrentID(int next) {
+        ModelContext.current().orderIds().reset(next);
+    }
+
     /**
      * Sets the end price of the order.
      *
@@ -390,16 +418,16 @@ public class Order implements Serializable, Comparable<Order> {
      * @return A formatted string representation of the order.
      */
     public String showOrder() {
-        String ret = "Items= \n";
+        StringBuilder sb = new StringBuilder("Items= \n");
 
         for (Item i : this.collection) {
-            ret += i.showItem();
+            sb.append(i.showItem());
         }
-        ret = ret + '\n' + " ID= " + this.id + ", " + " Final Price= " + this.itemPrice + ", " + " State= " + this.state
-                + ", " + " Date= "
-                + this.date.toString();
+        sb.append('\n').append(" ID= ").append(this.id).append(", ").append(" Final Price= ").append(this.itemPrice)
+                .append(", ").append(" State= ").append(this.state).append(", ").append(" Date= ")
+                .append(this.date.toString());
 
-        return ret;
+        return sb.toString();
     }
 
     /**
@@ -452,11 +480,8 @@ public class Order implements Serializable, Comparable<Order> {
 
         this.itemPrice += oneItem.getPrice();
 
-        if (this.carrierHelper.containsKey(oneItem.getCarrier().getName()))
-            this.carrierHelper.put(oneItem.getCarrier().getName(),
-                    this.carrierHelper.get(oneItem.getCarrier().getName()) + 1);
-        else
-            this.carrierHelper.put(oneItem.getCarrier().getName(), 1);
+        String carrier = oneItem.getCarrier().getName();
+        this.carrierHelper.put(carrier, this.carrierHelper.get(carrier) + 1);
 
         if (oneItem.getConditionScore() == 1)
             this.satisfactionPrice += 0.5;
@@ -484,13 +509,13 @@ public class Order implements Serializable, Comparable<Order> {
         } else {
             this.satisfactionPrice -= 0.25;
         }
-        int x = this.carrierHelper.get(oneItem.getCarrier().getName());
+        String carrier = oneItem.getCarrier().getName();
+        int x = this.carrierHelper.get(carrier);
 
         if (x != 1) {
-            this.carrierHelper.put(oneItem.getCarrier().getName(),
-                    this.carrierHelper.get(oneItem.getCarrier().getName()) - 1);
+            this.carrierHelper.put(carrier, x - 1);
         } else {
-            this.carrierHelper.remove(oneItem.getCarrier().getName());
+            this.carrierHelper.remove(carrier);
         }
         boolean flag = false;
         for (Item i : this.collection) {
@@ -549,20 +574,41 @@ public class Order implements Serializable, Comparable<Order> {
      */
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject(); // default serialization
-        out.writeInt(currentID); // save static variable
+        out.writeInt(getCurrentID()); // save the counter of the context
     }
 
     /**
-     * Custom serialization read method to restore the object's state.
+     * Custom serialization read method to restore the object's state. Files of
+     * versions before {@link ObjectIntMap} hold the items per carrier in a
+     * {@code HashMap}, which is converted.
      *
      * @param in the input stream
      * @throws IOException            if an I/O error occurs
      * @throws ClassNotFoundException if the class of a serialized object cannot be
      *                                found
      */
+    @SuppressWarnings("unchecked")
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject(); // default deserialization
-        currentID = in.readInt(); // load static variable
+        ObjectInputStream.GetField fields = in.readFields();
+        this.collection = (List<Item>) fields.get("collection", null);
+        this.sellers = (List<User>) fields.get("sellers", null);
+        this.buyer = (User) fields.get("buyer", null);
+        this.dimension = (TypeOfSize) fields.get("dimension", null);
+        this.itemPrice = fields.get("itemPrice", 0.0);
+        this.satisfactionPrice = fields.get("satisfactionPrice", 0.0);
+        this.state = (OrderState) fields.get("state", null);
+        this.date = (LocalDate) fields.get("date", null);
+        this.id = fields.get("id", 0);
+        this.endPrice = fields.get("endPrice", 0.0);
+        Object carriers = fields.get("carrierHelper", null);
+        if (carriers instanceof Map) {
+            this.carrierHelper = new ObjectIntMap<String>();
+            for (Map.Entry<String, Integer> e : ((Map<String, Integer>) carriers).entrySet())
+                this.carrierHelper.put(e.getKey(), e.getValue());
+        } else {
+            this.carrierHelper = (ObjectIntMap<String>) carriers;
+        }
+        setCurrentID(in.readInt()); // load the counter of the context
     }
 
     /**
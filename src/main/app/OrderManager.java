@@ -1,21 +1,56 @@
 package app;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 /**
  * Manages orders by storing and providing access to order information.
+ * Besides the order map it maintains secondary indexes by buyer, seller, state
+ * and date, so lookups are proportional to the number of matching orders.
  */
 public class OrderManager implements Serializable {
-    private HashMap<Integer, Order> orderMap;
+    private static final long serialVersionUID = 2598333320252808023L;
+
+    private IntHashMap<Order> orderMap;
+    private OrderScheduler scheduler;
+
+    private HashMap<Integer, TreeSet<Integer>> buyerIndex;
+    private HashMap<Integer, TreeSet<Integer>> sellerIndex;
+    private EnumMap<Order.OrderState, TreeSet<Integer>> stateIndex;
+    private TreeMap<LocalDate, TreeSet<Integer>> dateIndex;
 
     /**
      * Constructs an OrderManager object with an empty order map.
      */
     public OrderManager() {
-        this.orderMap = new HashMap<Integer, Order>();
+        this.orderMap = new IntHashMap<Order>();
+        newIndexes();
+    }
+
+    /**
+     * Starts an empty schedule and empty secondary indexes.
+     */
+    private void newIndexes() {
+        this.scheduler = new OrderScheduler();
+        this.buyerIndex = new HashMap<Integer, TreeSet<Integer>>();
+        this.sellerIndex = new HashMap<Integer, TreeSet<Integer>>();
+        this.stateIndex = new EnumMap<Order.OrderState, TreeSet<Integer>>(Order.OrderState.class);
+        for (Order.OrderState state : Order.OrderState.values()) {
+            this.stateIndex.put(state, new TreeSet<Integer>());
+        }
+        this.dateIndex = new TreeMap<LocalDate, TreeSet<Integer>>();
     }
 
     /**
@@ -37,13 +72,45 @@ public class OrderManager implements Serializable {
      * @return a list of orders associated with the specified user ID
      */
     public List<Order> getThisUserOrders(int userId) {
+        return resolve(this.buyerIndex.get(userId));
+    }
+
+    /**
+     * Retrieves all orders containing items sold by the specified user.
+     *
+     * @param userId the ID of the seller
+     * @return a list of orders in which the user is one of the sellers
+     */
+    public List<Order> getSellerOrders(int userId) {
+        return resolve(this.sellerIndex.get(userId));
+    }
+
+    /**
+     * Retrieves all orders in the specified state.
+     *
+     * @param state the state of the orders
+     * @return a list of the orders in that state
+     */
+    public List<Order> getOrdersByState(Order.OrderState state) {
+        return resolve(this.stateIndex.get(state));
+    }
+
+    /**
+     * Retrieves all orders placed between two dates, both inclusive, sorted by
+     * date.
+     *
+     * @param from the first date of the interval
+     * @param to   the last date of the interval
+     * @return a list of the orders placed in the interval
+     */
+    public List<Order> getOrdersBetween(LocalDate from, LocalDate to) {
         List<Order> orders = new LinkedList<Order>();
+        if (from.isAfter(to))
+            return orders;
 
-        for (Integer key : this.orderMap.keySet()) {
-            Order o = this.orderMap.get(key);
-            if (o.getBuyer().getId() == userId) {
-                orders.add(o);
-            }
+        NavigableMap<LocalDate, TreeSet<Integer>> range = this.dateIndex.subMap(from, true, to, true);
+        for (TreeSet<Integer> ids : range.values()) {
+            orders.addAll(resolve(ids));
         }
         return orders;
     }
@@ -59,12 +126,16 @@ public class OrderManager implements Serializable {
     }
 
     /**
-     * Adds an order to the order map.
+     * Adds an order to the order map. Sessions placing orders concurrently may
+     * call this at the same time.
      *
      * @param order the order to be added
      */
-    public void addOrder(Order order) {
-        this.orderMap.put(order.getID(), order.clone());
+    public synchronized void addOrder(Order order) {
+        Order stored = order.clone();
+        this.orderMap.put(stored.getID(), stored);
+        this.scheduler.schedule(stored);
+        index(stored);
     }
 
     /**
@@ -74,7 +145,54 @@ public class OrderManager implements Serializable {
      * @return the removed order, or null if not found
      */
     public Order removeOrder(int id) {
-        return this.orderMap.remove(id);
+        Order o = this.orderMap.remove(id);
+        if (o != null) {
+            this.scheduler.unschedule(o);
+            unindex(o);
+        }
+        return o;
+    }
+
+    /**
+     * Retrieves, in ascending id order, the orders whose state may change when the
+     * system date is advanced to the given date.
+     *
+     * @param until the date the system is being advanced to
+     * @return the pending orders dated before it and the finished orders not yet
+     *         dispatched
+     */
+    public List<Order> getDueOrders(LocalDate until) {
+        List<Order> orders = new ArrayList<Order>();
+        for (int id : this.scheduler.dueOrders(until)) {
+            orders.add(this.orderMap.get(id));
+        }
+        return orders;
+    }
+
+    /**
+     * Sets an order as finished and updates the schedule and the state index.
+     *
+     * @param order the order to finish
+     * @return the collection of items in the order
+     */
+    public List<Item> finishOrder(Order order) {
+        Order.OrderState previous = order.getState();
+        List<Item> items = order.setFinished();
+        this.scheduler.finished(order);
+        moveState(order, previous);
+        return items;
+    }
+
+    /**
+     * Sets an order as dispatched and removes it from the schedule.
+     *
+     * @param order the order to dispatch
+     */
+    public void dispatchOrder(Order order) {
+        Order.OrderState previous = order.getState();
+        order.setDispatched();
+        this.scheduler.dispatched(order);
+        moveState(order, previous);
     }
 
     /**
@@ -84,10 +202,114 @@ public class OrderManager implements Serializable {
      */
     public List<Order> getOrders() {
         List<Order> orders = new LinkedList<Order>();
-        for (Integer key : this.orderMap.keySet()) {
-            Order value = this.orderMap.get(key);
+        for (Order value : this.orderMap.values()) {
             orders.add(value);
         }
         return orders;
     }
+
+    /**
+     * Adds an order to every secondary index.
+     *
+     * @param o the order to index
+     */
+    private void index(Order o) {
+        if (o.getBuyer() != null)
+            this.buyerIndex.computeIfAbsent(o.getBuyer().getId(), k -> new TreeSet<Integer>()).add(o.getID());
+        for (User seller : o.getSellers()) {
+            this.sellerIndex.computeIfAbsent(seller.getId(), k -> new TreeSet<Integer>()).add(o.getID());
+        }
+        this.stateIndex.get(o.getState()).add(o.getID());
+        this.dateIndex.computeIfAbsent(o.getDate(), k -> new TreeSet<Integer>()).add(o.getID());
+    }
+
+    /**
+     * Removes an order from every secondary index.
+     *
+     * @param o the order to remove
+     */
+    private void unindex(Order o) {
+        if (o.getBuyer() != null)
+            removeFrom(this.buyerIndex, o.getBuyer().getId(), o.getID());
+        for (User seller : o.getSellers()) {
+            removeFrom(this.sellerIndex, seller.getId(), o.getID());
+        }
+        this.stateIndex.get(o.getState()).remove(o.getID());
+        removeFrom(this.dateIndex, o.getDate(), o.getID());
+    }
+
+    /**
+     * Moves an order in the state index after one of its state changes.
+     *
+     * @param o        the order whose state changed
+     * @param previous the state of the order before the change
+     */
+    private void moveState(Order o, Order.OrderState previous) {
+        if (previous != o.getState()) {
+            this.stateIndex.get(previous).remove(o.getID());
+            this.stateIndex.get(o.getState()).add(o.getID());
+        }
+    }
+
+    /**
+     * Removes an order id from an index bucket, dropping the bucket when it
+     * becomes empty.
+     *
+     * @param index the index to update
+     * @param key   the key of the bucket
+     * @param id    the ID of the order
+     */
+    private static <K> void removeFrom(Map<K, TreeSet<Integer>> index, K key, int id) {
+        TreeSet<Integer> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty())
+                index.remove(key);
+        }
+    }
+
+    /**
+     * Resolves a set of order ids into the orders they identify.
+     *
+     * @param ids the order ids, may be null
+     * @return a list with the orders, in ascending id order
+     */
+    private List<Order> resolve(Collection<Integer> ids) {
+        List<Order> orders = new LinkedList<Order>();
+        if (ids != null) {
+            for (int id : ids) {
+                orders.add(this.orderMap.get(id));
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Reads the manager. Files of versions before {@link IntHashMap} hold the
+     * orders in a {@code HashMap}, which is converted, and have no schedule or
+     * secondary indexes, which are built from the orders.
+     *
+     * @param in the stream to read from
+     * @throws IOException            if the stream cannot be read
+     * @throws ClassNotFoundException if the class of an order cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        Object orders = fields.get("orderMap", null);
+        this.orderMap = orders instanceof Map ? IntHashMap.of((Map<Integer, Order>) orders)
+                : (IntHashMap<Order>) orders;
+        this.scheduler = (OrderScheduler) fields.get("scheduler", null);
+        this.buyerIndex = (HashMap<Integer, TreeSet<Integer>>) fields.get("buyerIndex", null);
+        this.sellerIndex = (HashMap<Integer, TreeSet<Integer>>) fields.get("sellerIndex", null);
+        this.stateIndex = (EnumMap<Order.OrderState, TreeSet<Integer>>) fields.get("stateIndex", null);
+        this.dateIndex = (TreeMap<LocalDate, TreeSet<Integer>>) fields.get("dateIndex", null);
+        if (this.scheduler == null) {
+            newIndexes();
+            for (Order o : this.orderMap.values()) {
+                this.scheduler.schedule(o);
+                index(o);
+            }
+        }
+    }
 }
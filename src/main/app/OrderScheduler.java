@@ -0,0 +1,114 @@
+package app;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Time index over the orders that still have a state transition ahead of them.
+ * Pending orders are kept by date, so a time skip only visits the orders that
+ * become due inside the skipped window, and finished orders wait in their own
+ * set until they are dispatched.
+ */
+public class OrderScheduler implements Serializable {
+    private static final long serialVersionUID = 3138164109622652766L;
+
+    private TreeMap<LocalDate, TreeSet<Integer>> pendingByDate;
+    private TreeSet<Integer> awaitingDispatch;
+
+    /**
+     * Constructs an empty OrderScheduler.
+     */
+    public OrderScheduler() {
+        this.pendingByDate = new TreeMap<LocalDate, TreeSet<Integer>>();
+        this.awaitingDispatch = new TreeSet<Integer>();
+    }
+
+    /**
+     * Starts tracking an order according to its current state. Dispatched orders
+     * have no transition left and are ignored.
+     *
+     * @param order the order to schedule
+     */
+    public void schedule(Order order) {
+        if (order.isPending()) {
+            this.pendingByDate.computeIfAbsent(order.getDate(), d -> new TreeSet<Integer>()).add(order.getID());
+        } else if (order.isFinished()) {
+            this.awaitingDispatch.add(order.getID());
+        }
+    }
+
+    /**
+     * Stops tracking an order, whatever its state.
+     *
+     * @param order the order to remove from the schedule
+     */
+    public void unschedule(Order order) {
+        removePending(order);
+        this.awaitingDispatch.remove(order.getID());
+    }
+
+    /**
+     * Moves an order from the pending index to the set of orders waiting to be
+     * dispatched.
+     *
+     * @param order the order that was finished
+     */
+    public void finished(Order order) {
+        removePending(order);
+        this.awaitingDispatch.add(order.getID());
+    }
+
+    /**
+     * Removes a dispatched order from the schedule.
+     *
+     * @param order the order that was dispatched
+     */
+    public void dispatched(Order order) {
+        this.awaitingDispatch.remove(order.getID());
+    }
+
+    /**
+     * Returns, in ascending id order, the ids of the orders that may change state
+     * when the system date is advanced to the given date: the pending orders dated
+     * before it and every finished order still waiting to be dispatched.
+     *
+     * @param until the date the system is being advanced to
+     * @return the ids of the due orders
+     */
+    public List<Integer> dueOrders(LocalDate until) {
+        TreeSet<Integer> due = new TreeSet<Integer>(this.awaitingDispatch);
+        for (Map.Entry<LocalDate, TreeSet<Integer>> e : this.pendingByDate.headMap(until, false).entrySet()) {
+            due.addAll(e.getValue());
+        }
+        return new ArrayList<Integer>(due);
+    }
+
+    /**
+     * Checks if there are no orders waiting for a state transition.
+     *
+     * @return true if nothing is scheduled, false otherwise
+     */
+    public boolean isEmpty() {
+        return this.pendingByDate.isEmpty() && this.awaitingDispatch.isEmpty();
+    }
+
+    /**
+     * Removes an order from the pending index, dropping its date bucket when it
+     * becomes empty.
+     *
+     * @param order the order to remove
+     */
+    private void removePending(Order order) {
+        TreeSet<Integer> ids = this.pendingByDate.get(order.getDate());
+        if (ids != null) {
+            ids.remove(order.getID());
+            if (ids.isEmpty())
+                this.pendingByDate.remove(order.getDate());
+        }
+    }
+}
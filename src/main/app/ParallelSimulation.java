@@ -0,0 +1,177 @@
+package app;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent simulations concurrently on a pool of threads. Every
+ * simulation file is replayed on a fresh {@link Model} with its own
+ * {@link ModelContext}, so the simulations never see each other's dates or
+ * ids and each ends exactly as it would have on its own.
+ */
+public class ParallelSimulation {
+
+    /**
+     * The result of one simulation.
+     */
+    public static class Outcome {
+        private final String path;
+        private final Model model;
+        private final SimulationReplay.Stats stats;
+        private final Exception failure;
+
+        /**
+         * Constructs the result of a simulation.
+         *
+         * @param path    the simulation file
+         * @param model   the model the file was replayed on
+         * @param stats   the statistics of the replay, or null if it failed
+         * @param failure the reason the replay stopped, or null if it finished
+         */
+        Outcome(String path, Model model, SimulationReplay.Stats stats, Exception failure) {
+            this.path = path;
+            this.model = model;
+            this.stats = stats;
+            this.failure = failure;
+        }
+
+        /**
+         * Returns the simulation file.
+         *
+         * @return the path of the file
+         */
+        public String getPath() {
+            return this.path;
+        }
+
+        /**
+         * Returns the model the simulation was replayed on, as far as it got.
+         * Its context must be bound on the threads that go on using it.
+         *
+         * @return the model
+         */
+        public Model getModel() {
+            return this.model;
+        }
+
+        /**
+         * Returns the statistics of the replay.
+         *
+         * @return the statistics, or null if the replay failed
+         */
+        public SimulationReplay.Stats getStats() {
+            return this.stats;
+        }
+
+        /**
+         * Returns the reason the replay stopped early.
+         *
+         * @return the exception, or null if the whole file was replayed
+         */
+        public Exception getFailure() {
+            return this.failure;
+        }
+
+        /**
+         * Returns a string representation of the outcome.
+         *
+         * @return a string representation of the outcome
+         */
+        @Override
+        public String toString() {
+            if (this.failure == null)
+                return this.path + ": " + this.stats;
+            String reason = this.failure instanceof RuntimeException || this.failure.getMessage() == null
+                    ? this.failure.toString()
+                    : this.failure.getMessage();
+            return this.path + ": failed, " + reason;
+        }
+    }
+
+    /**
+     * Replays simulation files concurrently, each on its own model. A file that
+     * cannot be read, holds an invalid command or makes the model fail, such as
+     * an order placed before any login, does not stop the others; its failure
+     * is reported in its outcome.
+     *
+     * @param paths   the simulation files
+     * @param threads the number of simulations to run at once
+     * @return the outcomes, in the order of the files
+     * @throws IllegalArgumentException if the number of threads is not positive
+     * @throws InterruptedException     if the calling thread is interrupted while
+     *                                  waiting
+     */
+    public static List<Outcome> run(List<String> paths, int threads)
+            throws IllegalArgumentException, InterruptedException {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Number of threads must be positive");
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, paths.size())));
+        try {
+            List<Future<Outcome>> pending = new ArrayList<Future<Outcome>>(paths.size());
+            for (String path : paths)
+                pending.add(pool.submit(() -> replay(path)));
+
+            List<Outcome> outcomes = new ArrayList<Outcome>(paths.size());
+            for (Future<Outcome> f : pending) {
+                try {
+                    outcomes.add(f.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return outcomes;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Replays one file on a new model, in a new context bound to the calling
+     * thread for the duration of the replay.
+     */
+    private static Outcome replay(String path) {
+        ModelContext context = new ModelContext();
+        ModelContext previous = ModelContext.bind(context);
+        Model m = new Model(context);
+        try {
+            return new Outcome(path, m, new SimulationReplay(m).run(path, false), null);
+        } catch (IOException | InvalidCommand | RuntimeException e) {
+            return new Outcome(path, m, null, e);
+        } finally {
+            ModelContext.bind(previous);
+        }
+    }
+
+    /**
+     * Replays the simulation files given on the command line and prints how each
+     * went: {@code [--threads N] file...}. By default one simulation runs per
+     * processor.
+     *
+     * @param args the command line arguments
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else
+                paths.add(args[i]);
+        }
+
+        long start = System.nanoTime();
+        List<Outcome> outcomes = run(paths, threads);
+        long elapsed = System.nanoTime() - start;
+        for (Outcome o : outcomes)
+            System.out.println(o);
+        System.out.println(String.format("%d simulations on %d threads in %.1f ms", outcomes.size(), threads,
+                elapsed / 1e6));
+    }
+}
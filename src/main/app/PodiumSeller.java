@@ -1,7 +1,6 @@
 package app;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -14,16 +13,40 @@ public class PodiumSeller implements Querier {
     private Map<Integer, User> hm;
     private LocalDate date1;
     private LocalDate date2;
+    private int k;
+    private boolean parallel;
 
     /**
-     * Constructs a PodiumSeller object with the given user map and date range.
+     * Constructs a PodiumSeller object with the given user map and date range,
+     * ranking the top 3 sellers.
      *
      * @param mapcopy The user map.
      * @param date1   The start date of the range.
      * @param date2   The end date of the range.
      */
     public PodiumSeller(Map<Integer, User> mapcopy, LocalDate date1, LocalDate date2) {
+        this(mapcopy, date1, date2, 3, false);
+    }
+
+    /**
+     * Constructs a PodiumSeller object with the given user map, date range and podium
+     * size.
+     *
+     * @param mapcopy  The user map.
+     * @param date1    The start date of the range.
+     * @param date2    The end date of the range.
+     * @param k        The number of users on the podium.
+     * @param parallel Whether the users are evaluated in parallel.
+     * @throws IllegalArgumentException if k is not positive.
+     */
+    public PodiumSeller(Map<Integer, User> mapcopy, LocalDate date1, LocalDate date2, int k, boolean parallel)
+            throws IllegalArgumentException {
+        if (k <= 0)
+            throw new IllegalArgumentException("The podium size must be positive");
+
         hm = mapcopy;
+        this.k = k;
+        this.parallel = parallel;
 
         if (date1.isBefore(date2)) {
             this.date1 = date1;
@@ -37,7 +60,7 @@ public class PodiumSeller implements Querier {
     /**
      * Executes the query to calculate the podium sellers.
      *
-     * @return The list of top sellers.
+     * @return The list of top sellers, best first.
      * @throws NullPointerException if no user is in the model.
      */
     @Override
@@ -46,19 +69,7 @@ public class PodiumSeller implements Querier {
             throw new NullPointerException("No user is in the Model");
         }
 
-        List<User> topSellers = new ArrayList<>(hm.values());
-
-        for (int i = 0; i < topSellers.size() - 1; i++) {
-            for (int j = i + 1; j < topSellers.size(); j++) {
-                User user1 = topSellers.get(i);
-                User user2 = topSellers.get(j);
-                if (user2.soldItemsValueFrame(date1, date2) > user1.soldItemsValueFrame(date1, date2)) {
-                    topSellers.set(i, user2);
-                    topSellers.set(j, user1);
-                }
-            }
-        }
-        topSellers.removeIf(user -> user.getEmail().equals("admin"));
+        List<User> topSellers = UserRanking.top(hm.values(), u -> u.soldItemsValueFrame(date1, date2), k, parallel);
         return topSellers;
     }
 }
@@ -1,7 +1,6 @@
 package app;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -14,16 +13,40 @@ public class PodiumSpenders implements Querier {
     private Map<Integer, User> hm;
     private LocalDate date1;
     private LocalDate date2;
+    private int k;
+    private boolean parallel;
 
     /**
-     * Constructs a PodiumSpenders object with the given user map and date range.
+     * Constructs a PodiumSpenders object with the given user map and date range,
+     * ranking the top 3 spenders.
      *
      * @param mapcopy The user map.
      * @param date1   The start date of the range.
      * @param date2   The end date of the range.
      */
     public PodiumSpenders(Map<Integer, User> mapcopy, LocalDate date1, LocalDate date2) {
+        this(mapcopy, date1, date2, 3, false);
+    }
+
+    /**
+     * Constructs a PodiumSpenders object with the given user map, date range and podium
+     * size.
+     *
+     * @param mapcopy  The user map.
+     * @param date1    The start date of the range.
+     * @param date2    The end date of the range.
+     * @param k        The number of users on the podium.
+     * @param parallel Whether the users are evaluated in parallel.
+     * @throws IllegalArgumentException if k is not positive.
+     */
+    public PodiumSpenders(Map<Integer, User> mapcopy, LocalDate date1, LocalDate date2, int k, boolean parallel)
+            throws IllegalArgumentException {
+        if (k <= 0)
+            throw new IllegalArgumentException("The podium size must be positive");
+
         hm = mapcopy;
+        this.k = k;
+        this.parallel = parallel;
 
         if (date1.isBefore(date2)) {
             this.date1 = date1;
@@ -37,7 +60,7 @@ public class PodiumSpenders implements Querier {
     /**
      * Executes the query to calculate the podium spenders.
      *
-     * @return The list of top spenders.
+     * @return The list of top spenders, best first.
      * @throws NullPointerException if no user is in the model.
      */
     public Object execute() throws NullPointerException {
@@ -45,19 +68,7 @@ public class PodiumSpenders implements Querier {
             throw new NullPointerException("No user is in the Model");
         }
 
-        List<User> topSpenders = new ArrayList<>(hm.values());
-
-        for (int i = 0; i < topSpenders.size() - 1; i++) {
-            for (int j = i + 1; j < topSpenders.size(); j++) {
-                User user1 = topSpenders.get(i);
-                User user2 = topSpenders.get(j);
-                if (user2.boughtValueFrame(date1, date2) > user1.boughtValueFrame(date1, date2)) {
-                    topSpenders.set(i, user2);
-                    topSpenders.set(j, user1);
-                }
-            }
-        }
-        topSpenders.removeIf(user -> user.getEmail().equals("admin"));
+        List<User> topSpenders = UserRanking.top(hm.values(), u -> u.boughtValueFrame(date1, date2), k, parallel);
         return topSpenders;
     }
 }
@@ -10,6 +10,8 @@ import java.util.Stack;
  */
 public class PremiumBag extends Bag implements Premium {
 
+    private static final long serialVersionUID = -4021366713019115314L;
+
     /**
      * Constructs a new PremiumBag with default values.
      */
@@ -73,7 +75,7 @@ public class PremiumBag extends Bag implements Premium {
                 ", priceCorrection=" + getPriceCorrection() +
                 ", carrier='" + getCarrier().getName() + '\'' +
                 ", conditionScore=" + getConditionScore() +
-                ", previousOwners=" + getPreviousOwners() +
+                ", previousOwners=" + owners() +
                 ", dimension=" + getDimension() +
                 ", material=" + getMaterial() +
                 ", releaseDate=" + getReleaseDate() + '\'' +
@@ -88,7 +90,7 @@ public class PremiumBag extends Bag implements Premium {
      * @return a string representation of the bag
      */
     @Override
-    public String showItem() {
+    String renderItem() {
 
         StringBuilder sb = new StringBuilder();
         int boxWidth = 50;
@@ -112,13 +114,23 @@ public class PremiumBag extends Bag implements Premium {
         return sb.toString();
     }
 
+    /**
+     * The price of a premium bag depends on the system date.
+     *
+     * @return the price context
+     */
+    @Override
+    int priceContext() {
+        return SystemDate.getEpoch();
+    }
+
     /**
      * Returns the price of a PremiumBag
      *
      * @return the price of a PremiumBag
      */
     @Override
-    public double getPrice() {
+    double computePrice() {
         LocalDate now = SystemDate.getDate();
         int yearDiff = Period.between(this.getReleaseDate(), now).getYears();
 
@@ -6,6 +6,8 @@ package app;
  */
 public class PremiumCarrier extends Carrier implements Premium {
 
+    private static final long serialVersionUID = -6335745362445587500L;
+
     /**
      * Constructs a new PremiumCarrier with the specified properties.
      *
@@ -67,7 +69,7 @@ public class PremiumCarrier extends Carrier implements Premium {
      * @return a string representation of the carrier
      */
     @Override
-    public String showCarrier() {
+    String renderCarrier() {
         StringBuilder sb = new StringBuilder();
         int boxWidth = 30;
 
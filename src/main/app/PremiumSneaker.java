@@ -10,6 +10,8 @@ import java.util.Stack;
  */
 public class PremiumSneaker extends Sneaker implements Premium {
 
+    private static final long serialVersionUID = -1520095532364936039L;
+
   /**
    * Constructs a new PremiumSneaker with default values.
    */
@@ -59,6 +61,17 @@ public class PremiumSneaker extends Sneaker implements Premium {
     return new PremiumSneaker(this);
   }
 
+  /**
+   * The price of a premium sneaker depends on the system date, not on its
+   * previous owners.
+   *
+   * @return the price context
+   */
+  @Override
+  int priceContext() {
+    return SystemDate.getEpoch();
+  }
+
   /**
    * Calculates and returns the price of the premium sneaker.
    * The price is based on the base price and the number of years since the
@@ -67,7 +80,7 @@ public class PremiumSneaker extends Sneaker implements Premium {
    * @return the price of the premium sneaker
    */
   @Override
-  public double getPrice() {
+  double computePrice() {
     LocalDate now = SystemDate.getDate();
     int yearDiff = Period.between(this.getReleaseDate(), now).getYears();
 
@@ -89,7 +102,7 @@ public class PremiumSneaker extends Sneaker implements Premium {
         ", priceCorrection=" + getPriceCorrection() +
         ", carrier='" + getCarrier().getName() + '\'' +
         ", conditionScore=" + getConditionScore() +
-        ", previousOwners=" + getPreviousOwners() +
+        ", previousOwners=" + owners() +
         ", size=" + getSize() +
         ", type=" + getType() +
         ", color='" + getColor() + '\'' +
@@ -105,7 +118,7 @@ public class PremiumSneaker extends Sneaker implements Premium {
    * @return a string representation of the PremiumSneaker
    */
   @Override
-  public String showItem() {
+  String renderItem() {
 
     StringBuilder sb = new StringBuilder();
     int boxWidth = 50;
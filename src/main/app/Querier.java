@@ -2,7 +2,8 @@ package app;
 
 /**
  * An interface representing a Querier, which executes a query and returns a
- * result.
+ * result. Queriers receive read-only views of the model's data instead of
+ * copies, so they must not modify the objects they are given.
  */
 public interface Querier {
 
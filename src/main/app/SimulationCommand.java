@@ -0,0 +1,311 @@
+package app;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed line of a simulation file. Parsing splits the line and converts
+ * every argument up front, so applying the command to a model only calls the
+ * model operation. Lines that fail to parse still become commands: the error
+ * is kept and raised when the command is applied, at the same point where the
+ * line-by-line parser used to fail.
+ */
+public class SimulationCommand {
+
+    /**
+     * An operation on the model, with its arguments already parsed.
+     */
+    private interface Action {
+
+        /**
+         * Applies the operation to a model.
+         *
+         * @param m the model
+         * @throws InvalidCommand if the model rejects the operation
+         */
+        void apply(Model m) throws InvalidCommand;
+    }
+
+    private int line;
+    private String name;
+    private boolean setupDate;
+    private LocalDate date;
+    private Action action;
+    private InvalidCommand error;
+    private boolean dateError;
+
+    /**
+     * Constructs an empty command for the given line.
+     *
+     * @param line the line number of the command in the file
+     */
+    private SimulationCommand(int line) {
+        this.line = line;
+        this.name = "Unidentified";
+    }
+
+    /**
+     * Returns the line number of the command in the file.
+     *
+     * @return the line number
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Returns the name of the command, as written in the file.
+     *
+     * @return the name of the command
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Checks if the line could not be parsed into a valid command.
+     *
+     * @return true if applying the command will fail with a parsing error
+     */
+    public boolean isMalformed() {
+        return this.dateError || this.error != null;
+    }
+
+    /**
+     * Parses a line of a simulation file.
+     *
+     * @param buffer the line to parse
+     * @param line   the line number of the command in the file
+     * @return the parsed command
+     */
+    public static SimulationCommand parse(String buffer, int line) {
+        SimulationCommand cmd = new SimulationCommand(line);
+        String[] substrings = buffer.split(",");
+
+        try {
+            if (substrings[0].equals("SetupDate")) {
+                cmd.setupDate = true;
+                cmd.date = Util.toDate(substrings[1]);
+                return cmd;
+            }
+            cmd.date = Util.toDate(substrings[0]);
+        } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            cmd.dateError = true;
+            return cmd;
+        }
+
+        try {
+            cmd.name = substrings[1];
+            cmd.action = parseAction(cmd.name, substrings, line);
+        } catch (InvalidCommand e) {
+            cmd.error = e;
+        } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            cmd.error = new InvalidCommand("Unidentified", line);
+        }
+        return cmd;
+    }
+
+    /**
+     * Applies the command to a model. Like the simulation files always did, the
+     * model date is advanced to the date of the command before it runs.
+     *
+     * @param m the model
+     * @throws InvalidCommand if the command is malformed or the model rejects it
+     */
+    public void apply(Model m) throws InvalidCommand {
+        if (this.dateError)
+            throw new InvalidCommand("Unidentified", this.line);
+
+        if (this.setupDate) {
+            m.setCurrentDate(this.date);
+            return;
+        }
+
+        try {
+            if (this.date.isAfter(Util.toDate(m.getDate()))) {
+                m.TimeSkip(this.date);
+            }
+
+            if (this.error != null)
+                throw this.error;
+
+            this.action.apply(m);
+        } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidCommand("Unidentified", this.line);
+        }
+    }
+
+    /**
+     * Parses the arguments of a command into the operation it performs.
+     *
+     * @param command    the name of the command
+     * @param substrings the comma separated fields of the line
+     * @param line       the line number of the command in the file
+     * @return the operation of the command
+     * @throws InvalidCommand if the command is unknown
+     */
+    private static Action parseAction(String command, String[] substrings, int line) throws InvalidCommand {
+        switch (command) {
+
+            case "RegistarUtilizador": {
+                String[] arguments = substrings[2].split(";");
+                String email = arguments[0];
+                String name = arguments[1];
+                String address = arguments[2];
+                int nif = Integer.parseInt(arguments[3]);
+                String password = arguments[4];
+                return m -> {
+                    try {
+                        m.registsUser(email, name, address, nif, password);
+                    } catch (UserAlreadyExistsException e) {
+                        throw new InvalidCommand(command, line);
+                    }
+                };
+            }
+
+            case "Login": {
+                String[] arguments = substrings[2].split(";");
+                String email = arguments[0];
+                String password = arguments[1];
+                return m -> {
+                    try {
+                        m.loginModel(email, password);
+                    } catch (MissedIdException | NullPointerException e) {
+                        throw new InvalidCommand(command, line);
+                    }
+                };
+            }
+
+            case "RegistarItem":
+                return parseItem(command, substrings[2].split(";"), line);
+
+            case "RegistarTransportadora": {
+                String[] arguments = substrings[2].split(";");
+                String name = arguments[0];
+                String premium = arguments[1].equals("No") ? "n" : "y";
+                double taxSmall = Double.parseDouble(arguments[2]);
+                double taxMedium = Double.parseDouble(arguments[3]);
+                double taxBig = Double.parseDouble(arguments[4]);
+                return m -> {
+                    try {
+                        m.addCarrier(name, taxSmall, taxMedium, taxBig, premium);
+                    } catch (CarrierAlreadyExistsException e) {
+                        throw new InvalidCommand(command, line);
+                    }
+                };
+            }
+
+            case "FazerEncomenda": {
+                List<Integer> items = Util.toLinkedListParser(substrings[2]);
+                return m -> {
+                    try {
+                        m.makeOrder(items);
+                    } catch (InvalidId e) {
+                        throw new InvalidCommand(command, line);
+                    }
+                };
+            }
+
+            case "FazerEncomendas": {
+                List<List<Integer>> carts = new ArrayList<List<Integer>>();
+                for (String cart : substrings[2].split("\\|"))
+                    carts.add(Util.toLinkedListParser(cart));
+                return m -> {
+                    if (m.makeOrders(carts).contains(null))
+                        throw new InvalidCommand(command, line);
+                };
+            }
+
+            case "AlterarTransportadora": {
+                String[] arguments = substrings[2].split(";");
+                String name = arguments[0];
+                double taxSmall = Double.parseDouble(arguments[1]);
+                double taxMedium = Double.parseDouble(arguments[2]);
+                double taxBig = Double.parseDouble(arguments[3]);
+                return m -> {
+                    try {
+                        m.changeCarrier(name, taxSmall, taxMedium, taxBig);
+                    } catch (NullPointerException e) {
+                        throw new InvalidCommand(command, line);
+                    }
+                };
+            }
+
+            case "PassarTempo":
+                return m -> {
+                };
+
+            default:
+                throw new InvalidCommand(command, line);
+        }
+    }
+
+    /**
+     * Parses the arguments of a RegistarItem command.
+     *
+     * @param command    the name of the command
+     * @param arguments2 the semicolon separated arguments
+     * @param line       the line number of the command in the file
+     * @return the operation registering the item
+     * @throws InvalidCommand if the item type is unknown
+     */
+    private static Action parseItem(String command, String[] arguments2, int line) throws InvalidCommand {
+        Action register;
+        switch (arguments2[0]) {
+            case "Bag": {
+                String description = arguments2[1];
+                String brand = arguments2[2];
+                double basePrice = Double.parseDouble(arguments2[3]);
+                boolean premium = !arguments2[10].equals("No");
+                double dimension = Double.parseDouble(arguments2[5])
+                        * Double.parseDouble(arguments2[6]) * Double.parseDouble(arguments2[7]);
+                String carrier = premium ? arguments2[10] : arguments2[11];
+                double conditionScore = Double.parseDouble(arguments2[4]) / 5;
+                String material = arguments2[8];
+                LocalDate releaseDate = Util.toDate(arguments2[9]);
+                register = m -> m.registBag(description, brand, basePrice, carrier, conditionScore, dimension,
+                        material, releaseDate, premium ? "y" : "n");
+                break;
+            }
+            case "Sneaker": {
+                String description = arguments2[1];
+                String brand = arguments2[2];
+                double basePrice = Double.parseDouble(arguments2[3]);
+                boolean premium = !arguments2[9].equals("No");
+                String carrier = arguments2[10];
+                double conditionScore = Double.parseDouble(arguments2[4]) / 5;
+                double size = Double.parseDouble(arguments2[5]);
+                Sneaker.SneakerType type = Util.toSneakerType(arguments2[6]);
+                String color = arguments2[7];
+                LocalDate releaseDate = Util.toDate(arguments2[8]);
+                register = m -> m.registSneaker(description, brand, basePrice, carrier, conditionScore, size, type,
+                        color, releaseDate, premium ? "y" : "n");
+                break;
+            }
+            case "Tshirt": {
+                String description = arguments2[1];
+                String brand = arguments2[2];
+                double basePrice = Double.parseDouble(arguments2[3]);
+                String carrier = arguments2[7];
+                double conditionScore = Double.parseDouble(arguments2[4]) / 5;
+                Tshirt.TshirtSize size = Util.toTshirtSize(arguments2[5]);
+                Tshirt.TshirtPattern pattern = Util.toTshirtPattern(arguments2[6]);
+                register = m -> m.registTshirt(description, brand, basePrice, carrier, conditionScore, size,
+                        pattern);
+                break;
+            }
+            default:
+                throw new InvalidCommand(command, line);
+        }
+
+        return m -> {
+            try {
+                register.apply(m);
+            } catch (NullPointerException e) {
+                throw new InvalidCommand(command, line);
+            }
+        };
+    }
+}
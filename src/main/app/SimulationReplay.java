@@ -0,0 +1,307 @@
+package app;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Replays a simulation file against a model as a two stage pipeline. A reader
+ * thread scans the file through memory-mapped buffers and parses the lines into
+ * {@link SimulationCommand}s, handing them over in batches, while the calling
+ * thread, which owns the model, applies them in file order.
+ */
+public class SimulationReplay {
+
+    private static final int MAP_SIZE = 64 * 1024 * 1024;
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUED_BATCHES = 64;
+
+    /**
+     * Throughput figures of a replay.
+     */
+    public static class Stats {
+        private final long lines;
+        private final long commands;
+        private final long malformed;
+        private final long elapsedNanos;
+        private final boolean dryRun;
+
+        /**
+         * Constructs the statistics of a replay.
+         *
+         * @param lines        the number of lines read
+         * @param commands     the number of commands parsed
+         * @param malformed    the number of commands that failed to parse
+         * @param elapsedNanos the duration of the replay, in nanoseconds
+         * @param dryRun       whether the commands were only parsed
+         */
+        Stats(long lines, long commands, long malformed, long elapsedNanos, boolean dryRun) {
+            this.lines = lines;
+            this.commands = commands;
+            this.malformed = malformed;
+            this.elapsedNanos = elapsedNanos;
+            this.dryRun = dryRun;
+        }
+
+        /**
+         * Returns the number of lines read, comments and blank lines included.
+         *
+         * @return the number of lines
+         */
+        public long getLines() {
+            return this.lines;
+        }
+
+        /**
+         * Returns the number of commands parsed.
+         *
+         * @return the number of commands
+         */
+        public long getCommands() {
+            return this.commands;
+        }
+
+        /**
+         * Returns the number of commands that failed to parse.
+         *
+         * @return the number of malformed commands
+         */
+        public long getMalformed() {
+            return this.malformed;
+        }
+
+        /**
+         * Returns the duration of the replay.
+         *
+         * @return the elapsed time, in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+
+        /**
+         * Returns the replay throughput.
+         *
+         * @return the number of lines processed per second
+         */
+        public double getLinesPerSecond() {
+            if (this.elapsedNanos == 0)
+                return 0;
+            return this.lines * 1e9 / this.elapsedNanos;
+        }
+
+        /**
+         * Returns a string representation of the statistics.
+         *
+         * @return a string representation of the statistics
+         */
+        @Override
+        public String toString() {
+            return String.format("%s %d lines (%d commands, %d malformed) in %.1f ms, %.0f lines/sec",
+                    this.dryRun ? "Parsed" : "Replayed", this.lines, this.commands, this.malformed,
+                    this.elapsedNanos / 1e6, getLinesPerSecond());
+        }
+    }
+
+    private static final List<SimulationCommand> END = new ArrayList<SimulationCommand>();
+
+    private Model m;
+
+    /**
+     * Constructs a SimulationReplay that applies commands to the given model.
+     *
+     * @param m the model
+     */
+    public SimulationReplay(Model m) {
+        this.m = m;
+    }
+
+    /**
+     * Replays a simulation file. The first command that fails stops the replay,
+     * and so does a failure of the thread parsing the file, which is rethrown
+     * here as it was.
+     *
+     * @param path   the path of the file containing the commands
+     * @param dryRun true to only parse the file, without touching the model
+     * @return the statistics of the replay
+     * @throws FileNotFoundException if the file is not found
+     * @throws IOException           if an I/O error occurs
+     * @throws InvalidCommand        if an invalid command is encountered
+     */
+    public Stats run(String path, boolean dryRun) throws FileNotFoundException, IOException, InvalidCommand {
+        Path file = Paths.get(path);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path);
+        }
+
+        long start = System.nanoTime();
+        BlockingQueue<List<SimulationCommand>> queue = new ArrayBlockingQueue<List<SimulationCommand>>(
+                QUEUED_BATCHES);
+        Reader reader = new Reader(channel, queue);
+        Thread thread = new Thread(reader, "simulation-reader");
+        thread.setDaemon(true);
+        thread.start();
+
+        long commands = 0;
+        long malformed = 0;
+        try {
+            List<SimulationCommand> batch;
+            while ((batch = take(queue)) != END) {
+                for (SimulationCommand cmd : batch) {
+                    commands++;
+                    if (cmd.isMalformed())
+                        malformed++;
+                    if (!dryRun)
+                        cmd.apply(this.m);
+                }
+            }
+        } finally {
+            reader.stop();
+            thread.interrupt();
+            channel.close();
+        }
+
+        Throwable failure = reader.failure;
+        if (failure instanceof IOException)
+            throw (IOException) failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        if (failure != null)
+            throw new IOException(failure);
+
+        return new Stats(reader.lines, commands, malformed, System.nanoTime() - start, dryRun);
+    }
+
+    /**
+     * Takes the next batch from the queue, waiting for the reader if needed.
+     *
+     * @param queue the queue of parsed batches
+     * @return the next batch
+     * @throws IOException if the replay is interrupted
+     */
+    private static List<SimulationCommand> take(BlockingQueue<List<SimulationCommand>> queue) throws IOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Simulation replay interrupted", e);
+        }
+    }
+
+    /**
+     * The parsing stage: splits the mapped file into lines and parses them.
+     */
+    private static class Reader implements Runnable {
+        private final FileChannel channel;
+        private final BlockingQueue<List<SimulationCommand>> queue;
+        private volatile boolean stopped;
+        private volatile long lines;
+        private volatile Throwable failure;
+
+        private List<SimulationCommand> batch;
+
+        Reader(FileChannel channel, BlockingQueue<List<SimulationCommand>> queue) {
+            this.channel = channel;
+            this.queue = queue;
+            this.batch = new ArrayList<SimulationCommand>(BATCH_SIZE);
+        }
+
+        void stop() {
+            this.stopped = true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long size = this.channel.size();
+                long position = 0;
+                long lineNumber = 0;
+                byte[] line = new byte[256];
+                int used = 0;
+
+                // a line crossing the end of a mapped region continues in the next one
+                while (position < size && !this.stopped) {
+                    int length = (int) Math.min(MAP_SIZE, size - position);
+                    MappedByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                    for (int i = 0; i < length; i++) {
+                        byte b = buffer.get(i);
+                        if (b == '\n') {
+                            parseLine(++lineNumber, line, used);
+                            used = 0;
+                            if (this.stopped)
+                                return;
+                        } else {
+                            if (used == line.length)
+                                line = Arrays.copyOf(line, used * 2);
+                            line[used++] = b;
+                        }
+                    }
+                    position += length;
+                }
+
+                if (used > 0)
+                    parseLine(++lineNumber, line, used);
+                this.lines = lineNumber;
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable e) {
+                // whatever stopped the reader is rethrown by the applying stage,
+                // which would otherwise take the end of the queue for the end of
+                // the file
+                this.failure = e;
+            } finally {
+                if (!this.stopped) {
+                    try {
+                        this.queue.put(END);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Decodes and parses one line, queueing the command when the line is not
+         * a comment or blank.
+         */
+        private void parseLine(long lineNumber, byte[] bytes, int length) throws InterruptedException {
+            if (length > 0 && bytes[length - 1] == '\r')
+                length--;
+            String st = new String(bytes, 0, length, StandardCharsets.UTF_8);
+
+            if (Util.checkIgnore(st)) {
+                this.batch.add(SimulationCommand.parse(st, (int) lineNumber));
+                if (this.batch.size() == BATCH_SIZE)
+                    flush();
+            }
+        }
+
+        /**
+         * Hands the current batch over to the applying stage.
+         */
+        private void flush() throws InterruptedException {
+            if (!this.batch.isEmpty()) {
+                this.queue.put(this.batch);
+                this.batch = new ArrayList<SimulationCommand>(BATCH_SIZE);
+            }
+        }
+    }
+}
@@ -0,0 +1,988 @@
+package app;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of a {@link Model}.
+ *
+ * <p>
+ * A snapshot starts with a magic number, the format version and the number of
+ * sections. Each section is written as its tag, the length of its payload, the
+ * payload and the CRC32 of the payload, so a damaged file is detected on load
+ * instead of producing a half restored model. Sections are columnar: every
+ * field of a table is written as one run of values, strings are stored once in
+ * a dictionary and referenced by index, and objects refer to each other by id.
+ * Snapshots are written to a temporary file that is then moved over the target,
+ * so a failed save leaves the previous snapshot intact.
+ * </p>
+ */
+public class Snapshot {
+
+    static final int MAGIC = 0x564E5453; // "VNTS"
+    static final int VERSION = 1;
+
+    private static final int META = 1;
+    private static final int STRINGS = 2;
+    private static final int CARRIERS = 3;
+    private static final int ITEMS = 4;
+    private static final int USERS = 5;
+    private static final int ORDERS = 6;
+    private static final int BILLS = 7;
+    private static final int JOURNAL = 8;
+
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private static final byte LISTED = 0;
+    private static final byte SOLD = 1;
+    private static final byte DETACHED = 2;
+
+    private static final byte BAG = 0;
+    private static final byte PREMIUM_BAG = 1;
+    private static final byte TSHIRT = 2;
+    private static final byte SNEAKER = 3;
+    private static final byte PREMIUM_SNEAKER = 4;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Checks if a file starts like a snapshot.
+     *
+     * @param fileName the name of the file
+     * @return true if the file has the snapshot magic number
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IOException           if an I/O error occurs
+     */
+    public static boolean isSnapshot(String fileName) throws FileNotFoundException, IOException {
+        try (FileChannel ch = open(Paths.get(fileName))) {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            while (head.hasRemaining() && ch.read(head) >= 0)
+                ;
+            return !head.hasRemaining() && head.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the model, including the system date and the id
+     * counters.
+     *
+     * @param m        the model to save
+     * @param fileName the name of the file to write
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(Model m, String fileName) throws IOException {
+        List<Section> sections = new Encoder(m).encode();
+
+        Path target = Paths.get(fileName).toAbsolutePath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(MAGIC).putInt(VERSION).putInt(sections.size()).flip();
+            writeFully(ch, header);
+            for (Section s : sections) {
+                s.writeTo(ch);
+            }
+            ch.force(true);
+        }
+
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a snapshot, restoring the system date and the id counters.
+     *
+     * @param fileName the name of the file to read
+     * @return the restored model
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IOException           if the file is not a valid snapshot or an I/O
+     *                               error occurs
+     */
+    public static Model read(String fileName) throws FileNotFoundException, IOException {
+        ByteBuffer file;
+        try (FileChannel ch = open(Paths.get(fileName))) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Snapshot too large: " + fileName);
+            file = ByteBuffer.allocate((int) size);
+            while (file.hasRemaining() && ch.read(file) >= 0)
+                ;
+            file.flip();
+        }
+
+        if (file.remaining() < 12 || file.getInt() != MAGIC)
+            throw new IOException("Not a snapshot: " + fileName);
+        int version = file.getInt();
+        if (version > VERSION)
+            throw new IOException("Unsupported snapshot version " + version + ": " + fileName);
+
+        Map<Integer, ByteBuffer> sections = new HashMap<Integer, ByteBuffer>();
+        int count = file.getInt();
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < count; i++) {
+            if (file.remaining() < 8)
+                throw new IOException("Truncated snapshot: " + fileName);
+            int tag = file.getInt();
+            int length = file.getInt();
+            if (length < 0 || file.remaining() < length + 4)
+                throw new IOException("Truncated snapshot: " + fileName);
+
+            ByteBuffer payload = file.slice();
+            payload.limit(length);
+            file.position(file.position() + length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != file.getInt())
+                throw new IOException("Corrupted section " + tag + " in snapshot: " + fileName);
+            sections.put(tag, payload);
+        }
+
+        return new Decoder(sections).decode();
+    }
+
+    /**
+     * Opens a file for reading, reporting a missing file like the stream based
+     * loaders did.
+     *
+     * @param file the file to open
+     * @return the open channel
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IOException           if an I/O error occurs
+     */
+    private static FileChannel open(Path file) throws FileNotFoundException, IOException {
+        try {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(file.toString());
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to a channel.
+     *
+     * @param ch  the channel
+     * @param buf the buffer to write
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+
+    /**
+     * Encodes a date as its epoch day.
+     *
+     * @param d the date, may be null
+     * @return the epoch day, or NONE for null
+     */
+    private static int day(LocalDate d) {
+        return d == null ? NONE : (int) d.toEpochDay();
+    }
+
+    /**
+     * Decodes a date written by {@link #day(LocalDate)}.
+     *
+     * @param day the epoch day, or NONE
+     * @return the date, or null
+     */
+    private static LocalDate date(int day) {
+        return day == NONE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * A section being written: a growable payload and its tag.
+     */
+    private static class Section {
+        private final int tag;
+        private ByteBuffer data;
+
+        Section(int tag) {
+            this.tag = tag;
+            this.data = ByteBuffer.allocate(1 << 12);
+        }
+
+        private void ensure(int n) {
+            if (this.data.remaining() < n) {
+                int capacity = this.data.capacity();
+                while (capacity - this.data.position() < n)
+                    capacity *= 2;
+                ByteBuffer bigger = ByteBuffer.allocate(capacity);
+                this.data.flip();
+                bigger.put(this.data);
+                this.data = bigger;
+            }
+        }
+
+        void putByte(int v) {
+            ensure(1);
+            this.data.put((byte) v);
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            this.data.putInt(v);
+        }
+
+        void putLong(long v) {
+            ensure(8);
+            this.data.putLong(v);
+        }
+
+        void putDouble(double v) {
+            ensure(8);
+            this.data.putDouble(v);
+        }
+
+        void putBytes(byte[] v) {
+            ensure(v.length);
+            this.data.put(v);
+        }
+
+        void writeTo(FileChannel ch) throws IOException {
+            this.data.flip();
+            CRC32 crc = new CRC32();
+            crc.update(this.data.duplicate());
+
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(this.tag).putInt(this.data.remaining()).flip();
+            writeFully(ch, header);
+            writeFully(ch, this.data);
+            ByteBuffer trailer = ByteBuffer.allocate(4);
+            trailer.putInt((int) crc.getValue()).flip();
+            writeFully(ch, trailer);
+        }
+    }
+
+    /**
+     * Flattens a model into sections.
+     */
+    private static class Encoder {
+        private final Model m;
+
+        private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+
+        private final IdentityHashMap<Carrier, Integer> carrierIds = new IdentityHashMap<Carrier, Integer>();
+        private final List<Carrier> carriers = new ArrayList<Carrier>();
+        private final List<Boolean> registered = new ArrayList<Boolean>();
+
+        private final LinkedHashMap<Integer, Item> items = new LinkedHashMap<Integer, Item>();
+        private final Map<Integer, Byte> itemStates = new HashMap<Integer, Byte>();
+        private final LinkedHashMap<Integer, Order> orders = new LinkedHashMap<Integer, Order>();
+        private final Map<Integer, Boolean> managedOrders = new HashMap<Integer, Boolean>();
+
+        Encoder(Model m) {
+            this.m = m;
+        }
+
+        List<Section> encode() throws IOException {
+            collect();
+
+            List<Section> sections = new ArrayList<Section>();
+            sections.add(meta());
+            Section carriers = carriers();
+            Section items = items();
+            Section users = users();
+            Section orders = orders();
+            Section bills = bills();
+            sections.add(strings());
+            sections.add(carriers);
+            sections.add(items);
+            sections.add(users);
+            sections.add(orders);
+            sections.add(bills);
+            sections.add(journal());
+            return sections;
+        }
+
+        /**
+         * Gathers every object reachable from the managers. Objects that are only
+         * referenced, such as the carrier an item kept after its carrier was
+         * changed, are written as well so the restored graph has the same shape.
+         */
+        private void collect() {
+            for (Carrier c : this.m.getCarrierManager().mapView().values()) {
+                carrierId(c, true);
+            }
+            for (Item i : this.m.getItemManager().listedItemsView()) {
+                addItem(i, LISTED);
+            }
+            for (Item i : this.m.getItemManager().soldItemsView()) {
+                addItem(i, SOLD);
+            }
+            for (Order o : this.m.getOrderManager().getOrders()) {
+                addOrder(o, true);
+            }
+            for (User u : this.m.getUserManager().getUserMapView().values()) {
+                for (Item i : u.getSellingItems())
+                    addItem(i, DETACHED);
+                for (Item i : u.getSystemItems())
+                    addItem(i, DETACHED);
+                for (Bill b : u.getBills().values()) {
+                    if (b.getOrder() != null)
+                        addOrder(b.getOrder(), false);
+                    for (Item i : b.getItems().values())
+                        addItem(i, DETACHED);
+                }
+            }
+            for (Order o : new ArrayList<Order>(this.orders.values())) {
+                for (Item i : o.getCollection())
+                    addItem(i, DETACHED);
+            }
+            for (Item i : this.items.values()) {
+                if (i.getCarrier() != null)
+                    carrierId(i.getCarrier(), false);
+            }
+        }
+
+        private void addItem(Item i, byte state) {
+            if (!this.items.containsKey(i.getID())) {
+                this.items.put(i.getID(), i);
+                this.itemStates.put(i.getID(), state);
+            }
+        }
+
+        private void addOrder(Order o, boolean managed) {
+            if (!this.orders.containsKey(o.getID())) {
+                this.orders.put(o.getID(), o);
+                this.managedOrders.put(o.getID(), managed);
+            }
+        }
+
+        private int carrierId(Carrier c, boolean isRegistered) {
+            if (c == null)
+                return NONE;
+            Integer id = this.carrierIds.get(c);
+            if (id == null) {
+                id = this.carriers.size();
+                this.carrierIds.put(c, id);
+                this.carriers.add(c);
+                this.registered.add(isRegistered);
+            }
+            return id;
+        }
+
+        private int str(String s) {
+            if (s == null)
+                return NONE;
+            Integer id = this.stringIds.get(s);
+            if (id == null) {
+                id = this.strings.size();
+                this.stringIds.put(s, id);
+                this.strings.add(s);
+            }
+            return id;
+        }
+
+        private Section meta() {
+            Section s = new Section(META);
+            User current = this.m.getLoggedUser();
+            s.putInt(day(SystemDate.getDate()));
+            s.putDouble(this.m.getVintageProfit());
+            s.putInt(current == null ? NONE : current.getId());
+            s.putInt(Item.getCurrentID());
+            s.putInt(User.getCurrentID());
+            s.putInt(Order.getCurrentID());
+            s.putInt(Bill.getBillCount());
+            return s;
+        }
+
+        private Section journal() {
+            Section s = new Section(JOURNAL);
+            s.putLong(this.m.getJournalSeq());
+            return s;
+        }
+
+        private Section strings() {
+            Section s = new Section(STRINGS);
+            s.putInt(this.strings.size());
+            for (String str : this.strings) {
+                byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+                s.putInt(bytes.length);
+                s.putBytes(bytes);
+            }
+            return s;
+        }
+
+        private Section carriers() {
+            Section s = new Section(CARRIERS);
+            int n = this.carriers.size();
+            s.putInt(n);
+            for (int i = 0; i < n; i++) {
+                Carrier c = this.carriers.get(i);
+                int flags = (this.registered.get(i) ? 1 : 0) | (c instanceof PremiumCarrier ? 2 : 0);
+                s.putByte(flags);
+            }
+            for (Carrier c : this.carriers)
+                s.putInt(str(c.getName()));
+            for (Carrier c : this.carriers)
+                s.putDouble(c.getTaxSmall());
+            for (Carrier c : this.carriers)
+                s.putDouble(c.getTaxMedium());
+            for (Carrier c : this.carriers)
+                s.putDouble(c.getTaxBig());
+            for (Carrier c : this.carriers)
+                s.putDouble(c.getTotalEarning());
+            return s;
+        }
+
+        private Section items() throws IOException {
+            Section s = new Section(ITEMS);
+            List<Item> all = new ArrayList<Item>(this.items.values());
+            s.putInt(all.size());
+
+            for (Item i : all)
+                s.putInt(i.getID());
+            for (Item i : all)
+                s.putByte(kind(i));
+            for (Item i : all)
+                s.putByte(this.itemStates.get(i.getID()));
+            for (Item i : all)
+                s.putInt(i.getUserId());
+            for (Item i : all)
+                s.putInt(carrierId(i.getCarrier(), false));
+            for (Item i : all)
+                s.putDouble(i.getBasePrice());
+            for (Item i : all)
+                s.putDouble(i.getConditionScore());
+            for (Item i : all)
+                s.putInt(str(i.getDescription()));
+            for (Item i : all)
+                s.putInt(str(i.getBrand()));
+            for (Item i : all)
+                s.putInt(i.owners() == null ? NONE : i.owners().size());
+            for (Item i : all) {
+                IntStack owners = i.owners();
+                if (owners != null) {
+                    for (int k = 0; k < owners.size(); k++)
+                        s.putInt(owners.get(k));
+                }
+            }
+
+            List<Bag> bags = new ArrayList<Bag>();
+            List<Tshirt> tshirts = new ArrayList<Tshirt>();
+            List<Sneaker> sneakers = new ArrayList<Sneaker>();
+            for (Item i : all) {
+                if (i instanceof Bag)
+                    bags.add((Bag) i);
+                else if (i instanceof Tshirt)
+                    tshirts.add((Tshirt) i);
+                else
+                    sneakers.add((Sneaker) i);
+            }
+
+            for (Bag b : bags)
+                s.putDouble(b.getDimension());
+            for (Bag b : bags)
+                s.putInt(str(b.getMaterial()));
+            for (Bag b : bags)
+                s.putInt(day(b.getReleaseDate()));
+
+            for (Tshirt t : tshirts)
+                s.putByte(t.getSize() == null ? -1 : t.getSize().ordinal());
+            for (Tshirt t : tshirts)
+                s.putByte(t.getPattern() == null ? -1 : t.getPattern().ordinal());
+
+            for (Sneaker k : sneakers)
+                s.putDouble(k.getSize());
+            for (Sneaker k : sneakers)
+                s.putByte(k.getType() == null ? -1 : k.getType().ordinal());
+            for (Sneaker k : sneakers)
+                s.putInt(str(k.getColor()));
+            for (Sneaker k : sneakers)
+                s.putInt(day(k.getReleaseDate()));
+            return s;
+        }
+
+        private byte kind(Item i) throws IOException {
+            Class<?> type = i.getClass();
+            if (type == Bag.class)
+                return BAG;
+            if (type == PremiumBag.class)
+                return PREMIUM_BAG;
+            if (type == Tshirt.class)
+                return TSHIRT;
+            if (type == Sneaker.class)
+                return SNEAKER;
+            if (type == PremiumSneaker.class)
+                return PREMIUM_SNEAKER;
+            throw new IOException("Cannot snapshot item of type " + type.getName());
+        }
+
+        private Section users() {
+            Section s = new Section(USERS);
+            List<User> all = new ArrayList<User>(this.m.getUserManager().getUserMapView().values());
+            List<List<Item>> selling = new ArrayList<List<Item>>(all.size());
+            List<List<Item>> system = new ArrayList<List<Item>>(all.size());
+            for (User u : all) {
+                selling.add(u.getSellingItems());
+                system.add(u.getSystemItems());
+            }
+
+            s.putInt(all.size());
+            for (User u : all)
+                s.putInt(u.getId());
+            for (User u : all)
+                s.putInt(str(u.getEmail()));
+            for (User u : all)
+                s.putInt(str(u.getName()));
+            for (User u : all)
+                s.putInt(str(u.getAddress()));
+            for (User u : all)
+                s.putInt(u.getNif());
+            for (User u : all)
+                s.putInt(str(u.getPassword()));
+            for (List<Item> l : selling)
+                s.putInt(l.size());
+            for (List<Item> l : selling)
+                for (Item i : l)
+                    s.putInt(i.getID());
+            for (List<Item> l : system)
+                s.putInt(l.size());
+            for (List<Item> l : system)
+                for (Item i : l)
+                    s.putInt(i.getID());
+            return s;
+        }
+
+        private Section orders() {
+            Section s = new Section(ORDERS);
+            List<Order> all = new ArrayList<Order>(this.orders.values());
+            s.putInt(all.size());
+
+            for (Order o : all)
+                s.putInt(o.getID());
+            for (Order o : all)
+                s.putByte(this.managedOrders.get(o.getID()) ? 1 : 0);
+            for (Order o : all)
+                s.putInt(o.getBuyer() == null ? NONE : o.getBuyer().getId());
+            for (Order o : all)
+                s.putByte(o.getDimension() == null ? -1 : o.getDimension().ordinal());
+            for (Order o : all)
+                s.putByte(o.getState() == null ? -1 : o.getState().ordinal());
+            for (Order o : all)
+                s.putInt(day(o.getDate()));
+            for (Order o : all)
+                s.putDouble(o.getItemPrice());
+            for (Order o : all)
+                s.putDouble(o.getSatisfactionPrice());
+            for (Order o : all)
+                s.putDouble(o.getEndPrice());
+
+            for (Order o : all)
+                s.putInt(o.getCollection().size());
+            for (Order o : all)
+                for (Item i : o.getCollection())
+                    s.putInt(i.getID());
+            for (Order o : all)
+                s.putInt(o.getSellers().size());
+            for (Order o : all)
+                for (User u : o.getSellers())
+                    s.putInt(u.getId());
+            for (Order o : all)
+                s.putInt(o.getCarrierHelper().size());
+            for (Order o : all) {
+                ObjectIntMap<String> helper = o.getCarrierHelper();
+                for (String name : helper) {
+                    s.putInt(str(name));
+                    s.putInt(helper.get(name));
+                }
+            }
+            return s;
+        }
+
+        private Section bills() {
+            Section s = new Section(BILLS);
+            List<Integer> owners = new ArrayList<Integer>();
+            List<Bill> all = new ArrayList<Bill>();
+            for (User u : this.m.getUserManager().getUserMapView().values()) {
+                for (Bill b : u.getBills().values()) {
+                    owners.add(u.getId());
+                    all.add(b);
+                }
+            }
+            List<Map<Integer, Item>> contents = new ArrayList<Map<Integer, Item>>(all.size());
+            for (Bill b : all)
+                contents.add(b.getItems());
+
+            s.putInt(all.size());
+            for (int owner : owners)
+                s.putInt(owner);
+            for (Bill b : all)
+                s.putInt(b.getbillNumber());
+            for (Bill b : all)
+                s.putByte(b.gettype() == null ? -1 : b.gettype().ordinal());
+            for (Bill b : all)
+                s.putDouble(b.gettotalCost());
+            for (Bill b : all)
+                s.putDouble(b.getPortsTax());
+            for (Bill b : all)
+                s.putInt(b.getOrder() == null ? NONE : b.getOrder().getID());
+            for (Map<Integer, Item> items : contents)
+                s.putInt(items.size());
+            for (Map<Integer, Item> items : contents)
+                for (Item i : items.values())
+                    s.putInt(i.getID());
+            return s;
+        }
+    }
+
+    /**
+     * Rebuilds a model from the sections of a snapshot.
+     */
+    private static class Decoder {
+        private final Map<Integer, ByteBuffer> sections;
+
+        private String[] strings;
+        private Carrier[] carriers;
+        private final Map<Integer, Item> items = new HashMap<Integer, Item>();
+        private final Map<Integer, Order> orders = new HashMap<Integer, Order>();
+
+        private final ItemManager itemManager = new ItemManager();
+        private final UserManager userManager = new UserManager();
+        private final OrderManager orderManager = new OrderManager();
+        private final CarrierManager carrierManager = new CarrierManager();
+
+        Decoder(Map<Integer, ByteBuffer> sections) {
+            this.sections = sections;
+        }
+
+        Model decode() throws IOException {
+            try {
+                strings(section(STRINGS));
+                carriers(section(CARRIERS));
+                items(section(ITEMS));
+                users(section(USERS));
+                orders(section(ORDERS));
+                bills(section(BILLS));
+                Model m = meta(section(META));
+                // snapshots written before the journal existed have no such section
+                ByteBuffer journal = this.sections.get(JOURNAL);
+                if (journal != null)
+                    m.setJournalSeq(journal.getLong());
+                return m;
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed snapshot", e);
+            }
+        }
+
+        private ByteBuffer section(int tag) throws IOException {
+            ByteBuffer b = this.sections.get(tag);
+            if (b == null)
+                throw new IOException("Snapshot is missing section " + tag);
+            return b;
+        }
+
+        private String str(int id) {
+            return id == NONE ? null : this.strings[id];
+        }
+
+        private static int[] ints(ByteBuffer b, int n) {
+            int[] v = new int[n];
+            for (int i = 0; i < n; i++)
+                v[i] = b.getInt();
+            return v;
+        }
+
+        private static double[] doubles(ByteBuffer b, int n) {
+            double[] v = new double[n];
+            for (int i = 0; i < n; i++)
+                v[i] = b.getDouble();
+            return v;
+        }
+
+        private static byte[] bytes(ByteBuffer b, int n) {
+            byte[] v = new byte[n];
+            b.get(v);
+            return v;
+        }
+
+        private static int total(int[] counts) {
+            int sum = 0;
+            for (int c : counts)
+                sum += c < 0 ? 0 : c;
+            return sum;
+        }
+
+        private User user(int id) {
+            return id == NONE ? null : this.userManager.getUserMapView().get(id);
+        }
+
+        private void strings(ByteBuffer b) {
+            int n = b.getInt();
+            this.strings = new String[n];
+            for (int i = 0; i < n; i++) {
+                int length = b.getInt();
+                this.strings[i] = new String(b.array(), b.arrayOffset() + b.position(), length,
+                        StandardCharsets.UTF_8);
+                b.position(b.position() + length);
+            }
+        }
+
+        private void carriers(ByteBuffer b) {
+            int n = b.getInt();
+            byte[] flags = bytes(b, n);
+            int[] names = ints(b, n);
+            double[] small = doubles(b, n);
+            double[] medium = doubles(b, n);
+            double[] big = doubles(b, n);
+            double[] earnings = doubles(b, n);
+
+            this.carriers = new Carrier[n];
+            for (int i = 0; i < n; i++) {
+                Carrier c = (flags[i] & 2) != 0
+                        ? new PremiumCarrier(str(names[i]), small[i], medium[i], big[i], 0)
+                        : new Carrier(str(names[i]), small[i], medium[i], big[i], 0);
+                c.setTotalEarning(earnings[i]);
+                if ((flags[i] & 1) != 0) {
+                    try {
+                        this.carrierManager.addCarrier(c);
+                    } catch (CarrierAlreadyExistsException e) {
+                    }
+                    c = this.carrierManager.getCarrier(c.getName());
+                }
+                this.carriers[i] = c;
+            }
+        }
+
+        private void items(ByteBuffer b) {
+            int n = b.getInt();
+            int[] ids = ints(b, n);
+            byte[] kinds = bytes(b, n);
+            byte[] states = bytes(b, n);
+            int[] userIds = ints(b, n);
+            int[] carrierIds = ints(b, n);
+            double[] basePrices = doubles(b, n);
+            double[] scores = doubles(b, n);
+            int[] descriptions = ints(b, n);
+            int[] brands = ints(b, n);
+            int[] ownerCounts = ints(b, n);
+            int[] owners = ints(b, total(ownerCounts));
+
+            int bags = 0;
+            int tshirts = 0;
+            for (byte k : kinds) {
+                if (k == BAG || k == PREMIUM_BAG)
+                    bags++;
+                else if (k == TSHIRT)
+                    tshirts++;
+            }
+            int sneakers = n - bags - tshirts;
+
+            double[] dimensions = doubles(b, bags);
+            int[] materials = ints(b, bags);
+            int[] bagDates = ints(b, bags);
+            byte[] tshirtSizes = bytes(b, tshirts);
+            byte[] patterns = bytes(b, tshirts);
+            double[] sneakerSizes = doubles(b, sneakers);
+            byte[] types = bytes(b, sneakers);
+            int[] colors = ints(b, sneakers);
+            int[] sneakerDates = ints(b, sneakers);
+
+            Tshirt.TshirtSize[] sizeValues = Tshirt.TshirtSize.values();
+            Tshirt.TshirtPattern[] patternValues = Tshirt.TshirtPattern.values();
+            Sneaker.SneakerType[] typeValues = Sneaker.SneakerType.values();
+
+            int owner = 0;
+            int bag = 0;
+            int tshirt = 0;
+            int sneaker = 0;
+            for (int i = 0; i < n; i++) {
+                IntStack previousOwners = null;
+                if (ownerCounts[i] != NONE) {
+                    previousOwners = new IntStack();
+                    for (int k = 0; k < ownerCounts[i]; k++)
+                        previousOwners.push(owners[owner++]);
+                }
+                Carrier carrier = carrierIds[i] == NONE ? null : this.carriers[carrierIds[i]];
+                String description = str(descriptions[i]);
+                String brand = str(brands[i]);
+
+                Item item;
+                switch (kinds[i]) {
+                    case BAG:
+                    case PREMIUM_BAG:
+                        item = kinds[i] == BAG
+                                ? new Bag(description, brand, basePrices[i], carrier, scores[i], null,
+                                        dimensions[bag], str(materials[bag]), date(bagDates[bag]), userIds[i])
+                                : new PremiumBag(description, brand, basePrices[i], carrier, scores[i],
+                                        null, dimensions[bag], str(materials[bag]), date(bagDates[bag]),
+                                        userIds[i]);
+                        bag++;
+                        break;
+                    case TSHIRT:
+                        item = new Tshirt(description, brand, basePrices[i], carrier, scores[i], null,
+                                tshirtSizes[tshirt] < 0 ? null : sizeValues[tshirtSizes[tshirt]],
+                                patterns[tshirt] < 0 ? null : patternValues[patterns[tshirt]], userIds[i]);
+                        tshirt++;
+                        break;
+                    default:
+                        Sneaker.SneakerType type = types[sneaker] < 0 ? null : typeValues[types[sneaker]];
+                        item = kinds[i] == SNEAKER
+                                ? new Sneaker(description, brand, basePrices[i], carrier, scores[i],
+                                        null, sneakerSizes[sneaker], type, str(colors[sneaker]),
+                                        date(sneakerDates[sneaker]), userIds[i])
+                                : new PremiumSneaker(description, brand, basePrices[i], carrier, scores[i],
+                                        null, sneakerSizes[sneaker], type, str(colors[sneaker]),
+                                        date(sneakerDates[sneaker]), userIds[i]);
+                        sneaker++;
+                        break;
+                }
+                item.setOwners(previousOwners);
+                item.setID(ids[i]);
+
+                if (states[i] == LISTED) {
+                    this.itemManager.addListedItem(item);
+                    item = this.itemManager.getItem(ids[i]);
+                } else if (states[i] == SOLD) {
+                    this.itemManager.addSoldItem(item);
+                }
+                this.items.put(ids[i], item);
+            }
+        }
+
+        private void users(ByteBuffer b) {
+            int n = b.getInt();
+            int[] ids = ints(b, n);
+            int[] emails = ints(b, n);
+            int[] names = ints(b, n);
+            int[] addresses = ints(b, n);
+            int[] nifs = ints(b, n);
+            int[] passwords = ints(b, n);
+            int[] sellingCounts = ints(b, n);
+            int[] selling = ints(b, total(sellingCounts));
+            int[] systemCounts = ints(b, n);
+            int[] system = ints(b, total(systemCounts));
+
+            int sell = 0;
+            int sys = 0;
+            for (int i = 0; i < n; i++) {
+                User u = new User(str(emails[i]), str(names[i]), str(addresses[i]), nifs[i], str(passwords[i]));
+                u.setId(ids[i]);
+                this.userManager.addUser(u);
+                u = this.userManager.getUser(ids[i]);
+                for (int k = 0; k < sellingCounts[i]; k++)
+                    u.addItem(this.items.get(selling[sell++]));
+                for (int k = 0; k < systemCounts[i]; k++)
+                    u.addSystemItem(this.items.get(system[sys++]));
+            }
+        }
+
+        private void orders(ByteBuffer b) {
+            int n = b.getInt();
+            int[] ids = ints(b, n);
+            byte[] managed = bytes(b, n);
+            int[] buyers = ints(b, n);
+            byte[] dimensions = bytes(b, n);
+            byte[] states = bytes(b, n);
+            int[] dates = ints(b, n);
+            double[] itemPrices = doubles(b, n);
+            double[] satisfactionPrices = doubles(b, n);
+            double[] endPrices = doubles(b, n);
+            int[] itemCounts = ints(b, n);
+            int[] itemIds = ints(b, total(itemCounts));
+            int[] sellerCounts = ints(b, n);
+            int[] sellerIds = ints(b, total(sellerCounts));
+            int[] helperCounts = ints(b, n);
+
+            Order.TypeOfSize[] sizeValues = Order.TypeOfSize.values();
+            Order.OrderState[] stateValues = Order.OrderState.values();
+
+            int item = 0;
+            int seller = 0;
+            for (int i = 0; i < n; i++) {
+                LinkedList<Item> collection = new LinkedList<Item>();
+                for (int k = 0; k < itemCounts[i]; k++)
+                    collection.add(this.items.get(itemIds[item++]));
+                LinkedList<User> sellers = new LinkedList<User>();
+                for (int k = 0; k < sellerCounts[i]; k++)
+                    sellers.add(user(sellerIds[seller++]));
+                ObjectIntMap<String> carrierHelper = new ObjectIntMap<String>();
+                for (int k = 0; k < helperCounts[i]; k++) {
+                    String name = str(b.getInt());
+                    carrierHelper.put(name, b.getInt());
+                }
+
+                Order o = new Order(collection, carrierHelper,
+                        dimensions[i] < 0 ? null : sizeValues[dimensions[i]],
+                        satisfactionPrices[i], itemPrices[i],
+                        states[i] < 0 ? null : stateValues[states[i]],
+                        date(dates[i]), endPrices[i], user(buyers[i]), sellers);
+                o.setID(ids[i]);
+
+                if (managed[i] != 0) {
+                    this.orderManager.addOrder(o);
+                    o = this.orderManager.getOrder(ids[i]);
+                }
+                this.orders.put(ids[i], o);
+            }
+        }
+
+        private void bills(ByteBuffer b) {
+            int n = b.getInt();
+            int[] owners = ints(b, n);
+            int[] numbers = ints(b, n);
+            byte[] types = bytes(b, n);
+            double[] totals = doubles(b, n);
+            double[] portsTaxes = doubles(b, n);
+            int[] orderIds = ints(b, n);
+            int[] itemCounts = ints(b, n);
+            int[] itemIds = ints(b, total(itemCounts));
+
+            Bill.TypeBill[] typeValues = Bill.TypeBill.values();
+
+            int item = 0;
+            for (int i = 0; i < n; i++) {
+                Map<Integer, Item> content = new LinkedHashMap<Integer, Item>();
+                for (int k = 0; k < itemCounts[i]; k++) {
+                    Item it = this.items.get(itemIds[item++]);
+                    content.put(it.getID(), it);
+                }
+                Bill bill = new Bill(types[i] < 0 ? null : typeValues[types[i]], content, totals[i],
+                        orderIds[i] == NONE ? null : this.orders.get(orderIds[i]));
+                bill.setPortsTax(portsTaxes[i]);
+                bill.setbillNumber(numbers[i]);
+                this.userManager.addBill(this.userManager.getUser(owners[i]), bill);
+            }
+        }
+
+        private Model meta(ByteBuffer b) {
+            LocalDate date = date(b.getInt());
+            double vintageProfit = b.getDouble();
+            User current = user(b.getInt());
+            Item.setCurrentID(b.getInt());
+            User.setCurrentID(b.getInt());
+            Order.setCurrentID(b.getInt());
+            Bill.setBillCount(b.getInt());
+
+            SystemDate.setDate(date);
+            return new Model(this.itemManager, this.userManager, this.orderManager, this.carrierManager,
+                    vintageProfit, current);
+        }
+    }
+}
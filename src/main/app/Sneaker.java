@@ -12,6 +12,8 @@ import java.util.Stack;
  * variables.
  */
 public class Sneaker extends Item {
+    private static final long serialVersionUID = 5715004305605369540L;
+
     private double size;
     private SneakerType type;
     private String color;
@@ -110,18 +112,28 @@ public class Sneaker extends Item {
         return this.releaseDate;
     }
 
+    /**
+     * The price of a sneaker depends on its number of previous owners.
+     *
+     * @return the price context
+     */
+    @Override
+    int priceContext() {
+        return this.owners() == null ? 0 : this.owners().size();
+    }
+
     /**
      * Returns the price of the sneaker based on its base price,
      * previous owners, and condition score.
      * 
      * @return The price of the sneaker.
      */
-    public double getPrice() {
+    double computePrice() {
         if (getConditionScore() == 1 && getSize() < 45) {
             return this.getBasePrice();
         }
         return (this.getBasePrice() * this.getConditionScore()
-                - (this.getBasePrice() * this.getPriceCorrection() / (this.getPreviousOwners().size() + 5)));
+                - (this.getBasePrice() * this.getPriceCorrection() / (this.getNumberOfPreviousOwners() + 5)));
     }
 
     /**
@@ -131,6 +143,7 @@ public class Sneaker extends Item {
      */
     public void setSize(double size) {
         this.size = size;
+        changed();
     }
 
     /**
@@ -140,6 +153,7 @@ public class Sneaker extends Item {
      */
     public void setType(SneakerType type) {
         this.type = type;
+        changed();
     }
 
     /**
@@ -149,6 +163,7 @@ public class Sneaker extends Item {
      */
     public void setColor(String color) {
         this.color = color;
+        changed();
     }
 
     /**
@@ -158,6 +173,7 @@ public class Sneaker extends Item {
      */
     public void setReleaseDate(LocalDate releaseDate) {
         this.releaseDate = releaseDate;
+        changed();
     }
 
     /**
@@ -174,7 +190,7 @@ public class Sneaker extends Item {
                 ", priceCorrection=" + getPriceCorrection() +
                 ", carrier='" + getCarrier().getName() + '\'' +
                 ", conditionScore=" + getConditionScore() +
-                ", previousOwners=" + getPreviousOwners() +
+                ", previousOwners=" + owners() +
                 ", size=" + this.size +
                 ", type=" + this.type +
                 ", color='" + this.color + '\'' +
@@ -188,7 +204,7 @@ public class Sneaker extends Item {
      *
      * @return a string representation of the Sneaker
      */
-    public String showItem() {
+    String renderItem() {
 
         StringBuilder sb = new StringBuilder();
         int boxWidth = 50;
@@ -228,7 +244,7 @@ public class Sneaker extends Item {
                 && this.getBasePrice() == s.getBasePrice()
                 && this.getPriceCorrection() == s.getPriceCorrection() && this.getCarrier().equals(s.getCarrier())
                 && this.getConditionScore() == s.getConditionScore()
-                && this.getPreviousOwners() == s.getPreviousOwners()
+                && this.owners() == s.owners()
                 && this.size == s.getSize() && this.type.equals(s.getType()) && this.color.equals(s.getColor())
                 && this.releaseDate == s.getReleaseDate();
     }
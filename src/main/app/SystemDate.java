@@ -3,15 +3,30 @@ package app;
 import java.io.*;
 import java.time.LocalDate;
 
+/**
+ * The date of the current {@link ModelContext}, that is, of the model the
+ * calling thread works on.
+ */
 public class SystemDate implements Serializable {
-    private static LocalDate date;
+
+    private static final long serialVersionUID = 19333025105432346L;
 
     public static LocalDate getDate() {
-        return date;
+        return ModelContext.current().getDate();
     }
 
     public static void setDate(LocalDate newDate) {
-        date = newDate;
+        ModelContext.current().setDate(newDate);
+    }
+
+    /**
+     * Returns a number that changes every time the date does, so values derived
+     * from the date can tell whether they are still current.
+     *
+     * @return the number of date changes so far
+     */
+    static int getEpoch() {
+        return ModelContext.current().getEpoch();
     }
 
     /**
@@ -25,7 +40,7 @@ public class SystemDate implements Serializable {
     public static void save(String fileName) throws FileNotFoundException, IOException {
         try (FileOutputStream fs = new FileOutputStream(fileName);
                 ObjectOutputStream os = new ObjectOutputStream(fs)) {
-            os.writeObject(date);
+            os.writeObject(getDate());
             os.flush();
         } catch (IOException e) {
             e.printStackTrace();
@@ -45,7 +60,7 @@ public class SystemDate implements Serializable {
     public static void load(String fileName) throws FileNotFoundException, IOException, ClassNotFoundException {
         try (FileInputStream fs = new FileInputStream(fileName);
                 ObjectInputStream os = new ObjectInputStream(fs)) {
-            date = (LocalDate) os.readObject();
+            setDate((LocalDate) os.readObject());
         } catch (IOException | ClassNotFoundException e) {
             e.printStackTrace();
         }
@@ -15,6 +15,8 @@ import java.util.Stack;
  */
 
 public class Tshirt extends Item {
+    private static final long serialVersionUID = -3421245757125757234L;
+
     private TshirtSize size;
     private TshirtPattern pattern;
 
@@ -99,7 +101,7 @@ public class Tshirt extends Item {
      * 
      * @return The price of the tshirt.
      */
-    public double getPrice() {
+    double computePrice() {
         if (this.pattern == TshirtPattern.Smooth)
             return this.getBasePrice();
         else {
@@ -118,6 +120,7 @@ public class Tshirt extends Item {
      */
     public void setSize(TshirtSize size) {
         this.size = size;
+        changed();
     }
 
     /**
@@ -127,6 +130,7 @@ public class Tshirt extends Item {
      */
     public void setPattern(TshirtPattern pattern) {
         this.pattern = pattern;
+        changed();
     }
 
     /**
@@ -143,7 +147,7 @@ public class Tshirt extends Item {
                 ", priceCorrection=" + getPriceCorrection() +
                 ", carrier='" + getCarrier().getName() + '\'' +
                 ", conditionScore=" + getConditionScore() +
-                ", previousOwners=" + getPreviousOwners() +
+                ", previousOwners=" + owners() +
                 ", size=" + this.size +
                 ", pattern=" + this.pattern + '\'' +
                 ", Price=" + getPrice() +
@@ -155,7 +159,7 @@ public class Tshirt extends Item {
      *
      * @return a string representation of the Tshirt
      */
-    public String showItem() {
+    String renderItem() {
 
         StringBuilder sb = new StringBuilder();
         int boxWidth = 50;
@@ -195,7 +199,7 @@ public class Tshirt extends Item {
                 && this.getBasePrice() == s.getBasePrice()
                 && this.getPriceCorrection() == s.getPriceCorrection() && this.getCarrier().equals(s.getCarrier())
                 && this.getConditionScore() == s.getConditionScore()
-                && this.getPreviousOwners() == s.getPreviousOwners()
+                && this.owners() == s.owners()
                 && this.size == s.getSize() && this.pattern == s.getPattern();
     }
 
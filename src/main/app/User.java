@@ -1,6 +1,7 @@
 package app;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -16,10 +17,14 @@ import java.time.LocalDate;
  * information
  * such as the user's ID, email, name, address, NIF, password, as well as lists
  * of orders
- * and items associated with the user.
+ * and items associated with the user. Items are kept by id, in the order they
+ * were added, so ownership checks and moves do not depend on how many items
+ * the user holds.
  */
 public class User implements Serializable, Comparable<User> {
 
+    private static final long serialVersionUID = 2018342111218978988L;
+
     private int id;
     private String email;
     private String name;
@@ -28,25 +33,31 @@ public class User implements Serializable, Comparable<User> {
     private String password;
 
     private Map<Integer, Bill> bills;
-    private List<Item> systemItems;
-    private List<Item> sellingItems;
-
-    private static int currentID = 1;
+    private double soldValue;
+    private double spentValue;
+    private int soldBills;
+    private int boughtBills;
+    private DailyTotals soldPerDay;
+    private DailyTotals boughtPerDay;
+    private IntLinkedMap<Item> systemItems;
+    private IntLinkedMap<Item> sellingItems;
 
     /**
      * Constructs a new user with default values for all fields.
      */
     public User() {
 
-        this.id = currentID++;
+        this.id = ModelContext.current().userIds().next();
         this.email = "n/d";
         this.name = "n/d";
         this.address = "n/d";
         this.nif = 0;
         this.password = "n/d";
         this.bills = new HashMap<Integer, Bill>();
-        this.systemItems = new ArrayList<Item>();
-        this.sellingItems = new ArrayList<Item>();
+        this.soldPerDay = new DailyTotals();
+        this.boughtPerDay = new DailyTotals();
+        this.systemItems = new IntLinkedMap<Item>();
+        this.sellingItems = new IntLinkedMap<Item>();
 
     }
 
@@ -66,16 +77,20 @@ public class User implements Serializable, Comparable<User> {
     public User(String email, String name, String address, int nif, HashMap<Integer, Bill> bills, String password,
             ArrayList<Item> systemItems, ArrayList<Item> sellingItems) {
 
-        this.id = currentID++;
+        this.id = ModelContext.current().userIds().next();
         this.email = email;
         this.name = name;
-        this.bills = bills;
         this.address = address;
         this.nif = nif;
         this.password = password;
-        this.bills = bills;
-        this.systemItems = new ArrayList<>(systemItems);
-        this.sellingItems = new ArrayList<>(sellingItems);
+        this.bills = new HashMap<>();
+        this.soldPerDay = new DailyTotals();
+        this.boughtPerDay = new DailyTotals();
+        for (Bill b : bills.values()) {
+            addBills(b);
+        }
+        setEmittedOrder(systemItems);
+        setSellingItems(sellingItems);
 
     }
 
@@ -90,16 +105,17 @@ public class User implements Serializable, Comparable<User> {
      */
     public User(String email, String name, String address, int nif, String password) {
 
-        this.id = currentID++;
+        this.id = ModelContext.current().userIds().next();
         this.email = email;
         this.name = name;
         this.address = address;
         this.nif = nif;
         this.password = password;
         this.bills = new HashMap<>();
-        this.systemItems = new ArrayList<>();
-        this.bills = new HashMap<>();
-        this.sellingItems = new ArrayList<>();
+        this.soldPerDay = new DailyTotals();
+        this.boughtPerDay = new DailyTotals();
+        this.systemItems = new IntLinkedMap<Item>();
+        this.sellingItems = new IntLinkedMap<Item>();
 
     }
 
@@ -117,8 +133,14 @@ public class User implements Serializable, Comparable<User> {
         this.nif = oneUser.getNif();
         this.password = oneUser.getPassword();
         this.bills = oneUser.getBillsCopy();
-        this.systemItems = oneUser.getSystemItems();
-        this.sellingItems = oneUser.getSellingItems();
+        this.soldValue = oneUser.soldValue;
+        this.spentValue = oneUser.spentValue;
+        this.soldBills = oneUser.soldBills;
+        this.boughtBills = oneUser.boughtBills;
+        this.soldPerDay = new DailyTotals(oneUser.soldPerDay);
+        this.boughtPerDay = new DailyTotals(oneUser.boughtPerDay);
+        this.systemItems = new IntLinkedMap<Item>(oneUser.systemItems);
+        this.sellingItems = new IntLinkedMap<Item>(oneUser.sellingItems);
 
     }
 
@@ -131,6 +153,33 @@ public class User implements Serializable, Comparable<User> {
         return id;
     }
 
+    /**
+     * Sets the ID of this user. Only used when restoring a saved state.
+     *
+     * @param id the ID of this user
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the ID the next user will get.
+     *
+     * @return the ID the next user will get
+     */
+    static int getCurrentID() {
+        return ModelContext.current().userIds().peek();
+    }
+
+    /**
+     * Sets the ID the next user will get. Only used when restoring a saved state.
+     *
+     * @param next the ID the next user will get
+     */
+    static void setCurrentID(int next) {
+        ModelContext.current().userIds().reset(next);
+    }
+
     /**
      * Gets the email address of this user.
      *
@@ -184,12 +233,14 @@ public class User implements Serializable, Comparable<User> {
     }
 
     /**
-     * Returns the user's bills
+     * Returns a read-only view of the user's bills. Bills are added and removed
+     * through {@link #addBills(Bill)} and {@link #removeBill(int)}, which keep the
+     * revenue totals up to date.
      *
      * @return the user's bills
      */
     public Map<Integer, Bill> getBills() {
-        return this.bills;
+        return Collections.unmodifiableMap(this.bills);
     }
 
     /**
@@ -217,10 +268,66 @@ public class User implements Serializable, Comparable<User> {
 
     public void addBills(Bill bill) {
 
-        this.bills.put(bill.getbillNumber(), bill.clone());
+        adoptBill(bill.clone());
 
     }
 
+    /**
+     * Adds a bill to the User without copying it, for bills that were just
+     * issued and that nothing else holds.
+     *
+     * @param bill the bill to add
+     */
+    void adoptBill(Bill bill) {
+        Bill previous = this.bills.put(bill.getbillNumber(), bill);
+        if (previous != null)
+            account(previous, -1);
+        account(bill, 1);
+    }
+
+    /**
+     * Removes a bill from the User, reverting its contribution to the revenue
+     * totals.
+     *
+     * @param billNumber the number of the bill to remove
+     * @return the removed bill, or null if the user has no such bill
+     */
+    public Bill removeBill(int billNumber) {
+        Bill b = this.bills.remove(billNumber);
+        if (b != null)
+            account(b, -1);
+        return b;
+    }
+
+    /**
+     * Adds or subtracts a bill from the running totals.
+     *
+     * @param b    the bill
+     * @param sign 1 to add the bill, -1 to subtract it
+     */
+    private void account(Bill b, int sign) {
+        LocalDate date = b.getOrderDate();
+        if (b.isSold()) {
+            this.soldBills += sign;
+            this.soldValue = this.soldBills == 0 ? 0 : this.soldValue + sign * b.getAmount();
+            if (date != null) {
+                if (sign > 0)
+                    this.soldPerDay.add(date, b.gettotalCost());
+                else
+                    this.soldPerDay.remove(date, b.gettotalCost());
+            }
+        } else {
+            this.boughtBills += sign;
+            this.spentValue = this.boughtBills == 0 ? 0 : this.spentValue + sign * b.getAmount();
+            if (date != null) {
+                if (sign > 0)
+                    this.boughtPerDay.add(date, b.getAmount());
+                else
+                    this.boughtPerDay.remove(date, b.getAmount());
+            }
+        }
+    }
+
     /**
      * Returns the user's password.
      *
@@ -236,7 +343,7 @@ public class User implements Serializable, Comparable<User> {
      * @return the user's system items
      */
     public List<Item> getSystemItems() {
-        return new ArrayList<>(this.systemItems);
+        return this.systemItems.values();
     }
 
     /**
@@ -246,7 +353,7 @@ public class User implements Serializable, Comparable<User> {
      */
     public List<Item> getSellingItems() {
 
-        return new ArrayList<>(this.sellingItems);
+        return this.sellingItems.values();
     }
 
     /**
@@ -287,13 +394,7 @@ public class User implements Serializable, Comparable<User> {
      */
 
     public double soldItemsValueFrame(LocalDate date1, LocalDate date2) {
-        double sum = 0;
-        for (Integer i : bills.keySet()) {
-            Bill b = this.bills.get(i);
-            if (b.isSold() && b.getOrder().getDate().isAfter(date1) && b.getOrder().getDate().isBefore(date2))
-                sum += b.gettotalCost();
-        }
-        return sum;
+        return this.soldPerDay.sumBetween(date1, date2);
     }
 
     /**
@@ -302,13 +403,7 @@ public class User implements Serializable, Comparable<User> {
      * @return the amount spent on a time frame
      */
     public double boughtValueFrame(LocalDate date1, LocalDate date2) {
-        double sum = 0;
-        for (Integer i : bills.keySet()) {
-            Bill b = this.bills.get(i);
-            if (!b.isSold() && b.getOrder().getDate().isAfter(date1) && b.getOrder().getDate().isBefore(date2))
-                sum += b.getAmount();
-        }
-        return sum;
+        return this.boughtPerDay.sumBetween(date1, date2);
     }
 
     /**
@@ -328,8 +423,8 @@ public class User implements Serializable, Comparable<User> {
         Item i = this.searchItem(item_id);
         if (i == null)
             throw new NullPointerException();
-        this.systemItems.remove(i);
-        this.sellingItems.add(i);
+        this.systemItems.remove(item_id);
+        this.sellingItems.put(item_id, i);
 
     }
 
@@ -338,7 +433,9 @@ public class User implements Serializable, Comparable<User> {
      *                     Set the user's emitted orders.
      */
     public void setEmittedOrder(List<Item> systemItems) {
-        this.systemItems = new ArrayList<>(systemItems);
+        this.systemItems = new IntLinkedMap<Item>();
+        for (Item i : systemItems)
+            this.systemItems.put(i.getID(), i);
     }
 
     /**
@@ -346,7 +443,9 @@ public class User implements Serializable, Comparable<User> {
      *                     Set the user's selling items.
      */
     public void setSellingItems(List<Item> sellingItems) {
-        this.sellingItems = new ArrayList<>(sellingItems);
+        this.sellingItems = new IntLinkedMap<Item>();
+        for (Item i : sellingItems)
+            this.sellingItems.put(i.getID(), i);
     }
 
     /**
@@ -389,7 +488,7 @@ public class User implements Serializable, Comparable<User> {
 
         return (u.getId() == this.getId()) && u.getEmail().equals(this.getEmail()) && u.getName().equals(this.getName())
                 && u.getAddress().equals(this.getAddress()) && u.getNif() == this.getNif()
-                && u.getBills() == this.getBills()
+                && u.bills == this.bills
                 && u.getPassword().equals(this.getPassword())
                 && u.getSystemItems().equals(this.getSystemItems())
                 && u.getSellingItems().equals(this.getSellingItems());
@@ -410,8 +509,8 @@ public class User implements Serializable, Comparable<User> {
                 ", address='" + address + '\'' +
                 ", nif=" + nif +
                 ", password='" + password + '\'' +
-                ", systemItems=" + systemItems +
-                ", sellingItems=" + sellingItems +
+                ", systemItems=" + getSystemItems() +
+                ", sellingItems=" + getSellingItems() +
                 ", Bills=" + bills +
                 ", Total Earned=" + soldItemsValue() +
                 '}';
@@ -422,7 +521,7 @@ public class User implements Serializable, Comparable<User> {
      *                Add a listed item to the user
      */
     public void addItem(Item oneItem) {
-        this.sellingItems.add(oneItem);
+        this.sellingItems.put(oneItem.getID(), oneItem);
     }
 
     /**
@@ -430,7 +529,7 @@ public class User implements Serializable, Comparable<User> {
      *                Add a system item to the user
      */
     public void addSystemItem(Item oneItem) {
-        this.systemItems.add(oneItem);
+        this.systemItems.put(oneItem.getID(), oneItem);
     }
 
     /**
@@ -438,7 +537,7 @@ public class User implements Serializable, Comparable<User> {
      *                Removes an item from the user
      */
     public void removeItem(Item oneItem) {
-        this.sellingItems.remove(oneItem);
+        this.sellingItems.remove(oneItem.getID());
         oneItem.addPreviousOwner(this.id);
     }
 
@@ -448,7 +547,7 @@ public class User implements Serializable, Comparable<User> {
      */
 
     public void removeSystemItem(Item oneItem) {
-        this.systemItems.remove(oneItem);
+        this.systemItems.remove(oneItem.getID());
     }
 
     /**
@@ -458,7 +557,7 @@ public class User implements Serializable, Comparable<User> {
      * @return returns true if it has the item
      */
     public boolean containsItem(Item oneItem) {
-        return this.sellingItems.contains(oneItem);
+        return this.sellingItems.containsKey(oneItem.getID());
     }
 
     /**
@@ -468,14 +567,7 @@ public class User implements Serializable, Comparable<User> {
      * @return returns true if it has the item
      */
     public boolean hasItem(int item_id) {
-
-        for (Item oneItem : this.systemItems) {
-            if (oneItem.getID() == item_id) {
-                return true;
-            }
-        }
-        return false;
-
+        return this.systemItems.containsKey(item_id);
     }
 
     /**
@@ -485,45 +577,28 @@ public class User implements Serializable, Comparable<User> {
      * @return returns the Item or Null
      */
     public Item searchItem(int item_id) throws NullPointerException {
-        for (Item i : this.sellingItems) {
-            if (i.getID() == item_id)
-                return i;
-        }
-        for (Item i : this.systemItems) {
-            if (i.getID() == item_id)
-                return i;
-        }
-        return null;
+        Item i = this.sellingItems.get(item_id);
+        if (i == null)
+            i = this.systemItems.get(item_id);
+        return i;
     }
 
     /**
-     * Calculates the amount earned
+     * Returns the amount earned, kept as a running total of the sold bills
      * 
      * @return returns the amount earned
      */
     public double soldItemsValue() {
-        double ret = 0;
-        for (int b_key : bills.keySet()) {
-            Bill b = bills.get(b_key);
-            if (b.isSold())
-                ret += b.getAmount();
-        }
-        return ret;
+        return this.soldValue;
     }
 
     /**
-     * Calculates the amount spend
+     * Returns the amount spend, kept as a running total of the bought bills
      * 
      * @return returns the amount spend
      */
     public double spendValue() {
-        double ret = 0;
-        for (int b_key : bills.keySet()) {
-            Bill b = bills.get(b_key);
-            if (!b.isSold())
-                ret += b.getAmount();
-        }
-        return ret;
+        return this.spentValue;
     }
 
     /**
@@ -535,12 +610,14 @@ public class User implements Serializable, Comparable<User> {
      */
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject(); // default serialization
-        out.writeInt(currentID); // save static variable
+        out.writeInt(getCurrentID()); // save the counter of the context
     }
 
     /**
      * Custom deserialization method to read the object's state from the
-     * ObjectInputStream.
+     * ObjectInputStream. Files of versions before {@link IntLinkedMap} hold the
+     * items in lists, which are converted; the running totals those versions
+     * did not keep are left to {@link #restoreTotals()}.
      *
      * @param in ObjectInputStream to read the object's state from
      * @throws IOException            If an I/O error occurs while reading the
@@ -548,9 +625,57 @@ public class User implements Serializable, Comparable<User> {
      * @throws ClassNotFoundException If the class of a serialized object could not
      *                                be found
      */
+    @SuppressWarnings("unchecked")
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject(); // default deserialization
-        currentID = in.readInt(); // load static variable
+        ObjectInputStream.GetField fields = in.readFields();
+        this.id = fields.get("id", 0);
+        this.email = (String) fields.get("email", null);
+        this.name = (String) fields.get("name", null);
+        this.address = (String) fields.get("address", null);
+        this.nif = fields.get("nif", 0);
+        this.password = (String) fields.get("password", null);
+        this.bills = (Map<Integer, Bill>) fields.get("bills", null);
+        this.soldValue = fields.get("soldValue", 0.0);
+        this.spentValue = fields.get("spentValue", 0.0);
+        this.soldBills = fields.get("soldBills", 0);
+        this.boughtBills = fields.get("boughtBills", 0);
+        this.soldPerDay = (DailyTotals) fields.get("soldPerDay", null);
+        this.boughtPerDay = (DailyTotals) fields.get("boughtPerDay", null);
+        Object system = fields.get("systemItems", null);
+        Object selling = fields.get("sellingItems", null);
+        if (system instanceof List)
+            setEmittedOrder((List<Item>) system);
+        else
+            this.systemItems = (IntLinkedMap<Item>) system;
+        if (selling instanceof List)
+            setSellingItems((List<Item>) selling);
+        else
+            this.sellingItems = (IntLinkedMap<Item>) selling;
+        setCurrentID(in.readInt()); // load the counter of the context
+    }
+
+    /**
+     * Works out the running totals from the bills, if the user was read from a
+     * file of a version that did not keep them. The bills must know the dates
+     * of their orders by then.
+     */
+    void restoreTotals() {
+        if (this.soldPerDay != null)
+            return;
+        this.soldPerDay = new DailyTotals();
+        this.boughtPerDay = new DailyTotals();
+        for (Bill b : this.bills.values())
+            account(b, 1);
+    }
+
+    /**
+     * Checks if the user is selling an item.
+     *
+     * @param itemId the ID of the item
+     * @return true if the item is among the items the user is selling
+     */
+    public boolean isSelling(int itemId) {
+        return this.sellingItems.containsKey(itemId);
     }
 
     /**
@@ -562,16 +687,9 @@ public class User implements Serializable, Comparable<User> {
      */
     public boolean oneOfHis(List<Integer> items_keys) {
 
-        for (Item i : this.sellingItems) {
-
-            int id = i.getID();
-
-            for (int buyId : items_keys) {
-
-                if (id == buyId)
-                    return true;
-            }
-
+        for (int buyId : items_keys) {
+            if (this.sellingItems.containsKey(buyId))
+                return true;
         }
 
         return false;
@@ -1,22 +1,35 @@
 package app;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 /**
  * Represents a UserManager that manages a collection of users.
+ * Users are also indexed by their (case-normalized) email, so logins and
+ * registrations do not depend on the number of users, and bills are indexed by
+ * the order they belong to, so returning an order only touches its own bills.
  */
 public class UserManager implements Serializable {
+    private static final long serialVersionUID = -1269318361122452157L;
+
     private Map<Integer, User> userMap;
+    private Map<String, Integer> emailIndex;
+    private Map<Integer, Map<Integer, Integer>> billIndex;
 
     /**
      * Constructs a new UserManager object.
      */
     public UserManager() {
         this.userMap = new HashMap<Integer, User>();
+        this.emailIndex = new HashMap<String, Integer>();
+        this.billIndex = new HashMap<Integer, Map<Integer, Integer>>();
     }
 
     /**
@@ -44,7 +57,10 @@ public class UserManager implements Serializable {
         if (oneUser == null) {
             new NullPointerException();
         }
-        this.userMap.put(oneUser.getId(), oneUser.clone());
+        User previous = this.userMap.put(oneUser.getId(), oneUser.clone());
+        if (previous != null)
+            this.emailIndex.remove(normalizeEmail(previous.getEmail()), previous.getId());
+        this.emailIndex.put(normalizeEmail(oneUser.getEmail()), oneUser.getId());
     }
 
     /**
@@ -54,7 +70,24 @@ public class UserManager implements Serializable {
      * @return the user that was removed
      */
     public User removeUser(int id) {
-        return this.userMap.remove(id);
+        User u = this.userMap.remove(id);
+        if (u != null)
+            this.emailIndex.remove(normalizeEmail(u.getEmail()), id);
+        return u;
+    }
+
+    /**
+     * Changes the email of a user, keeping the email index up to date.
+     *
+     * @param id    the ID of the user
+     * @param email the new email of the user
+     * @throws NullPointerException if the user with the given ID does not exist
+     */
+    public void setEmail(int id, String email) throws NullPointerException {
+        User u = getUser(id);
+        this.emailIndex.remove(normalizeEmail(u.getEmail()), id);
+        u.setEmail(email);
+        this.emailIndex.put(normalizeEmail(email), id);
     }
 
     /**
@@ -97,22 +130,90 @@ public class UserManager implements Serializable {
         return userMapCopy;
     }
 
+    /**
+     * Returns a read-only view of the user map. Unlike
+     * {@link #getUserMapCopy()} nothing is cloned, so the view is meant for
+     * readers, such as the queriers, that only inspect the users. Only the map
+     * is read-only: the users are the live ones, which must not be changed
+     * through the view (a new email would miss the email index, for one), and
+     * which must not be read while another thread changes the model.
+     *
+     * @return an unmodifiable view of the user map
+     */
+    Map<Integer, User> getUserMapView() {
+        return Collections.unmodifiableMap(this.userMap);
+    }
+
+    /**
+     * Adds a bill to a user, recording it under the order it belongs to.
+     *
+     * @param u    the user receiving the bill
+     * @param bill the bill to add
+     */
+    public void addBill(User u, Bill bill) {
+        u.addBills(bill);
+        if (bill.getOrderId() != Bill.NO_ORDER) {
+            getBillIndex().computeIfAbsent(bill.getOrderId(), k -> new HashMap<Integer, Integer>())
+                    .put(bill.getbillNumber(), u.getId());
+        }
+    }
+
+    /**
+     * Hands the bills issued for a dispatched order to their users, recording
+     * them under the order. The bills are kept as they are, not copied, so the
+     * caller must not change them afterwards.
+     *
+     * @param order  the order the bills belong to
+     * @param owners the users receiving the bills, one per bill
+     * @param bills  the bills
+     */
+    void addIssuedBills(Order order, List<User> owners, List<Bill> bills) {
+        Map<Integer, Integer> index = getBillIndex().computeIfAbsent(order.getID(),
+                k -> new HashMap<Integer, Integer>());
+        for (int i = 0; i < bills.size(); i++) {
+            User u = owners.get(i);
+            Bill bill = bills.get(i);
+            u.adoptBill(bill);
+            index.put(bill.getbillNumber(), u.getId());
+        }
+    }
+
     /**
      * Deletes bills associated with a specific order.
      *
      * @param order the order for which bills should be deleted
      */
     public void deleteBills(Order order) {
-        Map<Integer, User> it = this.getUserMap();
-
-        for (int key : it.keySet()) {
-            User u = it.get(key);
-            for (int keyBill : u.getBills().keySet()) {
-                Bill b = u.getBills().get(keyBill);
-                if (b.getOrder().getID() == order.getID())
-                    u.getBills().remove(keyBill);
+        Map<Integer, Integer> bills = getBillIndex().remove(order.getID());
+        if (bills == null)
+            return;
+
+        for (Map.Entry<Integer, Integer> e : bills.entrySet()) {
+            User u = this.userMap.get(e.getValue());
+            if (u != null)
+                u.removeBill(e.getKey());
+        }
+    }
+
+    /**
+     * Returns the index of bill numbers, and the users holding them, by order id.
+     * Models saved before the index existed are indexed on first use.
+     *
+     * @return the bill index
+     */
+    private Map<Integer, Map<Integer, Integer>> getBillIndex() {
+        if (this.billIndex == null) {
+            this.billIndex = new HashMap<Integer, Map<Integer, Integer>>();
+            for (User u : this.getUserMap().values()) {
+                for (Bill b : u.getBills().values()) {
+                    if (b.getOrderId() != Bill.NO_ORDER) {
+                        this.billIndex.computeIfAbsent(b.getOrderId(), k -> new HashMap<Integer, Integer>())
+                                .put(b.getbillNumber(), u.getId());
+                    }
+                }
             }
         }
+        return this.billIndex;
     }
 
     /**
@@ -122,13 +223,45 @@ public class UserManager implements Serializable {
      * @return the user with the specified email, or null if not found
      */
     public User findUserByEmail(String email) {
-        for (Integer user_id : userMap.keySet()) {
+        if (email == null)
+            return null;
 
-            User temp = this.userMap.get(user_id);
-            if (temp.getEmail().equals(email))
-                return temp;
-        }
-        return null;
+        String key = normalizeEmail(email);
+        Integer id = this.emailIndex.get(key);
+        if (id == null)
+            return null;
+
+        User temp = this.userMap.get(id);
+        if (temp == null || !normalizeEmail(temp.getEmail()).equals(key))
+            return null;
+        return temp;
     }
 
-}
\ No newline at end of file
+    /**
+     * Normalizes an email so that lookups ignore letter case and surrounding
+     * whitespace.
+     *
+     * @param email the email to normalize
+     * @return the normalized email
+     */
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Reads the manager. Files of versions before the email index existed are
+     * indexed here; the bill index is built on first use.
+     *
+     * @param in the stream to read from
+     * @throws IOException            if the stream cannot be read
+     * @throws ClassNotFoundException if the class of a user cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (this.emailIndex == null) {
+            this.emailIndex = new HashMap<String, Integer>();
+            for (User u : this.userMap.values())
+                this.emailIndex.put(normalizeEmail(u.getEmail()), u.getId());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Selects the top users by a numeric score. Each user's score is evaluated
+ * once, optionally in parallel, and the best ones are kept in a bounded heap,
+ * so a ranking costs O(n log k) instead of sorting every user.
+ */
+class UserRanking {
+
+    /**
+     * A user paired with its score.
+     */
+    private static class Scored {
+        private final User user;
+        private final double score;
+
+        Scored(User user, double score) {
+            this.user = user;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Orders scores from worst to best: lower score first and, on ties, the higher
+     * user id first.
+     */
+    private static final Comparator<Scored> WORST_FIRST = Comparator.<Scored>comparingDouble(s -> s.score)
+            .thenComparing(Comparator.<Scored>comparingInt(s -> s.user.getId()).reversed());
+
+    /**
+     * Returns the k users with the highest score, best first. Ties are broken by
+     * the lowest user id and the admin account is never ranked.
+     *
+     * @param users    the users to rank
+     * @param score    the function computing the score of a user
+     * @param k        the maximum number of users to return
+     * @param parallel true to evaluate the scores in parallel
+     * @return the top users, best first
+     */
+    static List<User> top(Collection<User> users, ToDoubleFunction<User> score, int k, boolean parallel) {
+        Stream<User> stream = parallel ? users.parallelStream() : users.stream();
+        List<Scored> scored = stream
+                .filter(u -> !u.getEmail().equals("admin"))
+                .map(u -> new Scored(u, score.applyAsDouble(u)))
+                .collect(Collectors.toList());
+
+        PriorityQueue<Scored> heap = new PriorityQueue<Scored>(k + 1, WORST_FIRST);
+        for (Scored s : scored) {
+            if (heap.size() < k) {
+                heap.add(s);
+            } else if (WORST_FIRST.compare(s, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(s);
+            }
+        }
+
+        List<User> ranking = new ArrayList<User>(heap.size());
+        while (!heap.isEmpty()) {
+            ranking.add(heap.poll().user);
+        }
+        Collections.reverse(ranking);
+        return ranking;
+    }
+}
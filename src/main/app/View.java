@@ -2,14 +2,25 @@ package app;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.format.DateTimeParseException;
 import java.util.InputMismatchException;
 import java.util.Scanner;
 
 public class View {
+    private static final int PAGE_SIZE = 20;
+
     private Controller _cont = null;
     Scanner scanner = null;
 
+    /**
+     * Writes one page of a listing and returns how many entries it wrote.
+     */
+    @FunctionalInterface
+    private interface PageSource {
+        int write(Appendable out, int offset, int limit) throws UserIsAdminException, IOException;
+    }
+
     /**
      * Constructs a View object with the specified controller.
      *
@@ -218,7 +229,7 @@ public class View {
                 case "a":
                     System.out.print("System Items:");
                     System.out.print("\n");
-                    System.out.print(this._cont.getCurrentUserSystemItems());
+                    this.paged(this._cont::getCurrentUserSystemItems);
                     System.out.print("\n");
                     System.out.print("\n");
                     System.out.print("Choose the id of the item you wish to list:\n");
@@ -257,7 +268,7 @@ public class View {
             System.out.print("\n");
             System.out.print("\n");
             System.out.print("\n");
-            System.out.print(this._cont.showListedItems());
+            this.paged(this._cont::showListedItems);
             System.out.print("\n");
             System.out.print("Type the ID's of the items you wish to order separated by a comma\n");
             System.out.print("\n");
@@ -420,7 +431,7 @@ public class View {
             System.out.print(_cont.getCurrentUser().getName() + "'s current Orders");
             System.out.print("\n");
             System.out.print("\n");
-            System.out.print(this._cont.getCurrentUserAllOrders());
+            this.paged(this._cont::getCurrentUserAllOrders);
             System.out.print("\n");
             System.out.print("\n");
             System.out.print("Do you wish to return an order? (y for yes)\n");
@@ -456,13 +467,13 @@ public class View {
         try {
             System.out.print(_cont.getCurrentUser().getName() + "'s Listed Items");
             System.out.print("\n");
-            System.out.print(this._cont.getCurrentUserListedItems());
+            this.paged(this._cont::getCurrentUserListedItems);
             System.out.print("\n");
             System.out.print("\n");
             System.out.print("\n");
             System.out.print(_cont.getCurrentUser().getName() + "'s System Items");
             System.out.print("\n");
-            System.out.print(this._cont.getCurrentUserSystemItems());
+            this.paged(this._cont::getCurrentUserSystemItems);
             System.out.print("\n");
             scanner.nextLine();
         } catch (UserIsAdminException e) {
@@ -481,7 +492,7 @@ public class View {
             System.out.print(_cont.getCurrentUser().getName() + "' current Bills");
             System.out.print("\n");
             System.out.print("\n");
-            System.out.print(this._cont.currentUserBills()); //
+            this.paged(this._cont::currentUserBills);
             System.out.print("\n");
             System.out.print("\n");
             scanner.nextLine();
@@ -490,6 +501,31 @@ public class View {
         }
     }
 
+    /**
+     * Prints a listing straight to the console, a page at a time. After every
+     * full page the user may press Enter to see the next one, or type anything
+     * else to stop.
+     *
+     * @param source the listing
+     * @throws UserIsAdminException If the listing is not available to an admin.
+     */
+    private void paged(PageSource source) throws UserIsAdminException {
+        try {
+            int offset = 0;
+            while (true) {
+                int written = source.write(System.out, offset, PAGE_SIZE);
+                offset += written;
+                if (written < PAGE_SIZE)
+                    return;
+                System.out.print("-- Press Enter for more, anything else to stop --\n");
+                if (!scanner.nextLine().isEmpty())
+                    return;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Allows the user to skip time in the simulation by advancing the date to a
      * future date.
@@ -642,7 +678,7 @@ public class View {
                         try {
                             System.out.print("Write the path for the simulation file: ");
                             String path = scanner.nextLine();
-                            _cont.simulation(path);
+                            System.out.println(_cont.simulation(path));
                         } catch (FileNotFoundException esc) {
                             System.out.println("Error reaching .txt File!");
                         } catch (IOException esc) {
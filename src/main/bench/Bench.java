@@ -0,0 +1,100 @@
+package bench;
+
+/**
+ * Minimal timing harness shared by the benchmarks in this package.
+ * Every measurement runs a warm-up phase first, so the code under test is
+ * already compiled when the timed phase starts, and reports the average
+ * time per operation.
+ */
+public class Bench {
+
+    /**
+     * Represents one operation of a benchmark, receiving the iteration number.
+     */
+    public interface Operation {
+
+        /**
+         * Runs the operation once.
+         *
+         * @param iteration the number of the iteration being run
+         * @throws Exception if the operation fails
+         */
+        void run(int iteration) throws Exception;
+    }
+
+    /**
+     * Measures the average time of an operation.
+     *
+     * @param name       the name printed with the result
+     * @param warmup     the number of untimed iterations
+     * @param iterations the number of timed iterations
+     * @param op         the operation to measure
+     * @return the average time per operation, in nanoseconds
+     * @throws Exception if the operation fails
+     */
+    public static double measure(String name, int warmup, int iterations, Operation op) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            op.run(i);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run(warmup + i);
+        }
+        double nsPerOp = (double) (System.nanoTime() - start) / iterations;
+
+        System.out.println(String.format("%-40s %14.1f ns/op", name, nsPerOp));
+        return nsPerOp;
+    }
+
+    /**
+     * Measures the average time of an operation that needs a fresh fixture every
+     * time, such as one that consumes the state it runs on. The setup runs
+     * before each iteration and is not timed.
+     *
+     * @param name       the name printed with the result
+     * @param warmup     the number of untimed iterations
+     * @param iterations the number of timed iterations
+     * @param setup      prepares the state for one iteration
+     * @param op         the operation to measure
+     * @return the average time per operation, in nanoseconds
+     * @throws Exception if the setup or the operation fails
+     */
+    public static double measure(String name, int warmup, int iterations, Operation setup, Operation op)
+            throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            setup.run(i);
+            op.run(i);
+        }
+
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            setup.run(warmup + i);
+            long start = System.nanoTime();
+            op.run(warmup + i);
+            total += System.nanoTime() - start;
+        }
+        double nsPerOp = (double) total / iterations;
+
+        System.out.println(String.format("%-40s %14.1f ns/op", name, nsPerOp));
+        return nsPerOp;
+    }
+
+    /**
+     * Parses the dataset sizes given on the command line.
+     *
+     * @param args     the command line arguments
+     * @param defaults the sizes used when no argument is given
+     * @return the sizes to benchmark
+     */
+    public static int[] sizes(String[] args, int... defaults) {
+        if (args.length == 0)
+            return defaults;
+
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,137 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import app.InvalidId;
+import app.Model;
+import app.ModelWriter;
+import app.Order;
+
+/**
+ * Measures how order placement through sessions scales with the number of
+ * threads. Every thread has its own session and buyer. With disjoint carts the
+ * threads buy different items, so they only meet on shared structures; with
+ * contended carts they all try to buy the same items and most carts are
+ * rejected because another thread got there first. Orders are placed either
+ * directly, under the striped item locks, or by submitting them to a
+ * {@link ModelWriter}, whose average batch size is reported.
+ */
+public class ContentionBenchmark {
+
+    private static final int ITEMS = 100_000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the numbers of threads to test with; by default powers of two
+     *             up to twice the number of processors
+     * @throws Exception if the model rejects an operation
+     */
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> defaults = new ArrayList<Integer>();
+        for (int t = 1; t <= Math.max(8, 2 * cores); t *= 2)
+            defaults.add(t);
+        int[] threads = Bench.sizes(args, defaults.stream().mapToInt(Integer::intValue).toArray());
+        System.out.println("-- " + cores + " processors, " + ITEMS + " listed items");
+
+        for (boolean queued : new boolean[] { false, true }) {
+            for (boolean contended : new boolean[] { false, true }) {
+                double base = 0;
+                for (int t : threads) {
+                    run(t, contended, queued); // warm-up
+                    double[] result = run(t, contended, queued);
+                    double rate = result[0];
+                    if (base == 0)
+                        base = rate / t;
+                    String name = (queued ? "writer, " : "locks, ") + (contended ? "contended" : "disjoint")
+                            + " carts, " + t + " threads";
+                    System.out.println(String.format("%-40s %14.0f orders/s  (x%.2f)%s", name, rate, rate / base,
+                            queued ? String.format("  %.0f commands/batch", result[1]) : ""));
+                }
+            }
+        }
+    }
+
+    /**
+     * Places orders from several threads at once on a fresh model.
+     *
+     * @return the number of accepted orders per second and, with a writer, the
+     *         average number of commands it applied per batch
+     */
+    private static double[] run(int threads, boolean contended, boolean queued) throws Exception {
+        DataGenerator gen = new DataGenerator(42);
+        Model m = gen.listing(ITEMS);
+        List<Integer> ids = gen.getItemIds();
+
+        List<String> sessions = new ArrayList<String>();
+        List<List<Integer>> plans = new ArrayList<List<Integer>>();
+        for (int t = 0; t < threads; t++) {
+            m.registsUser("session" + t + "@bench", "Session", "Braga", t, DataGenerator.password());
+            sessions.add(m.openSession("session" + t + "@bench", DataGenerator.password()));
+            if (contended) {
+                List<Integer> mine = new ArrayList<Integer>(ids);
+                Collections.shuffle(mine, new Random(t));
+                plans.add(mine);
+            } else {
+                int from = ids.size() * t / threads;
+                plans.add(ids.subList(from, ids.size() * (t + 1) / threads));
+            }
+        }
+
+        AtomicInteger accepted = new AtomicInteger();
+        ModelWriter writer = queued ? new ModelWriter(m) : null;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            String session = sessions.get(t);
+            List<Integer> plan = plans.get(t);
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                    List<CompletableFuture<Order>> pending = new ArrayList<CompletableFuture<Order>>();
+                    for (int k = 0; k + 2 <= plan.size(); k += 2) {
+                        List<Integer> cart = Arrays.asList(plan.get(k), plan.get(k + 1));
+                        if (queued) {
+                            pending.add(writer.makeOrder(session, cart));
+                            continue;
+                        }
+                        try {
+                            m.makeOrder(session, cart);
+                            accepted.incrementAndGet();
+                        } catch (InvalidId e) {
+                            // another thread bought one of the items first
+                        }
+                    }
+                    for (CompletableFuture<Order> f : pending) {
+                        if (f.handle((order, e) -> order != null).join())
+                            accepted.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread w : workers)
+            w.join();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        double batch = 0;
+        if (writer != null) {
+            writer.close();
+            batch = (double) writer.getApplied() / writer.getBatches();
+        }
+        return new double[] { accepted.get() / seconds, batch };
+    }
+}
@@ -0,0 +1,227 @@
+package bench;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import app.InvalidId;
+import app.Item;
+import app.Model;
+import app.Sneaker;
+import app.Tshirt;
+
+/**
+ * Builds synthetic models for the benchmarks. The data is drawn from a seeded
+ * random generator, so two runs with the same seed and sizes produce the same
+ * model. Every model has three carriers (two normal ones and a premium one),
+ * one user for every ten items, and a mix of bags, t-shirts, sneakers and
+ * premium sneakers spread over the users.
+ */
+public class DataGenerator {
+
+    /**
+     * First day of the generated timeline.
+     */
+    public static final LocalDate START = LocalDate.of(2023, 1, 1);
+
+    private static final String[] CARRIERS = { "Ups", "Dhl", "Prem" };
+    private static final String[] MATERIALS = { "Leather", "Canvas", "Nylon", "Suede" };
+    private static final String[] COLORS = { "White", "Black", "Red", "Blue" };
+
+    private final Random random;
+    private int users;
+    private List<Integer> itemIds;
+
+    /**
+     * Constructs a generator.
+     *
+     * @param seed the seed of the random generator
+     */
+    public DataGenerator(long seed) {
+        this.random = new Random(seed);
+        this.itemIds = new ArrayList<Integer>();
+    }
+
+    /**
+     * Builds a model with users, carriers and listed items, without orders. The
+     * system date is set to {@link #START} and no user is logged in.
+     *
+     * @param items the number of items to register
+     * @return the populated model
+     * @throws Exception if the model rejects an operation
+     */
+    public Model listing(int items) throws Exception {
+        Model m = new Model();
+        m.setCurrentDate(START);
+        carriers(m);
+        users(m, Math.max(2, items / 10));
+        items(m, items);
+        m.nullCurrentUser();
+        return m;
+    }
+
+    /**
+     * Builds a model with orders: one in ten items is bought, two per order, and
+     * the orders are left pending so a time skip has work to do.
+     *
+     * @param items the number of items to register
+     * @return the populated model
+     * @throws Exception if the model rejects an operation
+     */
+    public Model pending(int items) throws Exception {
+        return pending(items, items / 20);
+    }
+
+    /**
+     * Builds a model with a given number of pending orders of two items each,
+     * spread evenly over the listed items.
+     *
+     * @param items  the number of items to register
+     * @param orders the number of orders, at most half the number of items
+     * @return the populated model
+     * @throws Exception if the model rejects an operation
+     */
+    public Model pending(int items, int orders) throws Exception {
+        Model m = listing(items);
+        orders(m, orders, Math.max(2, items / Math.max(1, orders)));
+        m.nullCurrentUser();
+        return m;
+    }
+
+    /**
+     * Builds a model whose orders were already dispatched, so users have bills
+     * and carriers have earnings. The system date ends five days after
+     * {@link #START}.
+     *
+     * @param items the number of items to register
+     * @return the populated model
+     * @throws Exception if the model rejects an operation
+     */
+    public Model dispatched(int items) throws Exception {
+        Model m = pending(items);
+        m.TimeSkip(START.plusDays(5));
+        return m;
+    }
+
+    /**
+     * Returns the email of a generated user.
+     *
+     * @param user the number of the user
+     * @return the email of the user
+     */
+    public static String email(int user) {
+        return "user" + user + "@vintage.pt";
+    }
+
+    /**
+     * Returns the password of every generated user.
+     *
+     * @return the password
+     */
+    public static String password() {
+        return "pass";
+    }
+
+    /**
+     * Returns the number of users of the last model built.
+     *
+     * @return the number of users
+     */
+    public int getUsers() {
+        return this.users;
+    }
+
+    /**
+     * Returns the ids of the items of the last model built, in registration
+     * order.
+     *
+     * @return the item ids
+     */
+    public List<Integer> getItemIds() {
+        return this.itemIds;
+    }
+
+    /**
+     * Logs in a random user that does not own any of the given items.
+     *
+     * @param m     the model
+     * @param items the items the user is going to buy
+     * @return the number of the user logged in
+     * @throws Exception if the login fails
+     */
+    public int loginBuyer(Model m, List<Integer> items) throws Exception {
+        while (true) {
+            int u = this.random.nextInt(this.users);
+            m.loginModel(email(u), password());
+            if (!m.CurrentUser().oneOfHis(items))
+                return u;
+        }
+    }
+
+    private void carriers(Model m) throws Exception {
+        m.addCarrier(CARRIERS[0], 0.08, 0.05, 0.03, "n");
+        m.addCarrier(CARRIERS[1], 0.11, 0.09, 0.02, "n");
+        m.addCarrier(CARRIERS[2], 0.1, 0.05, 0.09, "y");
+    }
+
+    private void users(Model m, int n) throws Exception {
+        this.users = n;
+        for (int u = 0; u < n; u++) {
+            m.registsUser(email(u), "User " + u, "Braga", 100_000_000 + u, password());
+        }
+    }
+
+    private void items(Model m, int n) throws Exception {
+        LocalDate released = START.minusYears(8);
+        for (int i = 0; i < n; i++) {
+            m.loginModel(email(i % this.users), password());
+            String brand = "Brand" + this.random.nextInt(50);
+            double condition = 1 + this.random.nextInt(5);
+            switch (i % 4) {
+                case 0:
+                    m.registBag("Bag " + i, brand, 20 + this.random.nextInt(300), CARRIERS[0], condition,
+                            50 + this.random.nextInt(200), pick(MATERIALS), released, "n");
+                    break;
+                case 1:
+                    m.registTshirt("Tshirt " + i, brand, 10 + this.random.nextInt(80), CARRIERS[1], condition,
+                            pick(Tshirt.TshirtSize.values()), pick(Tshirt.TshirtPattern.values()));
+                    break;
+                case 2:
+                    m.registSneaker("Sneaker " + i, brand, 50 + this.random.nextInt(400), CARRIERS[0], condition,
+                            36 + this.random.nextInt(12), pick(Sneaker.SneakerType.values()), pick(COLORS), released,
+                            "n");
+                    break;
+                default:
+                    m.registSneaker("Premium " + i, brand, 300 + this.random.nextInt(900), CARRIERS[2], condition,
+                            36 + this.random.nextInt(12), pick(Sneaker.SneakerType.values()), pick(COLORS), released,
+                            "y");
+                    break;
+            }
+        }
+
+        // ids keep growing across models built in the same JVM, so read them back
+        this.itemIds = new ArrayList<Integer>();
+        for (Item i : m.getListedItemsManagerList()) {
+            this.itemIds.add(i.getID());
+        }
+        this.itemIds.sort(null);
+    }
+
+    private void orders(Model m, int n, int stride) throws Exception {
+        for (int o = 0; o < n && stride * o + 1 < this.itemIds.size(); o++) {
+            List<Integer> cart = Arrays.asList(this.itemIds.get(stride * o), this.itemIds.get(stride * o + 1));
+            loginBuyer(m, cart);
+            try {
+                m.makeOrder(cart);
+            } catch (InvalidId e) {
+                // cannot happen, the buyer owns none of the items
+            }
+        }
+    }
+
+    private <T> T pick(T[] values) {
+        return values[this.random.nextInt(values.length)];
+    }
+}
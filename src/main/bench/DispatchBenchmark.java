@@ -0,0 +1,30 @@
+package bench;
+
+import app.Model;
+
+/**
+ * Measures the time skip that dispatches every pending order and bills it:
+ * each order has two items, usually of two sellers, so a dispatch issues three
+ * bills. The model is built again before every skip.
+ */
+public class DispatchBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the numbers of orders to dispatch
+     * @throws Exception if the model rejects an operation
+     */
+    public static void main(String[] args) throws Exception {
+        for (int orders : Bench.sizes(args, 10_000, 100_000)) {
+            Model[] m = new Model[1];
+            double ns = Bench.measure("TimeSkip dispatch (" + orders + " orders)", 1, 3,
+                    i -> {
+                        m[0] = null;
+                        m[0] = new DataGenerator(42).pending(4 * orders, orders);
+                    },
+                    i -> m[0].TimeSkip(DataGenerator.START.plusDays(5)));
+            System.out.println(String.format("%-40s %14.1f ns/op", "  per dispatched order", ns / orders));
+        }
+    }
+}
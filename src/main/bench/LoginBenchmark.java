@@ -0,0 +1,34 @@
+package bench;
+
+import app.Model;
+
+/**
+ * Measures the cost of a login as the number of registered users grows.
+ * With the email index the time per login should stay flat across sizes.
+ */
+public class LoginBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the numbers of registered users to test with
+     * @throws Exception if the model rejects an operation
+     */
+    public static void main(String[] args) throws Exception {
+        for (int users : Bench.sizes(args, 1_000, 10_000, 100_000, 1_000_000)) {
+            Model m = new Model();
+            String[] emails = new String[users];
+            String[] passwords = new String[users];
+            for (int i = 0; i < users; i++) {
+                emails[i] = "user" + i + "@vintage.pt";
+                passwords[i] = "pass" + i;
+                m.registsUser(emails[i], "User " + i, "Braga", i, passwords[i]);
+            }
+
+            Bench.measure("login (" + users + " users)", 200_000, 1_000_000, i -> {
+                int u = (int) ((i * 7919L) % users);
+                m.loginModel(emails[u], passwords[u]);
+            });
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package bench;
+
+import app.Model;
+
+/**
+ * Measures the heap a model takes: per listed item, with users and carriers,
+ * the heap added per order when one in ten items is bought, two per order, and
+ * the heap added per order once the orders are dispatched and billed.
+ * Run it with a heap large enough for the biggest size, for example
+ * {@code java -Xmx8g bench.MemoryBenchmark 10000000}.
+ */
+public class MemoryBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the numbers of listed items to test with
+     * @throws Exception if the model rejects an operation
+     */
+    public static void main(String[] args) throws Exception {
+        for (int items : Bench.sizes(args, 100_000, 1_000_000)) {
+            long empty = usedHeap();
+            Model listed = new DataGenerator(42).listing(items);
+            long listing = usedHeap() - empty;
+            report("heap per listed item (" + items + " items)", (double) listing / items, listed);
+            listed = null;
+
+            empty = usedHeap();
+            Model ordered = new DataGenerator(42).pending(items);
+            long pending = usedHeap() - empty;
+            report("heap per order (" + items / 20 + " orders)", (double) (pending - listing) / (items / 20),
+                    ordered);
+            ordered = null;
+
+            empty = usedHeap();
+            Model billed = new DataGenerator(42).dispatched(items);
+            long dispatched = usedHeap() - empty;
+            report("heap per dispatched order (" + items / 20 + " orders)",
+                    (double) (dispatched - pending) / (items / 20), billed);
+            billed = null;
+        }
+    }
+
+    private static void report(String name, double bytes, Model keptAlive) {
+        System.out.println(String.format("%-40s %14.1f bytes", name, bytes));
+        if (keptAlive == null)
+            throw new IllegalStateException();
+    }
+
+    /**
+     * Returns the heap in use once the garbage collector had a few chances to
+     * free everything unreachable.
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,159 @@
+package bench;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import app.Bill;
+import app.Controller;
+import app.Model;
+import app.User;
+
+/**
+ * Measures the hot paths of the model at several dataset sizes: placing
+ * orders one at a time and in batches, advancing the date, returning orders,
+ * logging in, listing the items for sale, every query and saving and loading a
+ * snapshot. The datasets come from
+ * {@link DataGenerator} with a fixed seed, so runs are comparable with each
+ * other.
+ */
+public class ModelBenchmark {
+
+    /**
+     * Largest dataset the listing is measured on; the listing is built by string
+     * concatenation and grows quadratically.
+     */
+    private static final int MAX_LISTING = 10_000;
+
+    /**
+     * Number of carts placed by every call to makeOrders.
+     */
+    private static final int BATCH = 100;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the numbers of items to test with
+     * @throws Exception if the model rejects an operation or a file fails
+     */
+    public static void main(String[] args) throws Exception {
+        for (int items : Bench.sizes(args, 1_000, 10_000, 100_000)) {
+            System.out.println("-- " + items + " items");
+            makeOrder(items);
+            makeOrders(items);
+            timeSkip(items, 1);
+            timeSkip(items, 5);
+            deleteOrder(items);
+            login(items);
+            displayListedItems(items);
+            queriers(items);
+            snapshot(items);
+        }
+    }
+
+    private static void makeOrder(int items) throws Exception {
+        DataGenerator gen = new DataGenerator(42);
+        Model m = gen.listing(items);
+        List<Integer> ids = gen.getItemIds();
+        int carts = ids.size() / 2;
+        int warmup = carts / 4;
+        int iterations = Math.min(carts - warmup, 20_000);
+
+        Bench.measure("makeOrder (" + items + " items)", warmup, iterations,
+                i -> gen.loginBuyer(m, cart(ids, i)),
+                i -> m.makeOrder(cart(ids, i)));
+    }
+
+    private static void makeOrders(int items) throws Exception {
+        DataGenerator gen = new DataGenerator(42);
+        Model m = gen.listing(items);
+        List<Integer> ids = gen.getItemIds();
+        m.registsUser("batch@bench", "Batch", "Braga", 0, DataGenerator.password());
+        m.loginModel("batch@bench", DataGenerator.password());
+        int batches = ids.size() / 2 / BATCH;
+        int warmup = batches / 4;
+        int iterations = Math.min(batches - warmup, 20_000 / BATCH);
+
+        Bench.measure("makeOrders x" + BATCH + " (" + items + " items)", warmup, iterations, i -> {
+            List<List<Integer>> carts = new ArrayList<List<Integer>>(BATCH);
+            for (int k = 0; k < BATCH; k++)
+                carts.add(cart(ids, i * BATCH + k));
+            m.makeOrders(carts);
+        });
+    }
+
+    private static List<Integer> cart(List<Integer> ids, int i) {
+        return Arrays.asList(ids.get(2 * i), ids.get(2 * i + 1));
+    }
+
+    private static void timeSkip(int items, int days) throws Exception {
+        Model[] m = new Model[1];
+        LocalDate to = DataGenerator.START.plusDays(days);
+        Bench.measure("TimeSkip " + days + " days (" + items + " items)", 1, 3,
+                i -> m[0] = new DataGenerator(42).pending(items),
+                i -> m[0].TimeSkip(to));
+    }
+
+    private static void deleteOrder(int items) throws Exception {
+        Model m = new DataGenerator(42).dispatched(items);
+        Set<Integer> ids = new TreeSet<Integer>();
+        for (User u : m.getUserManagerCopy().values()) {
+            for (Bill b : u.getBills().values())
+                ids.add(b.getOrder().getID());
+        }
+        List<Integer> orders = new ArrayList<Integer>(ids);
+        int warmup = orders.size() / 4;
+        Bench.measure("deleteOrder (" + items + " items)", warmup, orders.size() - warmup,
+                i -> m.deleteOrder(orders.get(i)));
+    }
+
+    private static void login(int items) throws Exception {
+        DataGenerator gen = new DataGenerator(42);
+        Model m = gen.dispatched(items);
+        int users = gen.getUsers();
+        Bench.measure("loginModel (" + items + " items)", 100_000, 500_000, i -> {
+            m.loginModel(DataGenerator.email((int) ((i * 7919L) % users)), DataGenerator.password());
+        });
+    }
+
+    private static void displayListedItems(int items) throws Exception {
+        if (items > MAX_LISTING) {
+            System.out.println(String.format("%-40s %14s", "displayListedItems (" + items + " items)", "skipped"));
+            return;
+        }
+        Model m = new DataGenerator(42).dispatched(items);
+        m.loginModel(DataGenerator.email(0), DataGenerator.password());
+        Bench.measure("displayListedItems (" + items + " items)", 3, 10, i -> m.displayListedItems());
+    }
+
+    private static void queriers(int items) throws Exception {
+        Model m = new DataGenerator(42).dispatched(items);
+        LocalDate from = DataGenerator.START;
+        LocalDate to = DataGenerator.START.plusDays(10);
+        int warmup = 20;
+        int iterations = Math.max(20, 2_000_000 / items);
+        int userId = m.lookupUser(DataGenerator.email(1)).getId();
+
+        Controller c = new Controller(m);
+
+        String[] names = { "BiggestEarnerAllTime", "BiggestEarnerAllTimeFrame", "BiggestCarrier",
+                "EmmitedOrderList", "PodiumSeller", "PodiumSpenders", "VintageProfit" };
+        for (int q = 1; q <= names.length; q++) {
+            int query = q;
+            Bench.measure(names[q - 1] + " (" + items + " items)", warmup, iterations,
+                    i -> c.querrierResult(query, from, to, userId));
+        }
+    }
+
+    private static void snapshot(int items) throws Exception {
+        Model m = new DataGenerator(42).dispatched(items);
+        File f = File.createTempFile("model", ".snap");
+        f.deleteOnExit();
+        Bench.measure("save (" + items + " items)", 1, 3, i -> m.save(f.getPath()));
+        Bench.measure("load (" + items + " items)", 1, 3, i -> Model.load(f.getPath()));
+    }
+}
@@ -0,0 +1,51 @@
+package bench;
+
+import java.util.List;
+
+import app.Item;
+import app.Model;
+
+/**
+ * Measures pricing the whole listing, the way the listing, the bills and the
+ * queries do, with the prices already remembered and right after the date
+ * moved, and reports how often the price cache was hit by the model's own
+ * operations.
+ */
+public class PriceBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the numbers of listed items to test with
+     * @throws Exception if the model rejects an operation
+     */
+    public static void main(String[] args) throws Exception {
+        for (int items : Bench.sizes(args, 10_000, 100_000)) {
+            DataGenerator gen = new DataGenerator(42);
+            Model m = gen.listing(items);
+            List<Item> listed = m.getListedItemsManagerList();
+
+            Bench.measure("price listing (" + items + " items)", 20, 100, i -> priceAll(listed));
+            Bench.measure("price listing, new date (" + items + " items)", 20, 100,
+                    i -> m.setCurrentDate(DataGenerator.START.plusDays(i + 1)),
+                    i -> priceAll(listed));
+
+            Item.resetPriceCacheStats();
+            Model orders = new DataGenerator(42).pending(items);
+            orders.TimeSkip(DataGenerator.START.plusDays(5));
+            orders.getListedItemsManagerList().forEach(Item::showItem);
+            long hits = Item.getPriceCacheHits();
+            long misses = Item.getPriceCacheMisses();
+            System.out.println(String.format("%-40s %14.1f %%", "hit rate, orders (" + items + " items)",
+                    100.0 * hits / Math.max(1, hits + misses)));
+        }
+    }
+
+    private static double priceAll(List<Item> items) {
+        double total = 0;
+        for (Item i : items) {
+            total += i.getPrice();
+        }
+        return total;
+    }
+}
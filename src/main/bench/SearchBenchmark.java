@@ -0,0 +1,40 @@
+package bench;
+
+import app.ItemQuery;
+import app.Model;
+import app.Sneaker;
+
+/**
+ * Measures searches over the listed items, against rendering the whole listing
+ * which was the only way to browse before. The first search builds the index
+ * and is timed apart.
+ */
+public class SearchBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the numbers of listed items to test with
+     * @throws Exception if the model rejects an operation
+     */
+    public static void main(String[] args) throws Exception {
+        for (int items : Bench.sizes(args, 100_000, 300_000)) {
+            Model m = new DataGenerator(42).listing(items);
+
+            Bench.measure("build index (" + items + " items)", 0, 1,
+                    i -> m.searchListedItems(new ItemQuery()));
+
+            query(m, items, "first page", new ItemQuery());
+            query(m, items, "cheapest premium", new ItemQuery().premium(true));
+            query(m, items, "brand + kind", new ItemQuery().brand("Brand7").kind(ItemQuery.Kind.TSHIRT));
+            query(m, items, "sneaker type + price", new ItemQuery().sneakerType(Sneaker.SneakerType.LACES)
+                    .priceBetween(100, 150).page(3, 20));
+            query(m, items, "words + carrier", new ItemQuery().words("bag 1234").carrier("ups"));
+            query(m, items, "deep page", new ItemQuery().kind(ItemQuery.Kind.BAG).page(500, 20));
+        }
+    }
+
+    private static void query(Model m, int items, String name, ItemQuery q) throws Exception {
+        Bench.measure(name + " (" + items + " items)", 1_000, 10_000, i -> m.searchListedItems(q));
+    }
+}
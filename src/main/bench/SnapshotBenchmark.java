@@ -0,0 +1,47 @@
+package bench;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+
+import app.Model;
+
+/**
+ * Compares saving and loading a model with the binary snapshot format against
+ * plain Java serialization, which is how older versions stored the model.
+ * The dataset has ten listed items per user, and one item in ten is bought and
+ * dispatched, so orders and bills are part of the saved graph.
+ */
+public class SnapshotBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the numbers of items to test with
+     * @throws Exception if the model rejects an operation or a file fails
+     */
+    public static void main(String[] args) throws Exception {
+        for (int items : Bench.sizes(args, 10_000, 100_000, 1_000_000)) {
+            Model m = new DataGenerator(42).dispatched(items);
+            File legacy = File.createTempFile("model", ".ser");
+            File snapshot = File.createTempFile("model", ".snap");
+            legacy.deleteOnExit();
+            snapshot.deleteOnExit();
+
+            Bench.measure("serialization save (" + items + " items)", 1, 3, i -> {
+                try (ObjectOutputStream os = new ObjectOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(legacy)))) {
+                    os.writeObject(m);
+                }
+            });
+            Bench.measure("snapshot save (" + items + " items)", 1, 3, i -> m.save(snapshot.getPath()));
+
+            Bench.measure("serialization load (" + items + " items)", 1, 3, i -> Model.load(legacy.getPath()));
+            Bench.measure("snapshot load (" + items + " items)", 1, 3, i -> Model.load(snapshot.getPath()));
+
+            System.out.println(String.format("%-40s %14d bytes", "serialization size", legacy.length()));
+            System.out.println(String.format("%-40s %14d bytes", "snapshot size", snapshot.length()));
+        }
+    }
+}
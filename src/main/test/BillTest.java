@@ -3,7 +3,11 @@ package test;
 import static org.junit.Assert.assertEquals;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Stack;
 
 import org.junit.jupiter.api.Test;
@@ -295,4 +299,136 @@ public class BillTest {
         assertEquals("", 42.978, bill.getAmount(), 0.001);
     }
 
-}
\ No newline at end of file
+    private static double rate(Carrier c, int many) {
+        if (many == 1)
+            return c.getTaxSmallWithIva();
+        if (many >= 2 && many <= 5)
+            return c.getTaxMediumWithIva();
+        return many > 5 ? c.getTaxBigWithIva() : 0;
+    }
+
+    /**
+     * The ports tax of the items as the bill computed it before it kept its
+     * carriers: each added item taxed at the tier it was added with, and the
+     * whole tax scaled when a removal crosses a tier. Right for one carrier.
+     */
+    private static double legacyPortsTax(List<Item> added, List<Item> removed, List<Integer> removedCounts,
+            int count) {
+        double ports = 0;
+        for (Item i : added)
+            ports += rate(i.getCarrier(), count) * i.getBasePrice();
+        for (int k = 0; k < removed.size(); k++) {
+            Carrier c = removed.get(k).getCarrier();
+            int many = removedCounts.get(k);
+            ports -= rate(c, many) * removed.get(k).getBasePrice();
+            if (many == 2)
+                ports = (ports * c.getTaxSmallWithIva()) / c.getTaxMediumWithIva();
+            if (many == 6)
+                ports = (ports * c.getTaxMediumWithIva()) / c.getTaxBigWithIva();
+        }
+        return ports;
+    }
+
+    @Test
+    public void totalsMatchRecomputedOnRandomBills() {
+        Random r = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            // a carrier changed after some items were listed leaves them with
+            // the old rates under the same name
+            Carrier[] carriers = new Carrier[1 + r.nextInt(4)];
+            for (int k = 0; k < carriers.length; k++) {
+                String name = k > 0 && r.nextBoolean() ? carriers[r.nextInt(k)].getName() : "c" + k;
+                carriers[k] = new Carrier(name, r.nextDouble(), r.nextDouble(), r.nextDouble(), 0);
+            }
+            List<Item> items = new ArrayList<Item>();
+            Map<String, Integer> counts = new HashMap<String, Integer>();
+            int n = 1 + r.nextInt(12);
+            for (int k = 0; k < n; k++) {
+                Carrier c = carriers[r.nextInt(carriers.length)];
+                Item i = r.nextBoolean()
+                        ? new Bag("b", "x", 1 + r.nextInt(500), c, r.nextDouble(), null, r.nextInt(3000), "m",
+                                null, 0)
+                        : new Tshirt("t", "x", 1 + r.nextInt(100), c, r.nextDouble(), null,
+                                Util.toTshirtSize("M"), Util.toTshirtPattern("Smooth"), 0);
+                items.add(i);
+                counts.merge(c.getName(), 1, Integer::sum);
+            }
+
+            Bill bill = new Bill();
+            bill.setBought();
+            for (Item i : items)
+                bill.addItem(i, counts.get(i.getCarrier().getName()));
+
+            List<Item> removed = new ArrayList<Item>();
+            List<Integer> removedCounts = new ArrayList<Integer>();
+            List<Item> left = new ArrayList<Item>(items);
+            while (true) {
+                double ports = 0;
+                double cost = 0;
+                for (Item i : left) {
+                    ports += rate(i.getCarrier(), counts.get(i.getCarrier().getName())) * i.getBasePrice();
+                    cost += i.getPrice();
+                }
+                assertEquals("", ports, bill.getportsTax(), 1e-9);
+                assertEquals("", cost, bill.gettotalCost(), 1e-9);
+                if (carriers.length == 1)
+                    assertEquals("", legacyPortsTax(items, removed, removedCounts, n), bill.getportsTax(), 1e-9);
+
+                Bill recomputed = bill.clone();
+                recomputed.calculateTotalCostItems();
+                assertEquals("", recomputed.gettotalCost(), bill.gettotalCost(), 1e-9);
+
+                if (left.isEmpty() || r.nextInt(4) == 0)
+                    break;
+                Item gone = left.remove(r.nextInt(left.size()));
+                String name = gone.getCarrier().getName();
+                removed.add(gone);
+                removedCounts.add(counts.get(name));
+                bill.removeItem(gone, counts.get(name));
+                counts.merge(name, -1, Integer::sum);
+            }
+        }
+    }
+
+    @Test
+    public void removingFromADispatchedBillRetaxesItsCarrier() throws Exception {
+        Model m = new Model();
+        m.setCurrentDate(LocalDate.of(2023, 5, 5));
+        m.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+        m.addCarrier("Dhl", 0.2, 0.1, 0.05, "n");
+        m.registsUser("seller@x", "S", "Braga", 1, "s");
+        m.registsUser("buyer@x", "B", "Porto", 2, "b");
+        m.loginModel("seller@x", "s");
+        for (int k = 0; k < 6; k++)
+            m.registTshirt("shirt", "brand", 10 + k, "Ups", 5, Tshirt.TshirtSize.M, Tshirt.TshirtPattern.Smooth);
+        m.registBag("bag", "brand", 100, "Dhl", 4, 1500, "pele", LocalDate.of(2010, 1, 1), "n");
+        List<Item> items = new ArrayList<Item>(m.getListedItemsManagerList());
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Item i : items)
+            ids.add(i.getID());
+
+        m.loginModel("buyer@x", "b");
+        m.makeOrder(ids);
+        m.TimeSkip(LocalDate.of(2023, 5, 10));
+        Bill bill = m.lookupUser("buyer@x").getBills().values().iterator().next();
+
+        Carrier ups = m.getCarrierManagerCopy().get("Ups");
+        Carrier dhl = m.getCarrierManagerCopy().get("Dhl");
+        Item gone = null;
+        double shirts = 0;
+        double bag = 0;
+        for (Item i : items) {
+            if (i.getCarrier().getName().equals("Dhl"))
+                bag = i.getBasePrice();
+            else if (gone == null)
+                gone = i;
+            else
+                shirts += i.getBasePrice();
+        }
+        assertEquals(rate(ups, 6) * (shirts + gone.getBasePrice()) + rate(dhl, 1) * bag, bill.getportsTax(), 1e-9);
+
+        // the shirts left drop to the tier of five items; the bag keeps its tax
+        bill.removeItem(gone, 6);
+        assertEquals(rate(ups, 5) * shirts + rate(dhl, 1) * bag, bill.getportsTax(), 1e-9);
+    }
+}
@@ -1,6 +1,14 @@
 package test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 import app.*;
@@ -28,4 +36,71 @@ public class IDTest {
         assertEquals("", 1, a.getID(), 0);
         assertEquals("", 2, b.getID(), 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void idsFromManyThreadsStayUnique() throws Exception {
+        ModelContext context = new ModelContext();
+        Model m = new Model(context);
+        List<Integer> ids = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                ModelContext.bind(context);
+                for (int k = 0; k < 1000; k++)
+                    ids.add(new Tshirt().getID());
+            }));
+        }
+        for (Thread t : threads)
+            t.start();
+        for (Thread t : threads)
+            t.join();
+        assertEquals(4000, new HashSet<Integer>(ids).size());
+
+        File f = File.createTempFile("ids", ".snap");
+        f.deleteOnExit();
+        ModelContext previous = ModelContext.bind(context);
+        try {
+            Tshirt a = new Tshirt();
+            Tshirt b = new Tshirt();
+            assertEquals(a.getID() + 1, b.getID());
+            m.save(f.getPath());
+
+            ModelContext.bind(new ModelContext());
+            Model.load(f.getPath());
+            int next = new Tshirt().getID();
+            Set<Integer> taken = new HashSet<Integer>(ids);
+            taken.add(a.getID());
+            taken.add(b.getID());
+            assertTrue(next > Collections.max(taken));
+        } finally {
+            ModelContext.bind(previous);
+        }
+    }
+
+    @Test
+    public void idsOfEndedThreadsStayTaken() throws Exception {
+        ModelContext context = new ModelContext();
+        Model m = new Model(context);
+        List<Integer> ids = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int t = 0; t < 200; t++) {
+            Thread thread = new Thread(() -> {
+                ModelContext.bind(context);
+                ids.add(new Tshirt().getID());
+            });
+            thread.start();
+            thread.join();
+        }
+
+        File f = File.createTempFile("ids", ".snap");
+        f.deleteOnExit();
+        ModelContext previous = ModelContext.bind(context);
+        try {
+            m.save(f.getPath());
+            ModelContext.bind(new ModelContext());
+            Model.load(f.getPath());
+            assertTrue(new Tshirt().getID() > Collections.max(ids));
+        } finally {
+            ModelContext.bind(previous);
+        }
+    }
+}
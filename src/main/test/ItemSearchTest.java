@@ -0,0 +1,204 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import app.*;
+
+public class ItemSearchTest {
+
+    private static final String[] BRANDS = { "Nike", "Adidas", "Gucci", "Zara" };
+    private static final String[] WORDS = { "red", "blue", "vintage", "classic", "leather" };
+
+    private static String words(Random r) {
+        return WORDS[r.nextInt(WORDS.length)] + " " + WORDS[r.nextInt(WORDS.length)] + " item";
+    }
+
+    private static Model populate(Random r) throws Exception {
+        Model m = new Model();
+        m.setCurrentDate(LocalDate.of(2023, 5, 5));
+        m.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+        m.addCarrier("Dhl", 0.11, 0.09, 0.02, "n");
+        m.addCarrier("Prem", 0.1, 0.05, 0.09, "y");
+        for (int u = 0; u < 10; u++)
+            m.registsUser("u" + u + "@x", "U", "Braga", u, "p");
+
+        for (int k = 0; k < 600; k++) {
+            m.loginModel("u" + r.nextInt(10) + "@x", "p");
+            String brand = BRANDS[r.nextInt(BRANDS.length)];
+            int score = 1 + r.nextInt(5);
+            LocalDate released = LocalDate.of(2010 + r.nextInt(12), 1 + r.nextInt(12), 1);
+            switch (r.nextInt(5)) {
+                case 0:
+                    m.registBag(words(r), brand, 10 + r.nextInt(500), "Ups", score, 100 + r.nextInt(500),
+                            "pele", released, "n");
+                    break;
+                case 1:
+                    m.registBag(words(r), brand, 10 + r.nextInt(500), "Prem", score, 100, "pele", released, "y");
+                    break;
+                case 2:
+                    m.registTshirt(words(r), brand, 10 + r.nextInt(100), "Dhl", score,
+                            Tshirt.TshirtSize.values()[r.nextInt(4)], Tshirt.TshirtPattern.values()[r.nextInt(3)]);
+                    break;
+                case 3:
+                    m.registSneaker(words(r), brand, 10 + r.nextInt(500), "Ups", score, 38 + r.nextInt(10),
+                            Sneaker.SneakerType.values()[r.nextInt(2)], "white", released, "n");
+                    break;
+                default:
+                    m.registSneaker(words(r), brand, 10 + r.nextInt(500), "Prem", score, 40,
+                            Sneaker.SneakerType.values()[r.nextInt(2)], "black", released, "y");
+                    break;
+            }
+        }
+        return m;
+    }
+
+    private static List<Item> expected(Model m, String text, String brand, ItemQuery.Kind kind, String carrier,
+            Boolean premium, double min, double max, int page, int size) {
+        List<Item> all = new ArrayList<Item>();
+        List<String> words = text == null ? List.of() : Arrays.asList(text.split(" "));
+        for (Item i : m.getListedItemsManagerList()) {
+            List<String> itemWords = new ArrayList<String>(
+                    Arrays.asList(i.getDescription().toLowerCase(Locale.ROOT).split(" ")));
+            itemWords.add(i.getBrand().toLowerCase(Locale.ROOT));
+            if (!itemWords.containsAll(words))
+                continue;
+            if (brand != null && !i.getBrand().equalsIgnoreCase(brand))
+                continue;
+            if (kind != null && ItemQuery.Kind.of(i) != kind)
+                continue;
+            if (carrier != null && !i.getCarrier().getName().equalsIgnoreCase(carrier))
+                continue;
+            if (premium != null && (i instanceof Premium) != premium)
+                continue;
+            if (i.getPrice() < min || i.getPrice() > max)
+                continue;
+            all.add(i);
+        }
+        all.sort(Comparator.comparingDouble(Item::getPrice).thenComparingInt(Item::getID));
+        return all.subList(Math.min(all.size(), page * size), Math.min(all.size(), (page + 1) * size));
+    }
+
+    private static void check(Model m, Random r) {
+        for (int k = 0; k < 300; k++) {
+            String text = r.nextInt(3) == 0 ? WORDS[r.nextInt(WORDS.length)] : null;
+            String brand = r.nextInt(3) == 0 ? BRANDS[r.nextInt(BRANDS.length)].toUpperCase() : null;
+            ItemQuery.Kind kind = r.nextInt(3) == 0 ? ItemQuery.Kind.values()[r.nextInt(3)] : null;
+            String carrier = r.nextInt(4) == 0 ? "ups" : null;
+            Boolean premium = r.nextInt(4) == 0 ? r.nextBoolean() : null;
+            double min = r.nextInt(2) == 0 ? r.nextInt(300) : Double.NEGATIVE_INFINITY;
+            double max = r.nextInt(2) == 0 ? min + r.nextInt(400) : Double.POSITIVE_INFINITY;
+            int page = r.nextInt(4);
+            int size = 1 + r.nextInt(30);
+
+            ItemQuery q = new ItemQuery().priceBetween(min, max).page(page, size);
+            if (text != null)
+                q.words(text);
+            if (brand != null)
+                q.brand(brand);
+            if (kind != null)
+                q.kind(kind);
+            if (carrier != null)
+                q.carrier(carrier);
+            if (premium != null)
+                q.premium(premium);
+
+            List<Integer> want = new ArrayList<Integer>();
+            for (Item i : expected(m, text, brand, kind, carrier, premium, min, max, page, size))
+                want.add(i.getID());
+            List<Integer> got = new ArrayList<Integer>();
+            for (Item i : m.searchListedItems(q))
+                got.add(i.getID());
+            assertEquals(want, got);
+        }
+    }
+
+    @Test
+    public void matchesFullScan() throws Exception {
+        Random r = new Random(7);
+        Model m = populate(r);
+        check(m, r);
+
+        // sales, returns and relisting keep the index in step with the listing
+        List<Item> listed = new ArrayList<Item>(m.getListedItemsManagerList());
+        List<Integer> orders = new ArrayList<Integer>();
+        for (int k = 0; k + 1 < 200; k += 2) {
+            int a = listed.get(k).getID();
+            int b = listed.get(k + 1).getID();
+            m.loginModel("u" + r.nextInt(10) + "@x", "p");
+            try {
+                orders.add(m.makeOrder(Arrays.asList(a, b)).getID());
+            } catch (InvalidId e) {
+            }
+        }
+        check(m, r);
+        m.TimeSkip(LocalDate.of(2023, 5, 10));
+        for (int k = 0; k < orders.size(); k += 3)
+            m.deleteOrder(orders.get(k));
+        check(m, r);
+
+        // premium prices move with the date
+        m.TimeSkip(LocalDate.of(2025, 6, 1));
+        check(m, r);
+    }
+
+    @Test
+    public void emptyWhenNoTermMatches() throws Exception {
+        Model m = populate(new Random(3));
+        assertEquals(0, m.searchListedItems(new ItemQuery().words("nonexistent")).size());
+        assertEquals(0, m.searchListedItems(new ItemQuery().priceBetween(10, 5)).size());
+        assertEquals(20, m.searchListedItems(new ItemQuery()).size());
+    }
+
+    @Test
+    public void pagesJoinToTheFullListing() throws Exception {
+        Model m = populate(new Random(4));
+        m.loginModel("u0@x", "p");
+        String all = m.displayListedItems();
+        for (int size : new int[] { 1, 7, 50, 1000 }) {
+            StringBuilder paged = new StringBuilder();
+            int offset = 0;
+            int written;
+            do {
+                written = m.displayListedItems(paged, offset, size);
+                offset += written;
+            } while (written == size);
+            assertEquals(all, paged.toString());
+        }
+        assertEquals(0, m.displayListedItems(new StringBuilder(), 100000, 10));
+    }
+
+    @Test
+    public void listingKeepsInsertionOrder() {
+        Random r = new Random(5);
+        ItemManager im = new ItemManager();
+        List<Integer> expected = new ArrayList<Integer>();
+        List<Item> removed = new ArrayList<Item>();
+        for (int k = 0; k < 2000; k++) {
+            if (!expected.isEmpty() && r.nextInt(3) == 0) {
+                Integer id = expected.remove(r.nextInt(expected.size()));
+                removed.add(im.removeListedItem(id));
+            } else if (!removed.isEmpty() && r.nextInt(3) == 0) {
+                Item i = removed.remove(r.nextInt(removed.size()));
+                im.addListedItem(i);
+                expected.add(i.getID());
+            } else {
+                Item i = new Tshirt();
+                im.addListedItem(i);
+                expected.add(i.getID());
+            }
+        }
+        List<Integer> listed = new ArrayList<Integer>();
+        for (Item i : im.getListedItems())
+            listed.add(i.getID());
+        assertEquals(expected, listed);
+    }
+}
@@ -88,4 +88,71 @@ public class ItemTest {
         assertEquals("", 3.66, tilhaNP.getPrice(), 0.01);
         assertEquals("", 21.5, tilhaP.getPrice(), 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void priceFollowsChanges() {
+        SystemDate.setDate(LocalDate.of(2023, 1, 8));
+        var sneaker = new PremiumSneaker();
+        sneaker.setBasePrice(100);
+        sneaker.setReleaseDate(LocalDate.of(2020, 1, 8));
+        assertEquals("", 107.5, sneaker.getPrice(), 0.0001);
+
+        long hits = Item.getPriceCacheHits();
+        assertEquals("", 107.5, sneaker.getPrice(), 0.0001);
+        assertEquals(hits + 1, Item.getPriceCacheHits());
+
+        SystemDate.setDate(LocalDate.of(2024, 1, 8));
+        assertEquals("", 110, sneaker.getPrice(), 0.0001);
+        sneaker.setBasePrice(200);
+        assertEquals("", 220, sneaker.getPrice(), 0.0001);
+
+        var used = new Sneaker();
+        used.setBasePrice(20);
+        used.setConditionScore(0.3);
+        used.setPreviousOwners(new Stack<Integer>());
+        assertEquals("", 3.2, used.getPrice(), 0.0001);
+        used.addPreviousOwner(1);
+        assertEquals("", 3.6666, used.getPrice(), 0.0001);
+    }
+
+    @Test
+    public void cardFollowsChanges() {
+        ModelContext previous = ModelContext.bind(new ModelContext());
+        try {
+            CardCache cards = ModelContext.current().getCardCache();
+            SystemDate.setDate(LocalDate.of(2023, 1, 8));
+            Carrier ups = new Carrier("Ups", 0.08, 0.05, 0.03, 0);
+            var sneaker = new PremiumSneaker();
+            sneaker.setCarrier(ups);
+            sneaker.setBasePrice(100);
+            sneaker.setReleaseDate(LocalDate.of(2020, 1, 8));
+            String card = sneaker.showItem();
+            assertEquals(true, card.contains("Price: 107.5"));
+            assertEquals(card, sneaker.showItem());
+            assertEquals(1, cards.getHits());
+            assertEquals(1, cards.getMisses());
+
+            SystemDate.setDate(LocalDate.of(2024, 1, 8));
+            assertEquals(true, sneaker.showItem().contains("Price: 110.0"));
+            ups.setName("Dhl");
+            assertEquals(true, sneaker.showItem().contains("Carrier: Dhl"));
+
+            Item copy = sneaker.clone();
+            copy.setBasePrice(300);
+            sneaker.setBasePrice(200);
+            assertEquals(true, copy.showItem().contains("Price: 330.0"));
+            assertEquals(true, sneaker.showItem().contains("Price: 220.0"));
+
+            assertEquals(true, ups.showCarrier().contains("Name: Dhl"));
+            ups.setTaxSmall(0.1);
+            assertEquals(true, ups.showCarrier().contains("Small tax value: 0.1"));
+
+            cards.setCapacity(card.length());
+            assertEquals(1, cards.size());
+            cards.setCapacity(0);
+            assertEquals(0, cards.size());
+        } finally {
+            ModelContext.bind(previous);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import app.*;
+
+public class JournalTest {
+
+    private static Model populate(File dir) throws Exception {
+        Model m = new Model();
+        m.setCurrentDate(LocalDate.of(2023, 5, 5));
+        m.startJournal(new File(dir, "data.snap").getPath(), new File(dir, "data.journal").getPath(), true);
+
+        m.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+        m.registsUser("seller@x", "Seller", "Braga", 1, "s");
+        m.registsUser("buyer@x", "Buyer", "Porto", 2, "b");
+        m.loginModel("seller@x", "s");
+        m.registBag("bag", "brand", 100, "Ups", 4, 1500, "pele", LocalDate.of(2010, 1, 1), "n");
+        m.registTshirt("shirt", "brand", 20, "Ups", 5, Tshirt.TshirtSize.M, Tshirt.TshirtPattern.Stripes);
+        m.registTshirt("shirt", "brand", 30, "Ups", 5, Tshirt.TshirtSize.L, Tshirt.TshirtPattern.PalmTrees);
+        int first = m.getListedItemsManagerList().stream().mapToInt(Item::getID).min().getAsInt();
+
+        m.loginModel("buyer@x", "b");
+        m.makeOrder(Arrays.asList(first, first + 1));
+        m.changeCarrier("Ups", 0.1, 0.06, 0.04);
+        m.TimeSkip(LocalDate.of(2023, 5, 10));
+        return m;
+    }
+
+    private static void assertSameState(Model expected, Model actual) {
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getVintageProfit(), actual.getVintageProfit(), 0.0001);
+        assertEquals(expected.getListedItemsManagerList().size(), actual.getListedItemsManagerList().size());
+
+        Map<Integer, User> before = expected.getUserManagerCopy();
+        Map<Integer, User> after = actual.getUserManagerCopy();
+        assertEquals(before.keySet(), after.keySet());
+        for (User u : before.values()) {
+            User v = after.get(u.getId());
+            assertEquals(u.getBills().keySet(), v.getBills().keySet());
+            assertEquals(u.soldItemsValue(), v.soldItemsValue(), 0.0001);
+            assertEquals(u.spendValue(), v.spendValue(), 0.0001);
+            assertEquals(u.getSystemItems().size(), v.getSystemItems().size());
+            assertEquals(u.getSellingItems().size(), v.getSellingItems().size());
+        }
+        for (Map.Entry<String, Carrier> e : expected.getCarrierManagerCopy().entrySet()) {
+            Carrier c = actual.getCarrierManagerCopy().get(e.getKey());
+            assertEquals(e.getValue().getTaxSmall(), c.getTaxSmall(), 0);
+            assertEquals(e.getValue().getTotalEarning(), c.getTotalEarning(), 0.0001);
+        }
+    }
+
+    @Test
+    public void recoverAfterCrash() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        dir.deleteOnExit();
+
+        // the model is never checkpointed nor closed, as if the process died
+        Model m = populate(dir);
+        Model recovered = Model.recover(new File(dir, "data.snap").getPath(),
+                new File(dir, "data.journal").getPath(), true);
+        assertSameState(m, recovered);
+
+        // the recovered model keeps journaling on top of a new checkpoint
+        recovered.loginModel("seller@x", "s");
+        recovered.registTshirt("late", "brand", 10, "Ups", 3, Tshirt.TshirtSize.S, Tshirt.TshirtPattern.Stripes);
+        Model again = Model.recover(new File(dir, "data.snap").getPath(),
+                new File(dir, "data.journal").getPath(), true);
+        assertSameState(recovered, again);
+        again.closeJournal();
+    }
+
+    @Test
+    public void tornRecordIsIgnored() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        dir.deleteOnExit();
+        Model m = populate(dir);
+
+        File journal = new File(dir, "data.journal");
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3 });
+        }
+
+        Model recovered = Model.recover(new File(dir, "data.snap").getPath(), journal.getPath(), true);
+        assertSameState(m, recovered);
+        recovered.closeJournal();
+    }
+
+    @Test
+    public void sessionOrdersAreReplayed() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        dir.deleteOnExit();
+        Model m = populate(dir);
+        m.loginModel("seller@x", "s");
+        for (int k = 0; k < 40; k++)
+            m.registTshirt("shirt " + k, "brand", 10 + k, "Ups", 5, Tshirt.TshirtSize.S, Tshirt.TshirtPattern.Smooth);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Item i : m.getListedItemsManagerList())
+            ids.add(i.getID());
+        m.registsUser("other@x", "Other", "Lisboa", 3, "o");
+
+        List<Thread> workers = new ArrayList<Thread>();
+        for (String email : new String[] { "buyer@x", "other@x" }) {
+            String session = m.openSession(email, email.equals("buyer@x") ? "b" : "o");
+            workers.add(new Thread(() -> {
+                for (int k = 0; k + 2 <= ids.size(); k += 2) {
+                    try {
+                        m.makeOrder(session, ids.subList(k, k + 2));
+                    } catch (InvalidId e) {
+                    }
+                }
+            }));
+        }
+        for (Thread w : workers)
+            w.start();
+        for (Thread w : workers)
+            w.join();
+        m.TimeSkip(LocalDate.of(2023, 5, 20));
+
+        Model recovered = Model.recover(new File(dir, "data.snap").getPath(),
+                new File(dir, "data.journal").getPath(), true);
+        assertSameState(m, recovered);
+        recovered.closeJournal();
+    }
+
+    @Test
+    public void failedOperationsAreNotJournaled() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        dir.deleteOnExit();
+        Model m = populate(dir);
+        m.loginModel("seller@x", "s");
+        try {
+            m.registTshirt("shirt", "brand", 10, "Dhl", 3, Tshirt.TshirtSize.S, Tshirt.TshirtPattern.Stripes);
+            fail();
+        } catch (NullPointerException e) {
+        }
+        try {
+            m.TimeSkip(LocalDate.of(2023, 5, 1));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        m.registTshirt("after", "brand", 10, "Ups", 3, Tshirt.TshirtSize.S, Tshirt.TshirtPattern.Stripes);
+
+        Model recovered = Model.recover(new File(dir, "data.snap").getPath(),
+                new File(dir, "data.journal").getPath(), true);
+        assertSameState(m, recovered);
+        recovered.closeJournal();
+    }
+
+    @Test
+    public void unreplayableRecordKeepsTheFiles() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        dir.deleteOnExit();
+        Model m = populate(dir);
+        m.closeJournal();
+
+        File snapshot = new File(dir, "data.snap");
+        File journal = new File(dir, "data.journal");
+        try (Journal j = Journal.open(journal.getPath(), 0, true, 5)) {
+            j.append(new Journal.Record(Journal.Op.DELETE_ORDER, Journal.NONE).putInt(-1));
+        }
+        byte[] snapshotBefore = Files.readAllBytes(snapshot.toPath());
+        byte[] journalBefore = Files.readAllBytes(journal.toPath());
+
+        try {
+            Model.recover(snapshot.getPath(), journal.getPath(), true);
+            fail();
+        } catch (IOException e) {
+        }
+        assertArrayEquals(snapshotBefore, Files.readAllBytes(snapshot.toPath()));
+        assertArrayEquals(journalBefore, Files.readAllBytes(journal.toPath()));
+    }
+}
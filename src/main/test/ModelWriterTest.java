@@ -0,0 +1,112 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+import app.*;
+
+public class ModelWriterTest {
+
+    @Test
+    public void ordersFromManyThreads() throws Exception {
+        Model m = new Model();
+        m.setCurrentDate(LocalDate.of(2023, 5, 5));
+        m.registsUser("seller@x", "S", "Braga", 1, "p");
+        String seller = m.openSession("seller@x", "p");
+
+        int threads = 6;
+        List<String> sessions = new ArrayList<String>();
+        for (int t = 0; t < threads; t++) {
+            m.registsUser("buyer" + t + "@x", "B", "Porto", t, "p");
+            sessions.add(m.openSession("buyer" + t + "@x", "p"));
+        }
+
+        // a small ring, so producers also wait for free slots
+        try (ModelWriter w = new ModelWriter(m, 8)) {
+            w.addCarrier("Ups", 0.08, 0.05, 0.03, "n").get();
+            List<CompletableFuture<Void>> listed = new ArrayList<CompletableFuture<Void>>();
+            for (int k = 0; k < 150; k++)
+                listed.add(w.registTshirt(seller, "shirt " + k, "Brand", 10 + k, "Ups", 5, Tshirt.TshirtSize.M,
+                        Tshirt.TshirtPattern.Smooth));
+            for (CompletableFuture<Void> f : listed)
+                f.get();
+
+            List<Integer> ids = new ArrayList<Integer>();
+            for (Item i : m.getListedItemsManagerList())
+                ids.add(i.getID());
+            assertEquals(150, ids.size());
+
+            List<List<CompletableFuture<Order>>> results = new ArrayList<List<CompletableFuture<Order>>>();
+            List<Thread> producers = new ArrayList<Thread>();
+            for (int t = 0; t < threads; t++) {
+                String session = sessions.get(t);
+                List<Integer> mine = new ArrayList<Integer>(ids);
+                Collections.shuffle(mine, new Random(t));
+                List<CompletableFuture<Order>> orders = new ArrayList<CompletableFuture<Order>>();
+                results.add(orders);
+                producers.add(new Thread(() -> {
+                    for (int k = 0; k + 2 <= mine.size(); k += 2)
+                        orders.add(w.makeOrder(session, mine.subList(k, k + 2)));
+                }));
+            }
+            for (Thread p : producers)
+                p.start();
+            for (Thread p : producers)
+                p.join();
+
+            List<Integer> bought = new ArrayList<Integer>();
+            int rejected = 0;
+            for (List<CompletableFuture<Order>> orders : results) {
+                for (CompletableFuture<Order> f : orders) {
+                    try {
+                        for (Item i : f.get().getCollection())
+                            bought.add(i.getID());
+                    } catch (ExecutionException e) {
+                        assertEquals(InvalidId.class, e.getCause().getClass());
+                        rejected++;
+                    }
+                }
+            }
+            assertEquals(bought.size(), new HashSet<Integer>(bought).size());
+            assertEquals(ids.size() - bought.size(), m.getListedItemsManagerList().size());
+            assertEquals(threads * ids.size() / 2, bought.size() / 2 + rejected);
+            assertEquals(1 + 150 + threads * ids.size() / 2, w.getApplied());
+        }
+    }
+
+    @Test
+    public void failuresCompleteTheirFuture() throws Exception {
+        Model m = new Model();
+        m.setCurrentDate(LocalDate.of(2023, 5, 5));
+        ModelWriter w = new ModelWriter(m);
+        try {
+            w.changeCarrier("missing", 0.1, 0.1, 0.1).get();
+            assertEquals(true, false);
+        } catch (ExecutionException e) {
+            assertEquals(NullPointerException.class, e.getCause().getClass());
+        }
+        try {
+            w.makeOrder("no such session", List.of(1)).get();
+            assertEquals(true, false);
+        } catch (ExecutionException e) {
+            assertEquals(NullPointerException.class, e.getCause().getClass());
+        }
+        assertEquals("x", w.submit(null, model -> "x").get());
+
+        w.close();
+        try {
+            w.TimeSkip(LocalDate.of(2023, 6, 1));
+            assertEquals(true, false);
+        } catch (IllegalStateException e) {
+        }
+    }
+}
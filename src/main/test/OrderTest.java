@@ -1,8 +1,15 @@
 package test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Stack;
 
 import org.junit.jupiter.api.Test;
@@ -131,4 +138,170 @@ public class OrderTest {
                 assertEquals("", 88.749, order.calculateFinalPrice(), 0.001);
         }
 
-}
\ No newline at end of file
+        @Test
+        public void batchOfOrders() throws Exception {
+                Model m = new Model();
+                m.setCurrentDate(LocalDate.of(2023, 5, 5));
+                m.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+                m.registsUser("seller@x", "S", "Braga", 1, "p");
+                m.registsUser("buyer@x", "B", "Porto", 2, "p");
+                m.loginModel("seller@x", "p");
+                for (int k = 0; k < 5; k++)
+                        m.registBag("bag " + k, "Brand", 100, "Ups", 5, 100, "pele", LocalDate.of(2020, 1, 1), "n");
+                List<Integer> ids = new ArrayList<Integer>();
+                for (Item i : m.getListedItemsManagerList())
+                        ids.add(i.getID());
+                Collections.sort(ids);
+
+                m.loginModel("buyer@x", "p");
+                List<Order> orders = m.makeOrders(List.of(List.of(ids.get(0), ids.get(1)),
+                                List.of(ids.get(1), ids.get(2)), List.of(), List.of(ids.get(3)),
+                                List.of(-1)));
+                assertEquals(5, orders.size());
+                assertEquals(2, orders.get(0).getCollection().size());
+                assertEquals(null, orders.get(1));
+                assertEquals(null, orders.get(2));
+                assertEquals(1, orders.get(3).getCollection().size());
+                assertEquals(null, orders.get(4));
+                assertEquals(2, m.getListedItemsManagerList().size());
+
+                // sellers cannot buy their own items
+                m.loginModel("seller@x", "p");
+                assertEquals(null, m.makeOrders(List.of(List.of(ids.get(4)))).get(0));
+                assertEquals(2, m.getListedItemsManagerList().size());
+        }
+
+        @Test
+        public void sessionsNeverSellAnItemTwice() throws Exception {
+                Model m = new Model();
+                m.setCurrentDate(LocalDate.of(2023, 5, 5));
+                m.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+                m.registsUser("seller@x", "S", "Braga", 1, "p");
+                m.loginModel("seller@x", "p");
+                for (int k = 0; k < 200; k++)
+                        m.registBag("bag " + k, "Brand", 100, "Ups", 5, 100, "pele", LocalDate.of(2020, 1, 1), "n");
+                List<Integer> ids = new ArrayList<Integer>();
+                for (Item i : m.getListedItemsManagerList())
+                        ids.add(i.getID());
+
+                int threads = 8;
+                List<String> sessions = new ArrayList<String>();
+                for (int t = 0; t < threads; t++) {
+                        m.registsUser("buyer" + t + "@x", "B", "Porto", t, "p");
+                        sessions.add(m.openSession("buyer" + t + "@x", "p"));
+                }
+
+                // every thread tries to buy every item, in carts of three
+                List<Integer> bought = Collections.synchronizedList(new ArrayList<Integer>());
+                List<Thread> workers = new ArrayList<Thread>();
+                for (int t = 0; t < threads; t++) {
+                        String session = sessions.get(t);
+                        List<Integer> mine = new ArrayList<Integer>(ids);
+                        Collections.shuffle(mine, new Random(t));
+                        Thread w = new Thread(() -> {
+                                for (int k = 0; k + 3 <= mine.size(); k += 3) {
+                                        try {
+                                                for (Item i : m.makeOrder(session, mine.subList(k, k + 3))
+                                                                .getCollection())
+                                                        bought.add(i.getID());
+                                        } catch (InvalidId e) {
+                                        }
+                                }
+                        });
+                        workers.add(w);
+                        w.start();
+                }
+                for (Thread w : workers)
+                        w.join();
+
+                assertEquals(bought.size(), new HashSet<Integer>(bought).size());
+                assertEquals(ids.size() - bought.size(), m.getListedItemsManagerList().size());
+                for (Item i : m.getListedItemsManagerList())
+                        assertEquals(false, bought.contains(i.getID()));
+        }
+
+        @Test
+        public void dispatchBillsEverySoldItemAndTheBuyer() throws Exception {
+                Model m = new Model();
+                m.setCurrentDate(LocalDate.of(2023, 5, 5));
+                m.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+                m.registsUser("a@x", "A", "Braga", 1, "p");
+                m.registsUser("b@x", "B", "Braga", 2, "p");
+                m.registsUser("buyer@x", "C", "Porto", 3, "p");
+                List<Integer> ids = new ArrayList<Integer>();
+                for (String seller : List.of("a@x", "b@x")) {
+                        m.loginModel(seller, "p");
+                        for (int k = 0; k < 3; k++)
+                                m.registBag("bag " + k, "Brand", 100 + k, "Ups", 5, 100, "pele",
+                                                LocalDate.of(2020, 1, 1), "n");
+                }
+                for (Item i : m.getListedItemsManagerList())
+                        ids.add(i.getID());
+                Collections.sort(ids);
+
+                m.loginModel("buyer@x", "p");
+                m.makeOrders(List.of(List.of(ids.get(0), ids.get(3), ids.get(4)), List.of(ids.get(1))));
+                m.TimeSkip(LocalDate.of(2023, 5, 6));
+                m.TimeSkip(LocalDate.of(2023, 5, 10));
+
+                User a = m.lookupUser("a@x");
+                User b = m.lookupUser("b@x");
+                User buyer = m.lookupUser("buyer@x");
+                assertEquals(2, a.getBills().size());
+                assertEquals(2, b.getBills().size());
+                assertEquals(2, buyer.getBills().size());
+                HashSet<Integer> numbers = new HashSet<Integer>();
+                for (User u : List.of(a, b, buyer)) {
+                        for (Bill bill : u.getBills().values()) {
+                                numbers.add(bill.getbillNumber());
+                                assertEquals(u != buyer, bill.isSold());
+                                if (bill.isSold())
+                                        assertEquals(1, bill.getitems().size());
+                        }
+                }
+                assertEquals(6, numbers.size());
+        }
+
+        @Test
+        public void billsAnItemResoldInTheSameTimeSkip() throws Exception {
+                Model m = new Model();
+                m.setCurrentDate(LocalDate.of(2023, 5, 5));
+                m.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+                m.registsUser("a@x", "A", "Braga", 1, "p");
+                m.registsUser("b@x", "B", "Braga", 2, "p");
+                m.registsUser("c@x", "C", "Porto", 3, "p");
+                m.loginModel("a@x", "p");
+                m.registBag("bag", "Brand", 100, "Ups", 5, 100, "pele", LocalDate.of(2020, 1, 1), "n");
+                int id = m.getListedItemsManagerList().get(0).getID();
+
+                m.loginModel("b@x", "p");
+                m.makeOrder(List.of(id));
+                m.TimeSkip(LocalDate.of(2023, 5, 6));
+                // b relists the bag before its order is dispatched, and c buys it
+                m.alterItemState(id);
+                m.loginModel("c@x", "p");
+                m.makeOrder(List.of(id));
+                m.TimeSkip(LocalDate.of(2023, 5, 10));
+
+                User a = m.lookupUser("a@x");
+                User b = m.lookupUser("b@x");
+                User c = m.lookupUser("c@x");
+                assertEquals(1, a.getBills().size());
+                assertEquals(2, b.getBills().size());
+                assertEquals(1, c.getBills().size());
+                List<Integer> numbers = new ArrayList<Integer>();
+                for (User u : List.of(a, b, c)) {
+                        for (Bill bill : u.getBills().values()) {
+                                numbers.add(bill.getbillNumber());
+                                assertEquals("[" + id + "]", Arrays.toString(bill.getItemIds()));
+                        }
+                }
+                assertTrue(a.getBills().values().iterator().next().isSold());
+                assertTrue(!c.getBills().values().iterator().next().isSold());
+                // the bills of the first order come first, with no gaps
+                Collections.sort(numbers);
+                for (int k = 1; k < numbers.size(); k++)
+                        assertEquals(numbers.get(0) + k, (int) numbers.get(k));
+                assertEquals((int) numbers.get(0), a.getBills().values().iterator().next().getbillNumber());
+        }
+}
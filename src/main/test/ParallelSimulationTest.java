@@ -0,0 +1,96 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import app.*;
+
+public class ParallelSimulationTest {
+
+    @Test
+    public void contextsKeepTheirOwnDatesAndIds() throws Exception {
+        ModelContext first = new ModelContext();
+        ModelContext second = new ModelContext();
+        Model a = new Model(first);
+        Model b = new Model(second);
+
+        ModelContext previous = ModelContext.bind(first);
+        try {
+            a.setCurrentDate(LocalDate.of(2023, 5, 5));
+            a.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+            a.registsUser("seller@x", "S", "Braga", 1, "p");
+            a.loginModel("seller@x", "p");
+            a.registTshirt("shirt", "Brand", 10, "Ups", 5, Tshirt.TshirtSize.M, Tshirt.TshirtPattern.Smooth);
+
+            ModelContext.bind(second);
+            b.setCurrentDate(LocalDate.of(2030, 1, 1));
+            b.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+            b.registsUser("seller@x", "S", "Braga", 1, "p");
+            b.loginModel("seller@x", "p");
+            b.registTshirt("shirt", "Brand", 10, "Ups", 5, Tshirt.TshirtSize.M, Tshirt.TshirtPattern.Smooth);
+            assertEquals(1, b.getListedItemsManagerList().get(0).getID());
+
+            ModelContext.bind(first);
+            assertEquals("2023-05-05", a.getDate());
+            assertEquals(1, a.getListedItemsManagerList().get(0).getID());
+        } finally {
+            ModelContext.bind(previous);
+        }
+    }
+
+    @Test
+    public void parallelRunsMatchASingleRun() throws Exception {
+        File alone = File.createTempFile("alone", ".snap");
+        alone.deleteOnExit();
+        ParallelSimulation.Outcome single = ParallelSimulation.run(Arrays.asList("simulation.txt"), 1).get(0);
+        save(single.getModel(), alone);
+
+        List<String> paths = new ArrayList<String>();
+        for (int k = 0; k < 6; k++)
+            paths.add("simulation.txt");
+        paths.add("missing.txt");
+        List<ParallelSimulation.Outcome> outcomes = ParallelSimulation.run(paths, 3);
+
+        assertEquals(7, outcomes.size());
+        for (int k = 0; k < 6; k++) {
+            ParallelSimulation.Outcome o = outcomes.get(k);
+            assertEquals(null, o.getFailure());
+            File f = File.createTempFile("parallel", ".snap");
+            f.deleteOnExit();
+            save(o.getModel(), f);
+            assertTrue(Arrays.equals(Files.readAllBytes(alone.toPath()), Files.readAllBytes(f.toPath())));
+        }
+        assertTrue(outcomes.get(6).getFailure() != null);
+    }
+
+    @Test
+    public void aFailingFileDoesNotStopTheOthers() throws Exception {
+        File broken = File.createTempFile("broken", ".txt");
+        broken.deleteOnExit();
+        Files.write(broken.toPath(), Arrays.asList("2023-05-05,FazerEncomenda,1;2"));
+
+        List<ParallelSimulation.Outcome> outcomes = ParallelSimulation.run(
+                Arrays.asList(broken.getPath(), "simulation.txt"), 2);
+
+        assertTrue(outcomes.get(0).getFailure() instanceof RuntimeException);
+        assertTrue(outcomes.get(0).toString().contains("failed"));
+        assertEquals(null, outcomes.get(1).getFailure());
+    }
+
+    private static void save(Model m, File f) throws Exception {
+        ModelContext previous = ModelContext.bind(m.getContext());
+        try {
+            m.save(f.getPath());
+        } finally {
+            ModelContext.bind(previous);
+        }
+    }
+}
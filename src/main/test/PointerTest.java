@@ -50,6 +50,25 @@ public class PointerTest{
         assertEquals(null, res4, 1, 0);
     }
 
+    @Test
+    public void userManagerEmailIndex() {
+        var lista = new UserManager();
+        var user1 = new User("David@Mail.com", "David", "a", 0, "a");
+        var user2 = new User("nuno@mail.com", "Nuno", "b", 1, "b");
+        lista.addUser(user1);
+        lista.addUser(user2);
+
+        assertEquals(null, lista.findUserByEmail("david@mail.com").getId(), user1.getId(), 0);
+        assertEquals(null, lista.findUserByEmail(" NUNO@mail.com").getId(), user2.getId(), 0);
+
+        lista.setEmail(user2.getId(), "pastore@mail.com");
+        assertEquals(null, lista.findUserByEmail("nuno@mail.com"), null);
+        assertEquals(null, lista.findUserByEmail("pastore@mail.com").getName(), "Nuno");
+
+        lista.removeUser(user1.getId());
+        assertEquals(null, lista.findUserByEmail("david@mail.com"), null);
+    }
+
     @Test
     public void itemManager() {
         int res1 = 0;
@@ -140,6 +159,43 @@ public class PointerTest{
         assertEquals(null, res4, 1, 0);
     }
 
+    @Test
+    public void orderManagerIndexes() {
+        SystemDate.setDate(LocalDate.now());
+        var carrier = new Carrier("a1", .1, .2, .3, 0);
+        var buyer = new User("a", "David", "a", 0, "a");
+        var seller = new User("b", "Nuno", "b", 1, "b");
+
+        var lista = new OrderManager();
+
+        var bag = new Bag("a", "a", 15, carrier, .5, new Stack<Integer>(),
+                          1500, "Cotton", Util.toDate("2012-12-12"), seller.getId());
+        var o1 = new Order();
+        o1.addItem(bag, seller);
+        o1.setBuyer(buyer);
+        o1.setDate(Util.toDate("2023-05-05"));
+        lista.addOrder(o1);
+
+        var o2 = new Order();
+        o2.addItem(bag, seller);
+        o2.setBuyer(seller);
+        o2.setDate(Util.toDate("2023-05-10"));
+        lista.addOrder(o2);
+
+        assertEquals(null, lista.getThisUserOrders(buyer.getId()).size(), 1, 0);
+        assertEquals(null, lista.getSellerOrders(seller.getId()).size(), 2, 0);
+        assertEquals(null, lista.getOrdersBetween(Util.toDate("2023-05-06"), Util.toDate("2023-05-31")).size(), 1, 0);
+
+        lista.finishOrder(lista.getOrder(o1.getID()));
+        assertEquals(null, lista.getOrdersByState(Order.OrderState.Pending).size(), 1, 0);
+        assertEquals(null, lista.getOrdersByState(Order.OrderState.Finished).size(), 1, 0);
+
+        lista.removeOrder(o1.getID());
+        assertEquals(null, lista.getThisUserOrders(buyer.getId()).size(), 0, 0);
+        assertEquals(null, lista.getOrdersByState(Order.OrderState.Finished).size(), 0, 0);
+        assertEquals(null, lista.getSellerOrders(seller.getId()).size(), 1, 0);
+    }
+
     @Test
     public void carrierManager() throws CarrierAlreadyExistsException{
         double res1 = 0;
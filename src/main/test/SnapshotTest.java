@@ -0,0 +1,221 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import app.*;
+
+public class SnapshotTest {
+    @Test
+    public void roundTrip() throws Exception {
+        Model m = new Model();
+        m.setCurrentDate(LocalDate.of(2023, 5, 5));
+        m.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+        m.addCarrier("Prem", 0.1, 0.05, 0.09, "y");
+        m.registsUser("seller@x", "Seller", "Braga", 1, "s");
+        m.registsUser("buyer@x", "Buyer", "Porto", 2, "b");
+
+        m.loginModel("seller@x", "s");
+        m.registBag("bag", "brand", 100, "Ups", 4, 1500, "pele", LocalDate.of(2010, 1, 1), "n");
+        m.registTshirt("shirt", "brand", 20, "Ups", 5, Tshirt.TshirtSize.M, Tshirt.TshirtPattern.Stripes);
+        m.registSneaker("sneaker", "brand", 300, "Prem", 3, 42, Sneaker.SneakerType.LACES, "red",
+                LocalDate.of(2012, 1, 1), "y");
+        int first = m.getListedItemsManagerList().stream().mapToInt(Item::getID).min().getAsInt();
+
+        m.loginModel("buyer@x", "b");
+        m.makeOrder(Arrays.asList(first, first + 1));
+        m.TimeSkip(LocalDate.of(2023, 5, 10));
+
+        File f = File.createTempFile("model", ".snap");
+        f.deleteOnExit();
+        m.save(f.getPath());
+        m.setCurrentDate(LocalDate.of(2024, 1, 1));
+        Model loaded = Model.load(f.getPath());
+
+        assertEquals("2023-05-10", loaded.getDate());
+        assertEquals(m.getVintageProfit(), loaded.getVintageProfit(), 0);
+        assertEquals(1, loaded.getListedItemsManagerList().size());
+
+        Map<Integer, User> before = m.getUserManagerCopy();
+        Map<Integer, User> after = loaded.getUserManagerCopy();
+        assertEquals(before.keySet(), after.keySet());
+        for (User u : before.values()) {
+            User v = after.get(u.getId());
+            assertEquals(u.getEmail(), v.getEmail());
+            assertEquals(u.getBills().keySet(), v.getBills().keySet());
+            assertEquals(u.soldItemsValue(), v.soldItemsValue(), 0.0001);
+            assertEquals(u.spendValue(), v.spendValue(), 0.0001);
+            assertEquals(u.getSystemItems().size(), v.getSystemItems().size());
+            assertEquals(u.getSellingItems().size(), v.getSellingItems().size());
+        }
+        for (Map.Entry<String, Carrier> e : m.getCarrierManagerCopy().entrySet()) {
+            assertEquals(e.getValue().getTotalEarning(),
+                    loaded.getCarrierManagerCopy().get(e.getKey()).getTotalEarning(), 0);
+        }
+
+        // the restored graph keeps working: the order can still be returned
+        loaded.loginModel("buyer@x", "b");
+        User buyer = loaded.lookupUser("buyer@x");
+        int orderId = buyer.getBills().values().iterator().next().getOrder().getID();
+        loaded.deleteOrder(orderId);
+        assertEquals(3, loaded.getListedItemsManagerList().size());
+    }
+
+    @Test
+    public void corruptedSnapshot() throws Exception {
+        Model m = new Model();
+        m.registsUser("a@x", "A", "Braga", 1, "a");
+        File f = File.createTempFile("model", ".snap");
+        f.deleteOnExit();
+        m.save(f.getPath());
+
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.seek(raf.length() - 10);
+            int b = raf.read();
+            raf.seek(raf.length() - 10);
+            raf.write(b ^ 0xFF);
+        }
+
+        boolean failed = false;
+        try {
+            Model.load(f.getPath());
+        } catch (IOException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+    }
+
+    @Test
+    public void legacySerializedModel() throws Exception {
+        ModelContext previous = ModelContext.bind(new ModelContext());
+        try {
+            // the state saved with Java serialization, before snapshots
+            Model m = Model.load("data.ser");
+            SystemDate.load("date.ser");
+
+            assertEquals("2023-05-18", m.getDate());
+            assertEquals(22.9, m.getVintageProfit(), 0.0001);
+            assertEquals(6, m.getUserManagerCopy().size());
+            assertEquals(4, m.getListedItemsManagerList().size());
+
+            User seller = m.lookupUser("nuno@gmail.com");
+            User buyer = m.lookupUser("david@email.com");
+            assertEquals(197.6, seller.soldItemsValue(), 0.0001);
+            assertEquals(230.0, buyer.spendValue(), 0.0001);
+            assertEquals(1, buyer.getSystemItems().size());
+            assertEquals(1, seller.getSellingItems().size());
+
+            Bill bought = buyer.getBills().get(2);
+            assertEquals(1, bought.getOrderId());
+            assertEquals(1, bought.getOrder().getID());
+            assertEquals("[1]", Arrays.toString(bought.getItemIds()));
+            assertEquals(30.0, bought.getportsTax(), 0);
+            assertEquals(230.0, bought.getAmount(), 0.0001);
+
+            m.loginModel("david@email.com", "qwerty");
+            assertTrue(m.checkThisUserOrders().contains(" ID= 1, "));
+        } finally {
+            ModelContext.bind(previous);
+        }
+    }
+
+    @Test
+    public void legacyModelIndexesBillsOnReturn() throws Exception {
+        ModelContext previous = ModelContext.bind(new ModelContext());
+        try {
+            // data.ser predates the bill index: returning its order builds it
+            Model m = Model.load("data.ser");
+            SystemDate.load("date.ser");
+            m.loginModel("david@email.com", "qwerty");
+            m.deleteOrder(1);
+
+            User seller = m.lookupUser("nuno@gmail.com");
+            User buyer = m.lookupUser("david@email.com");
+            assertTrue(seller.getBills().isEmpty());
+            assertTrue(buyer.getBills().isEmpty());
+            assertEquals(0, seller.soldItemsValue(), 0);
+            assertEquals(0, buyer.spendValue(), 0);
+            assertEquals(5, m.getListedItemsManagerList().size());
+        } finally {
+            ModelContext.bind(previous);
+        }
+    }
+
+    /**
+     * What a bill shows: its number, type, order, items and totals.
+     */
+    private static String describe(Bill b) {
+        return b.getbillNumber() + " " + b.gettype() + " " + b.getOrderId() + " "
+                + Arrays.toString(b.getItemIds()) + " " + b.getitems().keySet() + " " + b.gettotalCost() + " "
+                + b.getportsTax() + " " + b.getAmount();
+    }
+
+    private static Map<Integer, String> describeBills(Model m) {
+        Map<Integer, String> bills = new TreeMap<Integer, String>();
+        for (User u : m.getUserManagerCopy().values()) {
+            for (Bill b : u.getBills().values())
+                bills.put(b.getbillNumber(), u.getId() + " " + describe(b) + "\n" + b.showBill());
+        }
+        return bills;
+    }
+
+    @Test
+    public void billsKeepTheirItemsAndTotals() throws Exception {
+        Model m = new Model();
+        m.setCurrentDate(LocalDate.of(2023, 5, 5));
+        m.addCarrier("Ups", 0.08, 0.05, 0.03, "n");
+        m.registsUser("a@x", "A", "Braga", 1, "a");
+        m.registsUser("b@x", "B", "Braga", 2, "b");
+        m.registsUser("c@x", "C", "Porto", 3, "c");
+
+        m.loginModel("a@x", "a");
+        m.registBag("bag", "brand", 100, "Ups", 4, 1500, "pele", LocalDate.of(2010, 1, 1), "n");
+        m.registTshirt("shirt", "brand", 20, "Ups", 5, Tshirt.TshirtSize.M, Tshirt.TshirtPattern.Stripes);
+        int bag = m.getListedItemsManagerList().stream().mapToInt(Item::getID).min().getAsInt();
+
+        m.loginModel("b@x", "b");
+        m.makeOrder(Arrays.asList(bag, bag + 1));
+        m.TimeSkip(LocalDate.of(2023, 5, 10));
+        Map<Integer, String> first = describeBills(m);
+        assertEquals(3, first.size());
+
+        // the bag is resold, then its new order returned
+        m.alterItemState(bag);
+        m.loginModel("c@x", "c");
+        int resale = m.makeOrder(Arrays.asList(bag)).getID();
+        m.TimeSkip(LocalDate.of(2023, 5, 15));
+        Map<Integer, String> resold = describeBills(m);
+        assertEquals(5, resold.size());
+        for (Map.Entry<Integer, String> e : first.entrySet())
+            assertEquals(e.getValue(), resold.get(e.getKey()));
+        m.deleteOrder(resale);
+        Map<Integer, String> returned = describeBills(m);
+        assertEquals(3, returned.size());
+        for (Map.Entry<Integer, String> e : returned.entrySet())
+            assertEquals(resold.get(e.getKey()), e.getValue());
+
+        // read back from a snapshot, and from Java serialization
+        File snap = File.createTempFile("model", ".snap");
+        snap.deleteOnExit();
+        m.save(snap.getPath());
+        assertEquals(returned, describeBills(Model.load(snap.getPath())));
+
+        File ser = File.createTempFile("model", ".ser");
+        ser.deleteOnExit();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(ser))) {
+            out.writeObject(m);
+        }
+        assertEquals(returned, describeBills(Model.load(ser.getPath())));
+    }
+}
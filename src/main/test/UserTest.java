@@ -0,0 +1,88 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Stack;
+
+import org.junit.jupiter.api.Test;
+import app.*;
+
+public class UserTest {
+    @Test
+    public void revenueTotals() {
+        var t1 = new Carrier();
+        t1.setTaxSmall(.25);
+        var seller = new User("s", "s", "s", 1, "s");
+        var buyer = new User("b", "b", "b", 2, "b");
+
+        var order1 = new Order();
+        order1.setDate(LocalDate.of(2023, 5, 5));
+        var order2 = new Order();
+        order2.setDate(LocalDate.of(2023, 6, 5));
+
+        Bag bag = new Bag("mala", "null", 10, t1, 0.5,
+                null, 1500, "null", null, 0);
+
+        var sold1 = new Bill(null, new HashMap<Integer, Item>(), 0, order1);
+        sold1.addItem(bag, 1);
+        sold1.setSold();
+        var sold2 = new Bill(null, new HashMap<Integer, Item>(), 0, order2);
+        sold2.addItem(bag, 1);
+        sold2.setSold();
+        var bought = new Bill(null, new HashMap<Integer, Item>(), 0, order1);
+        bought.addItem(bag, 1);
+        bought.setBought();
+
+        seller.addBills(sold1);
+        seller.addBills(sold2);
+        buyer.addBills(bought);
+
+        assertEquals("", 6.916, seller.soldItemsValue(), 0.001);
+        assertEquals("", 7.3, buyer.spendValue(), 0.001);
+        assertEquals("", 3.5, seller.soldItemsValueFrame(LocalDate.of(2023, 5, 1), LocalDate.of(2023, 6, 1)), 0.001);
+        assertEquals("", 7, seller.soldItemsValueFrame(LocalDate.of(2023, 5, 4), LocalDate.of(2023, 6, 6)), 0.001);
+        assertEquals("", 0, seller.soldItemsValueFrame(LocalDate.of(2023, 5, 5), LocalDate.of(2023, 6, 5)), 0.001);
+        assertEquals("", 7.3, buyer.boughtValueFrame(LocalDate.of(2023, 5, 1), LocalDate.of(2023, 6, 1)), 0.001);
+
+        seller.removeBill(sold1.getbillNumber());
+
+        assertEquals("", 3.458, seller.soldItemsValue(), 0.001);
+        assertEquals("", 0, seller.soldItemsValueFrame(LocalDate.of(2023, 5, 1), LocalDate.of(2023, 6, 1)), 0);
+        assertEquals("", 3.5, seller.clone().soldItemsValueFrame(LocalDate.of(2023, 5, 1), LocalDate.of(2023, 7, 1)), 0.001);
+    }
+
+    @Test
+    public void itemsById() {
+        var t1 = new Carrier();
+        var u = new User("s", "s", "s", 1, "s");
+        List<Item> items = new ArrayList<Item>();
+        for (int k = 0; k < 1000; k++) {
+            Item i = new Tshirt("t" + k, "b", 10, t1, 0.5, new Stack<Integer>(), Tshirt.TshirtSize.M,
+                    Tshirt.TshirtPattern.Stripes, u.getId());
+            items.add(i);
+            u.addItem(i);
+        }
+
+        // every other item is bought back into the system, then relisted
+        for (int k = 0; k < 1000; k += 2) {
+            u.removeItem(items.get(k));
+            u.addSystemItem(items.get(k));
+        }
+        assertEquals(500, u.getSellingItems().size());
+        assertEquals(items.get(1), u.getSellingItems().get(0));
+        assertEquals(items.get(2), u.getSystemItems().get(1));
+        assertEquals(true, u.hasItem(items.get(998).getID()));
+        assertEquals(false, u.hasItem(items.get(999).getID()));
+        assertEquals(true, u.oneOfHis(Arrays.asList(-1, items.get(999).getID())));
+
+        u.listASystemItem(items.get(0).getID());
+        assertEquals(items.get(0), u.getSellingItems().get(500));
+        assertEquals(items.get(0), u.searchItem(items.get(0).getID()));
+        assertEquals(499, u.clone().getSystemItems().size());
+    }
+}